@@ -0,0 +1,55 @@
+package org.digdug.animatedtextview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.view.View;
+
+public class AnimatedTextViewAllocationTest extends AndroidTestCase {
+    private static final int WIDTH = 600;
+    private static final int HEIGHT = 100;
+    private static final int FRAMES = 20;
+
+    private AnimatedTextView view;
+    private Canvas canvas;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        view = new AnimatedTextView(getContext());
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+        // Long enough that every frame below is drawn mid-transition.
+        view.setDuration(60 * 1000);
+        view.setText("Hello world!");
+        canvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+
+    public void testTransitionFramesDoNotAllocate() {
+        view.toggleText("Hello wesley");
+        assertFramesDoNotAllocate();
+    }
+
+    public void testMovingFramesDoNotAllocate() {
+        view.setDirection(AnimatedTextView.TransitionDirection.RIGHT);
+        view.toggleText("Hello world with more");
+        assertFramesDoNotAllocate();
+    }
+
+    private void assertFramesDoNotAllocate() {
+        // The first frame is allowed to warm up anything lazily created by the framework.
+        view.onDraw(canvas);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < FRAMES; i++) {
+            view.onDraw(canvas);
+        }
+        Debug.stopAllocCounting();
+
+        assertEquals("Objects allocated while drawing " + FRAMES + " frames",
+                0, Debug.getThreadAllocCount());
+    }
+}
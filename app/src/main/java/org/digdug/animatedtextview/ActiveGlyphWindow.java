@@ -0,0 +1,68 @@
+package org.digdug.animatedtextview;
+
+import android.graphics.RectF;
+
+// Works out which transitions are animating at a given time, and the part of the view they can touch. Transitions
+// start in index order, so the ones that are animating are always a contiguous range of the schedule.
+class ActiveGlyphWindow {
+    // Extra room around a glyph's box for antialiasing and glyphs that overhang their advance.
+    private static final float SLOP = 2;
+    private StaggerSchedule schedule;
+    private long duration;
+    // True if the animations scale, rotate or translate glyphs. Their bounds aren't tracked, the whole view is
+    // used instead.
+    private boolean unbounded;
+    // How far above and below the baseline a glyph can reach, as a fraction of its text size.
+    private float top;
+    private float bottom;
+    private float paddingTop;
+    private float width;
+    private float height;
+
+    // top and bottom are the font's extent above and below the baseline, as fractions of its text size.
+    void set(StaggerSchedule schedule, long duration, boolean unbounded, float top, float bottom, float paddingTop,
+             float width, float height) {
+        this.schedule = schedule;
+        this.duration = duration;
+        this.unbounded = unbounded;
+        this.top = top;
+        this.bottom = bottom;
+        this.paddingTop = paddingTop;
+        this.width = width;
+        this.height = height;
+    }
+
+    // The first transition that hasn't finished elapsed ms into the transition. count if they all have.
+    int getFirstActive(long elapsed, int count) {
+        return Math.min(count, schedule.getFirstActive(elapsed, duration));
+    }
+
+    // The last transition that has started elapsed ms into the transition. -1 if none have.
+    int getLastActive(long elapsed, int count) {
+        return Math.min(count - 1, schedule.getLastActive(elapsed));
+    }
+
+    // The area transition i can draw into at any point in its animation, in view coordinates.
+    void getBounds(TransitionBuffer t, int i, RectF out) {
+        if (unbounded) {
+            out.set(0, 0, width, height);
+            return;
+        }
+
+        // Glyphs that change lines move in a straight line, so the box around both ends covers the whole path.
+        final float size = Math.max(t.fromSize[i], t.toSize[i]);
+        final float baseline = paddingTop + size;
+        out.set(Math.min(t.fromPosition[i], t.toPosition[i]) - SLOP,
+                baseline + Math.min(t.fromY[i], t.toY[i]) - size * top - SLOP,
+                Math.max(t.fromPosition[i] + t.fromWidth[i], t.toPosition[i] + t.toWidth[i]) + SLOP,
+                baseline + Math.max(t.fromY[i], t.toY[i]) + size * bottom + SLOP);
+    }
+
+    // Adds the bounds of transitions first to last to out. scratch is overwritten.
+    void unionBounds(TransitionBuffer t, int first, int last, RectF out, RectF scratch) {
+        for (int i = Math.max(first, 0); i <= last && i < t.size(); i++) {
+            getBounds(t, i, scratch);
+            out.union(scratch);
+        }
+    }
+}
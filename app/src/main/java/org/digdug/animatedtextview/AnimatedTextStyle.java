@@ -0,0 +1,239 @@
+package org.digdug.animatedtextview;
+
+import android.content.Context;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.support.annotation.AnimRes;
+import android.support.annotation.Nullable;
+import android.view.animation.AlphaAnimation;
+import android.view.animation.Animation;
+import android.view.animation.AnimationUtils;
+
+// Animation and paint settings that can be shared by any number of AnimatedTextViews, e.g. every cell in a list.
+// Animations are inflated and baked once, when the style is built, and the views share the baked curves and a
+// glyph cache. Binding a style to a view only copies references, so it's cheap enough to do in onBindViewHolder.
+//
+// A style can't be changed once it's built. Don't modify the Animations it returns either, they're shared.
+public class AnimatedTextStyle {
+    private final int duration;
+    private final int spacing;
+    @Nullable private final Animation showAnimation;
+    @Nullable private final Animation hideAnimation;
+    @Nullable private final AnimationCurve showCurve;
+    @Nullable private final AnimationCurve hideCurve;
+    @Nullable private final AnimationPreset showPreset;
+    @Nullable private final AnimationPreset hidePreset;
+    private final AnimatedTextView.Alignment alignment;
+    private final AnimatedTextView.TransitionDirection direction;
+    private final GlyphAdvanceCache glyphCache;
+    @Nullable private final GlyphAtlas glyphAtlas;
+    // Copied into each view's paint when set. Views keep their own settings for the rest.
+    @Nullable private final Typeface typeface;
+    private final boolean antiAlias;
+    private final boolean antiAliasSet;
+
+    private AnimatedTextStyle(Builder builder) {
+        duration = builder.duration;
+        spacing = builder.spacing;
+        showAnimation = builder.showAnimation;
+        hideAnimation = builder.hideAnimation;
+        showPreset = builder.showPreset;
+        hidePreset = builder.hidePreset;
+        showCurve = showPreset != null ? getCurve(showPreset, duration, builder.durationSet) :
+                bake(showAnimation, duration, builder.durationSet);
+        hideCurve = hidePreset != null ? getCurve(hidePreset, duration, builder.durationSet) :
+                bake(hideAnimation, duration, builder.durationSet);
+        alignment = builder.alignment;
+        direction = builder.direction;
+        glyphCache = builder.glyphCache != null ? builder.glyphCache : new GlyphAdvanceCache();
+        glyphAtlas = builder.glyphAtlas;
+        typeface = builder.typeface;
+        antiAlias = builder.antiAlias;
+        antiAliasSet = builder.antiAliasSet;
+    }
+
+    @Nullable
+    private static AnimationCurve bake(@Nullable Animation animation, int duration, boolean override) {
+        if (animation == null) {
+            return null;
+        }
+        if (override || animation.getDuration() == 0) {
+            animation.setDuration(duration);
+        }
+        return AnimationCurve.bake(animation);
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public int getSpacing() {
+        return spacing;
+    }
+
+    @Nullable
+    public Animation getShowAnimation() {
+        return showAnimation;
+    }
+
+    @Nullable
+    public Animation getHideAnimation() {
+        return hideAnimation;
+    }
+
+    @Nullable
+    AnimationCurve getShowCurve() {
+        return showCurve;
+    }
+
+    @Nullable
+    AnimationCurve getHideCurve() {
+        return hideCurve;
+    }
+
+    @Nullable
+    public AnimationPreset getShowPreset() {
+        return showPreset;
+    }
+
+    @Nullable
+    public AnimationPreset getHidePreset() {
+        return hidePreset;
+    }
+
+    public AnimatedTextView.Alignment getAlignment() {
+        return alignment;
+    }
+
+    public AnimatedTextView.TransitionDirection getDirection() {
+        return direction;
+    }
+
+    public GlyphAdvanceCache getGlyphAdvanceCache() {
+        return glyphCache;
+    }
+
+    @Nullable
+    public GlyphAtlas getGlyphAtlas() {
+        return glyphAtlas;
+    }
+
+    private static AnimationCurve getCurve(AnimationPreset preset, int duration, boolean override) {
+        final AnimationCurve curve = preset.getCurve();
+        return override || curve.getDuration() == 0 ? curve.withDuration(duration) : curve;
+    }
+
+    void applyTo(Paint target) {
+        if (typeface != null) {
+            target.setTypeface(typeface);
+        }
+        if (antiAliasSet) {
+            target.setAntiAlias(antiAlias);
+        }
+    }
+
+    public static class Builder {
+        private final Context context;
+        private int duration = 100;
+        private boolean durationSet = false;
+        private int spacing = duration / 2;
+        @Nullable private Animation showAnimation = new AlphaAnimation(0f, 1.0f);
+        @Nullable private Animation hideAnimation = new AlphaAnimation(1.0f, 0f);
+        @Nullable private AnimationPreset showPreset;
+        @Nullable private AnimationPreset hidePreset;
+        private AnimatedTextView.Alignment alignment = AnimatedTextView.Alignment.INDEX;
+        private AnimatedTextView.TransitionDirection direction = AnimatedTextView.TransitionDirection.GRAVITY;
+        @Nullable private GlyphAdvanceCache glyphCache;
+        @Nullable private GlyphAtlas glyphAtlas;
+        @Nullable private Typeface typeface;
+        private boolean antiAlias = false;
+        private boolean antiAliasSet = false;
+
+        public Builder(Context context) {
+            this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        }
+
+        // Sets the duration of both animations, overriding whatever they were inflated with.
+        public Builder setDuration(int duration) {
+            this.duration = duration;
+            this.durationSet = true;
+            return this;
+        }
+
+        public Builder setSpacing(int spacing) {
+            this.spacing = spacing;
+            return this;
+        }
+
+        public Builder setShowAnimation(@AnimRes int animId) {
+            return setShowAnimation(animId == 0 ? null : AnimationUtils.loadAnimation(context, animId));
+        }
+
+        // The style takes ownership of the animation. Don't use it anywhere else.
+        public Builder setShowAnimation(@Nullable Animation animation) {
+            showAnimation = animation;
+            showPreset = null;
+            return this;
+        }
+
+        // Uses an animation compiled at build time instead of inflating one. See AnimationPreset.
+        public Builder setShowPreset(String name) {
+            showPreset = AnimationPreset.get(context, name);
+            showAnimation = null;
+            return this;
+        }
+
+        public Builder setHideAnimation(@AnimRes int animId) {
+            return setHideAnimation(animId == 0 ? null : AnimationUtils.loadAnimation(context, animId));
+        }
+
+        public Builder setHideAnimation(@Nullable Animation animation) {
+            hideAnimation = animation;
+            hidePreset = null;
+            return this;
+        }
+
+        public Builder setHidePreset(String name) {
+            hidePreset = AnimationPreset.get(context, name);
+            hideAnimation = null;
+            return this;
+        }
+
+        public Builder setAlignment(AnimatedTextView.Alignment alignment) {
+            this.alignment = alignment;
+            return this;
+        }
+
+        public Builder setDirection(AnimatedTextView.TransitionDirection direction) {
+            this.direction = direction;
+            return this;
+        }
+
+        // Defaults to a new cache for this style.
+        public Builder setGlyphAdvanceCache(GlyphAdvanceCache cache) {
+            glyphCache = cache;
+            return this;
+        }
+
+        // Views using the style draw letters whose size is animating from this atlas. Defaults to none.
+        public Builder setGlyphAtlas(@Nullable GlyphAtlas atlas) {
+            glyphAtlas = atlas;
+            return this;
+        }
+
+        public Builder setTypeface(@Nullable Typeface typeface) {
+            this.typeface = typeface;
+            return this;
+        }
+
+        public Builder setAntiAlias(boolean antiAlias) {
+            this.antiAlias = antiAlias;
+            this.antiAliasSet = true;
+            return this;
+        }
+
+        public AnimatedTextStyle build() {
+            return new AnimatedTextStyle(this);
+        }
+    }
+}
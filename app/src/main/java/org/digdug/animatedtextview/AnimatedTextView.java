@@ -6,39 +6,168 @@ import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
 import android.os.Build;
+import android.os.Looper;
 import android.support.annotation.AnimRes;
 import android.support.annotation.Nullable;
 import android.text.Spanned;
-import android.text.style.ForegroundColorSpan;
-import android.text.style.TextAppearanceSpan;
+import android.text.SpannedString;
+import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.Gravity;
 import android.view.animation.AlphaAnimation;
 import android.view.animation.Animation;
 import android.view.animation.AnimationUtils;
-import android.view.animation.Transformation;
 import android.widget.TextView;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Random;
 
 public class AnimatedTextView extends TextView {
     private static final String LOGTAG = AnimatedTextView.class.getSimpleName();
+    private static final long FRAME_MILLIS = 16;
+
+    // Values for setUpdateInterval.
+    public static final int UPDATE_IMMEDIATE = -1;
+    public static final int UPDATE_NEXT_FRAME = 0;
     private Paint paint = new Paint();
+    private GlyphAdvanceCache glyphCache = new GlyphAdvanceCache();
+    // Draws letters whose size is animating from bitmaps. Null draws them as text.
+    @Nullable private GlyphAtlas glyphAtlas;
+    // The atlas set on the view itself, used again when it's bound to a style without one.
+    @Nullable private GlyphAtlas viewGlyphAtlas;
     private int duration = 100;
     private int spacing = duration / 2;
+    private long maxStaggerDuration = StaggerSchedule.NO_LIMIT;
+    private int staggerWaveSize = 1;
+    // When each of the current transitions starts. Built when a transition starts.
+    private final StaggerSchedule schedule = new StaggerSchedule();
     private boolean autoSlide = true;
 
     @Nullable private Animation showAnimation = new AlphaAnimation(0f, 1.0f);
     @Nullable private Animation hideAnimation = new AlphaAnimation(1.0f, 0f);
-    private Transformation showTransformation = new Transformation();
-    private Transformation hideTransformation = new Transformation();
+    // The show and hide animations baked into lookup tables. These are what's actually drawn.
+    @Nullable private AnimationCurve showCurve;
+    @Nullable private AnimationCurve hideCurve;
+    // Set instead of the animations when the curves came from compiled presets.
+    @Nullable private AnimationPreset showPreset;
+    @Nullable private AnimationPreset hidePreset;
+    private final Matrix glyphMatrix = new Matrix();
+    private long animationStartTime = -1;
+    private AnimationEngine engine = AnimationEngine.VIEW_ANIMATION;
+    private ColorInterpolation colorInterpolation = ColorInterpolation.SRGB;
+    // Only used by the FRAME_CALLBACK engine. glyphFrames holds every glyph's state at framesElapsed.
+    @Nullable private FrameCallbackDriver frameDriver;
+    private final GlyphFrames glyphFrames = new GlyphFrames();
+    private long framesElapsed = 0;
+    private int framesMoving = 0;
+    private boolean framesStale = true;
+    // Set if this view's animations came from a shared style.
+    @Nullable private AnimatedTextStyle style;
+
+    private boolean staticGlyphCache = false;
+    private final StaticGlyphLayer staticLayer = new StaticGlyphLayer();
+    private final IdleTextRuns idleRuns = new IdleTextRuns();
+
+    // With dirty regions the static layer holds every letter that isn't animating, and only the area around the
+    // animating ones is invalidated. layerFirst and layerLast are the letters left out of the layer.
+    private boolean dirtyRegions = false;
+    private final ActiveGlyphWindow activeWindow = new ActiveGlyphWindow();
+    private final Paint.FontMetrics fontMetrics = new Paint.FontMetrics();
+    private int layerFirst = 0;
+    private int layerLast = -1;
+    private final RectF dirtyRegion = new RectF();
+    private final RectF glyphBounds = new RectF();
+    private final Rect invalidRect = new Rect();
+    // Colors and sizes of the text being animated from and to, and of the idle text.
+    private final SpanRunIndex fromSpans = new SpanRunIndex();
+    private final SpanRunIndex toSpans = new SpanRunIndex();
+    private final SpanRunIndex idleSpans = new SpanRunIndex();
+
+    private static final AnimationClock SYSTEM_CLOCK = new AnimationClock() {
+        @Override
+        public long currentAnimationTimeMillis() {
+            return AnimationUtils.currentAnimationTimeMillis();
+        }
+    };
+    private AnimationClock clock = SYSTEM_CLOCK;
+
+    @Nullable private OnTransitionMetricsListener metricsListener;
+    private final TransitionMetrics metrics = new TransitionMetrics();
+    // True between telling the listener a transition started and telling it the transition ended.
+    private boolean metricsRunning;
+
+    // Which layers transitions are drawn with. layers holds the pages transitions render their glyphs into.
+    private LayerPolicy layerPolicy = LayerPolicy.AUTO;
+    private final LayerStats layerStats = new LayerStats();
+    private final TransitionLayers layers = new TransitionLayers(layerStats);
+    // The layer type the view had before a transition put it on a layer, or -1 if it isn't on one.
+    private int savedLayerType = -1;
+    // Layer types can't be changed from inside onDraw, so the layers are released after the frame.
+    private final Runnable releaseLayers = new Runnable() {
+        @Override
+        public void run() {
+            if (transitions.isEmpty()) {
+                releaseLayers();
+            }
+        }
+    };
     @Nullable private Integer toGravity = null;
     private TransitionDirection direction = TransitionDirection.GRAVITY;
+    private Alignment alignment = Alignment.INDEX;
+
+    // Interrupted transitions continue from where they are, and toggles less than a frame apart are merged.
+    private boolean retarget = false;
+    private TransitionBuffer previousTransitions = new TransitionBuffer();
+    // Maps letters of the interrupted transition's text to the transition that was showing them.
+    private int[] retargetIndex = new int[16];
+
+    private int updateInterval = UPDATE_IMMEDIATE;
+    // How many updates were replaced by the one that started the current transition.
+    private int droppedUpdates = 0;
+    private final TextUpdateThrottler throttler = new TextUpdateThrottler(this, new TextUpdateThrottler.Target() {
+        @Override
+        public void onTextUpdate(CharSequence text, int dropped) {
+            droppedUpdates = dropped;
+            startTransition(text);
+            droppedUpdates = 0;
+        }
+    });
+    // Created the first time toggleTextAsync is used.
+    @Nullable private TransitionPlanner planner;
+    // Set while a transition puts its text in place, so setText knows it wasn't called directly.
+    private boolean settingTransitionText = false;
+    private final GlyphMetrics glyphMetrics = new GlyphMetrics() {
+        @Override
+        public float getAdvance(int codePoint, float size) {
+            return glyphCache.getAdvance(paint, codePoint, size);
+        }
+
+        @Override
+        public float getAdvance(CharSequence text, int start, int end, float size) {
+            return glyphCache.getAdvance(paint, text, start, end, size);
+        }
+    };
+    private final TransitionLayout layout = new TransitionLayout(glyphMetrics);
+
+    // Multi-line text. currentLines holds the lines of the text that's showing, so the next toggle only has to
+    // break the lines it changes. It can only be reused while every character is the same size, so linesTextSize
+    // and linesUniform record what it was laid out with.
+    private boolean multiLine = false;
+    private LineLayout currentLines = new LineLayout(glyphMetrics);
+    private LineLayout nextLines = new LineLayout(glyphMetrics);
+    private float linesTextSize;
+    private boolean linesUniform = false;
+
+    // Numbers are drawn as an odometer, with only the digits that change rolling.
+    private boolean numeric = false;
+    private final NumericTicker ticker = new NumericTicker(glyphMetrics);
 
     public void setDirection(TransitionDirection direction) {
         this.direction = direction;
@@ -48,6 +177,230 @@ public class AnimatedTextView extends TextView {
         return direction;
     }
 
+    public void setAlignment(Alignment alignment) {
+        this.alignment = alignment;
+    }
+
+    public Alignment getAlignment() {
+        return alignment;
+    }
+
+    // When enabled, toggling the text while a transition is running starts the new one from wherever each letter
+    // currently is, rather than jumping to the end of the old transition. Updates that arrive less than a frame
+    // after the previous one are held until the next frame and only the newest is shown, so getText() can lag
+    // behind toggleText() by a frame.
+    public void setRetargetEnabled(boolean enabled) {
+        retarget = enabled;
+        updateThrottler();
+    }
+
+    public boolean isRetargetEnabled() {
+        return retarget;
+    }
+
+    // Wraps text to the view's width and breaks it at newlines. Only the lines an edit touches are broken again,
+    // and letters that end up on another line move there along a single path. Uses the same line height as
+    // TextView, but the view is still measured by TextView, so keep its line spacing at the default.
+    public void setMultiLineEnabled(boolean enabled) {
+        multiLine = enabled;
+        linesUniform = false;
+        staticLayer.invalidate();
+        idleRuns.invalidate();
+        invalidate();
+    }
+
+    public boolean isMultiLineEnabled() {
+        return multiLine;
+    }
+
+    // Draws text that's only a number (digits, separators, signs and currency symbols, without styling spans) with
+    // every digit the same width, and rolls the digits that change instead of running a full transition. Updates
+    // cost as much as the number of digits that changed. The show animation's duration and interpolator time the
+    // roll, spacing isn't used. Other text still gets normal transitions.
+    public void setNumericEnabled(boolean enabled) {
+        numeric = enabled;
+        if (!enabled) {
+            if (ticker.isRunning()) {
+                endMetrics(clock.currentAnimationTimeMillis() - metrics.startMillis, true);
+            }
+            ticker.stop();
+        }
+        staticLayer.invalidate();
+        invalidate();
+    }
+
+    public boolean isNumericEnabled() {
+        return numeric;
+    }
+
+    private boolean drawsNumeric(CharSequence text) {
+        return numeric && NumericTicker.canTick(text);
+    }
+
+    // Limits how often toggleText actually starts a transition. With UPDATE_NEXT_FRAME, updates are held until the
+    // next frame. With a positive interval, at most one update is shown per interval. Either way only the newest
+    // text is shown and the rest are dropped. UPDATE_IMMEDIATE (the default) starts every update right away.
+    public void setUpdateInterval(int millis) {
+        if (millis < UPDATE_IMMEDIATE) {
+            throw new IllegalArgumentException("Invalid update interval: " + millis);
+        }
+        updateInterval = millis;
+        updateThrottler();
+    }
+
+    public int getUpdateInterval() {
+        return updateInterval;
+    }
+
+    // The number of toggleText calls that were replaced by a newer one before they were shown.
+    public long getDroppedUpdateCount() {
+        return throttler.getDroppedCount();
+    }
+
+    public void resetDroppedUpdateCount() {
+        throttler.resetDroppedCount();
+    }
+
+    private void updateThrottler() {
+        if (updateInterval == UPDATE_IMMEDIATE) {
+            // Retargeting still merges updates less than a frame apart.
+            throttler.setInterval(retarget ? FRAME_MILLIS : TextUpdateThrottler.ASAP);
+        } else {
+            throttler.setInterval(updateInterval);
+        }
+    }
+
+    // Opt in reporting of how expensive transitions are. Callbacks happen on the UI thread, from inside toggleText
+    // and onDraw, so they should be cheap.
+    public interface OnTransitionMetricsListener {
+        void onToggle(long setupNanos, int transitionCount, int changedCount);
+        void onFrame(long drawNanos, int transitionCount, int movingCount);
+        // Also called, with metrics.isInterrupted() set, when a new transition replaces one that hasn't finished.
+        // metrics is reused for the next transition.
+        void onTransitionEnd(TransitionMetrics metrics);
+    }
+
+    // A listener set while a transition is running didn't see it start, so it's only told about the next one.
+    public void setOnTransitionMetricsListener(@Nullable OnTransitionMetricsListener listener) {
+        if (listener != metricsListener) {
+            metrics.reset();
+            metricsRunning = false;
+        }
+        metricsListener = listener;
+    }
+
+    // Replaces the clock transitions are timed with. Pass null to go back to the animation clock.
+    public void setAnimationClock(@Nullable AnimationClock clock) {
+        this.clock = clock != null ? clock : SYSTEM_CLOCK;
+    }
+
+    // What drives a transition from frame to frame.
+    public enum AnimationEngine {
+        // onDraw works out where each glyph is from the baked Animations and invalidates the view again.
+        VIEW_ANIMATION,
+        // A single Choreographer frame callback evaluates every glyph's alpha, translation, scale, rotation and
+        // color once per frame, and onDraw only draws the result. Needs API 16, older releases use VIEW_ANIMATION.
+        FRAME_CALLBACK
+    }
+
+    public void setAnimationEngine(AnimationEngine engine) {
+        if (this.engine == engine) {
+            return;
+        }
+        if (frameDriver != null) {
+            frameDriver.stop();
+        }
+        this.engine = engine;
+        framesStale = true;
+        if (!transitions.isEmpty()) {
+            startAnimating();
+        }
+    }
+
+    public AnimationEngine getAnimationEngine() {
+        return engine;
+    }
+
+    private boolean usesFrameCallback() {
+        return engine == AnimationEngine.FRAME_CALLBACK && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    // How letters that change color are blended. Both blend each channel separately.
+    public enum ColorInterpolation {
+        // Blend the sRGB values directly.
+        SRGB,
+        // Blend in linear light. Midpoints stay brighter, which usually looks more natural.
+        LINEAR
+    }
+
+    public void setColorInterpolation(ColorInterpolation interpolation) {
+        colorInterpolation = interpolation;
+    }
+
+    public ColorInterpolation getColorInterpolation() {
+        return colorInterpolation;
+    }
+
+    // Whether transitions are drawn on layers. Only transitions whose animations rotate or scale glyphs benefit.
+    public enum LayerPolicy {
+        // Never use a layer.
+        NONE,
+        // Per-glyph layers when a few glyphs are changing. Transitions that change many glyphs, only fade or move
+        // them, or draw them from a GlyphAtlas don't get any.
+        AUTO,
+        // Render each transformed glyph into a bitmap once and draw that instead of the text, unless so many glyphs
+        // are changing that rendering them would cost more than it saves.
+        GLYPH,
+        // Put the whole view on a hardware layer, or a software one if the window isn't hardware accelerated.
+        VIEW
+    }
+
+    public void setLayerPolicy(LayerPolicy policy) {
+        layerPolicy = policy;
+    }
+
+    public LayerPolicy getLayerPolicy() {
+        return layerPolicy;
+    }
+
+    // Counts of the layers the policy chose.
+    public LayerStats getLayerStats() {
+        return layerStats;
+    }
+
+    // True while letters are animating or digits are rolling.
+    boolean isTransitioning() {
+        return !transitions.isEmpty() || ticker.isRunning();
+    }
+
+    // Draws letters whose size is animating, e.g. during setTextSize, or that are rotated or scaled by the show and
+    // hide animations, from bitmaps rendered once at the largest size they reach instead of as text at every size
+    // in between. An atlas can be shared between views.
+    public void setGlyphAtlas(@Nullable GlyphAtlas atlas) {
+        glyphAtlas = atlas;
+        viewGlyphAtlas = atlas;
+        invalidate();
+    }
+
+    // Uses an atlas shared by every view in the process, or stops using one.
+    public void setGlyphAtlasEnabled(boolean enabled) {
+        setGlyphAtlas(enabled ? GlyphAtlas.getShared(getContext()) : null);
+    }
+
+    @Nullable
+    public GlyphAtlas getGlyphAtlas() {
+        return glyphAtlas;
+    }
+
+    // How characters in the old text are paired with characters in the new text.
+    public enum Alignment {
+        // Pair characters by their position in the string.
+        INDEX,
+        // Pair characters using a minimal edit script, so characters that survive an edit slide to their new
+        // position instead of being hidden and shown again.
+        MINIMAL_EDIT
+    }
+
     public enum TransitionDirection {
         LEFT(1),
         RIGHT(-1),
@@ -87,6 +440,12 @@ public class AnimatedTextView extends TextView {
                 case R.styleable.AnimatedTextView_spacing:
                     setSpacing(a.getInteger(attr, spacing));
                     break;
+                case R.styleable.AnimatedTextView_maxStaggerDuration:
+                    setMaxStaggerDuration(a.getInteger(attr, (int) maxStaggerDuration));
+                    break;
+                case R.styleable.AnimatedTextView_staggerWaveSize:
+                    setStaggerWaveSize(a.getInteger(attr, staggerWaveSize));
+                    break;
                 case R.styleable.AnimatedTextView_showAnimation: {
                     int res = a.getResourceId(attr, 0);
                     setShowAnimation(res);
@@ -97,6 +456,45 @@ public class AnimatedTextView extends TextView {
                     setHideAnimation(res);
                     break;
                 }
+                case R.styleable.AnimatedTextView_showPreset:
+                    setShowPreset(a.getString(attr));
+                    break;
+                case R.styleable.AnimatedTextView_hidePreset:
+                    setHidePreset(a.getString(attr));
+                    break;
+                case R.styleable.AnimatedTextView_alignment:
+                    setAlignment(Alignment.values()[a.getInt(attr, alignment.ordinal())]);
+                    break;
+                case R.styleable.AnimatedTextView_staticGlyphCache:
+                    setStaticGlyphCacheEnabled(a.getBoolean(attr, staticGlyphCache));
+                    break;
+                case R.styleable.AnimatedTextView_retarget:
+                    setRetargetEnabled(a.getBoolean(attr, retarget));
+                    break;
+                case R.styleable.AnimatedTextView_updateInterval:
+                    setUpdateInterval(a.getInteger(attr, updateInterval));
+                    break;
+                case R.styleable.AnimatedTextView_animationEngine:
+                    setAnimationEngine(AnimationEngine.values()[a.getInt(attr, engine.ordinal())]);
+                    break;
+                case R.styleable.AnimatedTextView_colorInterpolation:
+                    setColorInterpolation(ColorInterpolation.values()[a.getInt(attr, colorInterpolation.ordinal())]);
+                    break;
+                case R.styleable.AnimatedTextView_dirtyRegions:
+                    setDirtyRegionsEnabled(a.getBoolean(attr, dirtyRegions));
+                    break;
+                case R.styleable.AnimatedTextView_multiLine:
+                    setMultiLineEnabled(a.getBoolean(attr, multiLine));
+                    break;
+                case R.styleable.AnimatedTextView_numeric:
+                    setNumericEnabled(a.getBoolean(attr, numeric));
+                    break;
+                case R.styleable.AnimatedTextView_layerPolicy:
+                    setLayerPolicy(LayerPolicy.values()[a.getInt(attr, layerPolicy.ordinal())]);
+                    break;
+                case R.styleable.AnimatedTextView_glyphAtlas:
+                    setGlyphAtlasEnabled(a.getBoolean(attr, glyphAtlas != null));
+                    break;
             }
         }
         a.recycle();
@@ -112,19 +510,26 @@ public class AnimatedTextView extends TextView {
 
     @Override
     public void setTextSize(float size) {
+        flushPendingText();
         fromSize = getTextSize();
         final float scale = getResources().getDisplayMetrics().density;
         toSize = size * scale;
 
-        toggleText(getText());
+        startTransition(getText());
 
         fromSize = toSize = null;
         super.setTextSize(size);
+        paint.setTextSize(getTextSize());
     }
 
     private void init() {
         paint.setTextSize(getTextSize());
+        paint.setTypeface(getTypeface());
         paint.setColor(Color.BLACK);
+
+        // The default animations are created before the constructor runs and haven't been baked yet.
+        if (showCurve == null && showAnimation != null) setShowAnimation(showAnimation);
+        if (hideCurve == null && hideAnimation != null) setHideAnimation(hideAnimation);
     }
 
     public void setSpacing(int spacing) {
@@ -134,8 +539,30 @@ public class AnimatedTextView extends TextView {
     public void setDuration(int duration) {
         this.duration = duration;
 
-        if (showAnimation != null) showAnimation.setDuration(duration);
-        if (hideAnimation != null) hideAnimation.setDuration(duration);
+        // Animations shared through a style can't be changed. Stretch their curves instead.
+        if (showAnimation != null) {
+            if (style != null && showAnimation == style.getShowAnimation()) {
+                showCurve = style.getShowCurve().withDuration(duration);
+            } else {
+                showAnimation.setDuration(duration);
+                showCurve = AnimationCurve.bake(showAnimation);
+            }
+        }
+        if (hideAnimation != null) {
+            if (style != null && hideAnimation == style.getHideAnimation()) {
+                hideCurve = style.getHideCurve().withDuration(duration);
+            } else {
+                hideAnimation.setDuration(duration);
+                hideCurve = AnimationCurve.bake(hideAnimation);
+            }
+        }
+        // Presets are shared too, stretch them the same way.
+        if (showPreset != null) {
+            showCurve = showPreset.getCurve().withDuration(duration);
+        }
+        if (hidePreset != null) {
+            hideCurve = hidePreset.getCurve().withDuration(duration);
+        }
     }
 
     public int getDuration() {
@@ -146,6 +573,152 @@ public class AnimatedTextView extends TextView {
         return spacing;
     }
 
+    // Caps how long after the first letter the last one starts, so long text doesn't take longer and longer to
+    // change. Letters start closer together than the spacing if they have to. StaggerSchedule.NO_LIMIT for no cap.
+    public void setMaxStaggerDuration(long maxStaggerDuration) {
+        this.maxStaggerDuration = maxStaggerDuration;
+    }
+
+    public long getMaxStaggerDuration() {
+        return maxStaggerDuration;
+    }
+
+    // Starts letters in groups of waveSize at a time, each group spacing ms after the last.
+    public void setStaggerWaveSize(int waveSize) {
+        if (waveSize < 1) {
+            throw new IllegalArgumentException("Stagger wave size must be at least 1");
+        }
+        staggerWaveSize = waveSize;
+    }
+
+    public int getStaggerWaveSize() {
+        return staggerWaveSize;
+    }
+
+    // Renders text that isn't changing into an offscreen bitmap, both while idle and for the letters that stay put
+    // during a transition. Costs a view sized bitmap, but each frame only has to draw the letters that move.
+    public void setStaticGlyphCacheEnabled(boolean enabled) {
+        staticGlyphCache = enabled;
+        if (!enabled) {
+            staticLayer.release();
+        }
+        invalidate();
+    }
+
+    public boolean isStaticGlyphCacheEnabled() {
+        return staticGlyphCache;
+    }
+
+    // Limits each frame of a transition to the letters that are animating. Letters that have finished or haven't
+    // started yet are kept in an offscreen bitmap, and only the area around the animating ones is invalidated and
+    // redrawn. Costs a view sized bitmap. Animations that scale, rotate or translate letters still invalidate
+    // the whole view, since the area they cover isn't tracked.
+    public void setDirtyRegionsEnabled(boolean enabled) {
+        dirtyRegions = enabled;
+        staticLayer.invalidate();
+        invalidate();
+    }
+
+    public boolean isDirtyRegionsEnabled() {
+        return dirtyRegions;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        staticLayer.invalidate();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (!transitions.isEmpty()) {
+            startAnimating();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        staticLayer.release();
+        ticker.release();
+        if (frameDriver != null) {
+            frameDriver.stop();
+        }
+        removeCallbacks(releaseLayers);
+        releaseLayers();
+        layers.clear();
+        // A layout or update that arrives after the view is gone, or rebound to other text, is out of date.
+        if (planner != null) {
+            planner.cancel();
+        }
+        throttler.cancel();
+    }
+
+    // Takes its animations, timing, paint settings and glyph cache from a shared style. Nothing is inflated or
+    // baked, so this is cheap enough to call every time a list cell is bound. Setters called afterwards only
+    // affect this view.
+    public void setAnimatedTextStyle(AnimatedTextStyle style) {
+        if (style == null) {
+            throw new IllegalArgumentException("AnimatedTextStyle can't be null");
+        }
+        this.style = style;
+        duration = style.getDuration();
+        spacing = style.getSpacing();
+        showAnimation = style.getShowAnimation();
+        hideAnimation = style.getHideAnimation();
+        showPreset = style.getShowPreset();
+        hidePreset = style.getHidePreset();
+        showCurve = style.getShowCurve();
+        hideCurve = style.getHideCurve();
+        alignment = style.getAlignment();
+        direction = style.getDirection();
+        glyphCache = style.getGlyphAdvanceCache();
+        // Don't keep the atlas of a style the view was bound to before.
+        glyphAtlas = style.getGlyphAtlas() != null ? style.getGlyphAtlas() : viewGlyphAtlas;
+        // Whatever the style leaves unset comes from the view, not from a style it was bound to before. The view's
+        // own paint isn't antialiased.
+        paint.setTypeface(getTypeface());
+        paint.setAntiAlias(false);
+        style.applyTo(paint);
+        onPaintChanged();
+    }
+
+    @Override
+    public void setTypeface(@Nullable Typeface tf) {
+        super.setTypeface(tf);
+        // TextView's constructor sets the typeface before this view's fields are.
+        if (paint != null) {
+            paint.setTypeface(tf);
+            onPaintChanged();
+        }
+    }
+
+    // The paint's typeface or flags changed, so anything measured or rendered with the old one has to be redone.
+    private void onPaintChanged() {
+        linesUniform = false;
+        staticLayer.invalidate();
+        idleRuns.invalidate();
+        invalidate();
+    }
+
+    @Nullable
+    public AnimatedTextStyle getAnimatedTextStyle() {
+        return style;
+    }
+
+    // Views showing similar text can share a cache so they only measure each glyph once.
+    public void setGlyphAdvanceCache(GlyphAdvanceCache cache) {
+        if (cache == null) {
+            throw new IllegalArgumentException("GlyphAdvanceCache can't be null");
+        }
+        glyphCache = cache;
+    }
+
+    public GlyphAdvanceCache getGlyphAdvanceCache() {
+        return glyphCache;
+    }
+
     public void setAnimations(@AnimRes int in, @AnimRes int out) {
         final Resources res = getResources();
         final Animation inAnim = AnimationUtils.loadAnimation(getContext(), in);
@@ -173,6 +746,8 @@ public class AnimatedTextView extends TextView {
             animation.setDuration(duration);
         }
         this.showAnimation = animation;
+        this.showCurve = animation != null ? AnimationCurve.bake(animation) : null;
+        showPreset = null;
     }
 
     public Animation getShowAnimation() {
@@ -194,36 +769,66 @@ public class AnimatedTextView extends TextView {
             animation.setDuration(duration);
         }
         hideAnimation = animation;
+        hideCurve = animation != null ? AnimationCurve.bake(animation) : null;
+        hidePreset = null;
     }
 
     public Animation getHideAnimation() {
         return hideAnimation;
     }
 
-    private static class Transition {
-        float fromPosition;
-        float toPosition;
+    // Uses animations compiled from res/anim when the app was built, by file name, e.g. "fade_in". Nothing is
+    // inflated, and each preset is only loaded once, so switching between presets is cheap.
+    public void setPresets(String show, String hide) {
+        setShowPreset(show);
+        setHidePreset(hide);
+    }
 
-        Character from;
-        Character to;
+    public void setShowPreset(@Nullable String name) {
+        setShowPreset(name != null ? AnimationPreset.get(getContext(), name) : null);
+    }
 
-        public Integer fromColor = null;
-        public Integer toColor = null;
-        public Float fromSize = null;
-        public Float toSize = null;
-        public float fromWidth = 0;
-        public float toWidth = 0;
+    // getShowAnimation returns null while a preset is used.
+    public void setShowPreset(@Nullable AnimationPreset preset) {
+        showPreset = preset;
+        showAnimation = null;
+        showCurve = preset != null ? getPresetCurve(preset) : null;
+    }
 
-        public String toString() {
-            return "Transition from " + from + "(" + fromPosition + ") to " + to + " (" + toPosition + ")";
-        }
+    @Nullable
+    public AnimationPreset getShowPreset() {
+        return showPreset;
+    }
 
-        public boolean isBoring() {
-            return fromPosition == toPosition &&
-                    from == to &&
-                    fromColor == toColor &&
-                    fromSize == toSize;
-        }
+    public void setHidePreset(@Nullable String name) {
+        setHidePreset(name != null ? AnimationPreset.get(getContext(), name) : null);
+    }
+
+    public void setHidePreset(@Nullable AnimationPreset preset) {
+        hidePreset = preset;
+        hideAnimation = null;
+        hideCurve = preset != null ? getPresetCurve(preset) : null;
+    }
+
+    @Nullable
+    public AnimationPreset getHidePreset() {
+        return hidePreset;
+    }
+
+    @Nullable
+    AnimationCurve getShowCurve() {
+        return showCurve;
+    }
+
+    @Nullable
+    AnimationCurve getHideCurve() {
+        return hideCurve;
+    }
+
+    // Presets without a duration take the view's, like animations do.
+    private AnimationCurve getPresetCurve(AnimationPreset preset) {
+        final AnimationCurve curve = preset.getCurve();
+        return curve.getDuration() == 0 ? curve.withDuration(duration) : curve;
     }
 
     private enum Destination {
@@ -252,97 +857,368 @@ public class AnimatedTextView extends TextView {
         return getTextSize();
     }
 
-    public Transition addTransitionFor(CharSequence fromChars, CharSequence toChars,
-                                       int fromIndex, int toIndex,
-                                       float fromPosition, float toPosition) {
-        Character to = null;
-        if (toIndex >= 0 && toIndex < toChars.length()) {
-            to = toChars.charAt(toIndex);
+    // Can be called from any thread. Updates from other threads are handed to the UI thread.
+    public void toggleText(CharSequence text) {
+        // This can be called during initialization, before the throttler is created.
+        if (throttler == null) {
+            startTransition(text);
+            return;
         }
 
-        Character from = null;
-        if (fromIndex >= 0 && fromIndex < fromChars.length()) {
-            from = fromChars.charAt(fromIndex);
-        } else {
-            fromPosition = toPosition;
+        if (updateInterval == UPDATE_IMMEDIATE && !retarget && Looper.myLooper() == Looper.getMainLooper()) {
+            // Anything still on its way from another thread is older than this.
+            throttler.cancel();
+            startTransition(text);
+            return;
         }
 
-        Transition transition = addTransition(from, to, fromPosition, toPosition);
-        // onDraw uses colors to determine if it should transition or not. Make sure we set one for now...
-        // XXX - onDraw should be smarter here
-        transition.fromColor = getForegroundColor(fromChars, fromIndex, getColor(Destination.FROM));
-        transition.fromSize = getTextSize(fromChars, fromIndex, getTextSize(Destination.FROM));
+        throttler.offer(text);
+    }
 
-        transition.toColor = getForegroundColor(toChars, toIndex, getColor(Destination.TO));
-        transition.toSize = getTextSize(toChars, toIndex, getTextSize(Destination.TO));
+    private void flushPendingText() {
+        if (throttler != null) {
+            throttler.flush();
+        }
+    }
 
-        // Log.i(LOGTAG, "From " + fromPosition + ", " + toPosition);
+    // Text set directly replaces anything that was on its way to the view. A layout still being planned would
+    // animate from the old text to an older target once it's ready, and a throttled update would replace it. Held
+    // updates that are thrown away count as dropped, like ones a newer toggleText replaces.
+    @Override
+    public void setText(CharSequence text, BufferType type) {
+        // TextView's constructor sets the text before this class's fields are.
+        if (!settingTransitionText) {
+            if (planner != null) {
+                planner.cancel();
+            }
+            if (throttler != null) {
+                throttler.cancel();
+            }
+        }
+        super.setText(text, type);
+    }
 
-        return transition;
+    private void setTransitionText(CharSequence text) {
+        settingTransitionText = true;
+        setText(text);
+        settingTransitionText = false;
     }
 
-    private float measureText(Float fromSize, Character c) {
-        if (c == null) {
-            return 0;
+    private void startTransition(CharSequence text) {
+        // This can be called during initialization, before this is created.
+        if (transitions == null) {
+            setTransitionText(text);
+            return;
+        }
+
+        // Anything being laid out in the background is older than this.
+        if (planner != null) {
+            planner.cancel();
         }
-        paint.setTextSize(fromSize);
-        return paint.measureText("" + c, 0, 1);
+
+        // Numbers roll in place. Size and color changes still go through a full transition.
+        if (drawsNumeric(text) && drawsNumeric(getText()) && toGravity == null &&
+                getTextSize(Destination.FROM) == getTextSize(Destination.TO) &&
+                getColor(Destination.FROM) == getColor(Destination.TO)) {
+            startNumericTransition(text);
+            return;
+        }
+        ticker.stop();
+
+        final long setupStart = System.nanoTime();
+        final boolean retargeting = beginTransition();
+
+        CharSequence current = getText();
+        final float density = getResources().getDisplayMetrics().density;
+        fromSpans.build(current, getColor(Destination.FROM), getTextSize(Destination.FROM), density);
+        toSpans.build(text, getColor(Destination.TO), getTextSize(Destination.TO), density);
+
+        toggleText(text, current);
+
+        finishTransition(text, current.length(), retargeting, direction == TransitionDirection.RANDOM,
+                System.nanoTime() - setupStart);
     }
 
-    private int getForegroundColor(CharSequence chars, int position, int defaultColor) {
-        if (chars instanceof Spanned) {
-            Spanned spanned = (Spanned) chars;
-            Object[] spans = spanned.getSpans(position, position+1, Object.class);
-            for (Object span : spans) {
-                if (span instanceof ForegroundColorSpan) {
-                    return ((ForegroundColorSpan) span).getForegroundColor();
-                }
+    private void startNumericTransition(CharSequence text) {
+        final OnTransitionMetricsListener listener = metricsListener;
+        final long setupStart = listener != null ? System.nanoTime() : 0;
+        final long now = clock.currentAnimationTimeMillis();
+        endMetrics(now - metrics.startMillis, true);
+
+        // A full transition that's still going is cut short. The odometer starts from the text as it is.
+        if (!transitions.isEmpty()) {
+            transitions.clear();
+            previousTransitions.clear();
+            staticLayer.invalidate();
+            framesStale = true;
+        }
+
+        final int prevColor = paint.getColor();
+        final float prevSize = paint.getTextSize();
+        paint.setColor(getCurrentTextColor());
+        paint.setTextSize(getTextSize());
+        final int changedCount = ticker.start(getText(), text, paint, now, showCurve, duration);
+        paint.setColor(prevColor);
+        paint.setTextSize(prevSize);
+
+        if (listener != null) {
+            startMetrics(listener, System.nanoTime() - setupStart, text.length(), changedCount, now);
+            // Nothing rolls if the number didn't change, so there won't be a last frame to end on.
+            if (!ticker.isRunning()) {
+                endMetrics(0, false);
             }
         }
-        return defaultColor;
+
+        setTransitionText(text);
+        invalidate();
     }
 
-    private float getTextSize(CharSequence chars, int position, float defaultSize) {
-        if (chars instanceof Spanned) {
-            Spanned spanned = (Spanned) chars;
-            Object[] spans = spanned.getSpans(position, position+1, Object.class);
-            for (Object span : spans) {
-                if (span instanceof TextAppearanceSpan) {
-                    return ((TextAppearanceSpan) span).getTextSize();
+    // Like toggleText, but the new layout is worked out on a background thread against a snapshot of the current
+    // text and paint. The transition starts once it's ready. If the text changes again before then, the older
+    // layout is thrown away. Can be called from any thread.
+    public void toggleTextAsync(final CharSequence text) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    toggleTextAsync(text);
                 }
+            });
+            return;
+        }
+
+        // Anything waiting in the throttler is older than this.
+        throttler.cancel();
+        // Rolling a number is cheap enough to start right away.
+        if (drawsNumeric(text) && drawsNumeric(getText())) {
+            startTransition(text);
+            return;
+        }
+        if (planner == null) {
+            planner = new TransitionPlanner(new TransitionPlanner.Target() {
+                @Override
+                public void onPlanReady(TransitionPlan plan) {
+                    applyPlan(plan);
+                }
+            });
+        }
+
+        final TransitionPlan plan = planner.obtain();
+        plan.from = snapshot(getText());
+        plan.to = snapshot(text);
+        plan.fromColor = getColor(Destination.FROM);
+        plan.toColor = getColor(Destination.TO);
+        plan.fromSize = getTextSize(Destination.FROM);
+        plan.toSize = getTextSize(Destination.TO);
+        plan.density = getResources().getDisplayMetrics().density;
+
+        final int toGrav = getGravity(Destination.TO);
+        final int fromGrav = getGravity(Destination.FROM);
+        plan.fromAlign = getAlign(fromGrav);
+        plan.toAlign = getAlign(toGrav);
+        plan.direction = getLayoutDirection(toGrav, fromGrav);
+        plan.minimalEdit = alignment == Alignment.MINIMAL_EDIT;
+        plan.multiLine = multiLine;
+        plan.wrapWidth = getWrapWidth();
+        plan.lineSpacing = getLineSpacing();
+        plan.shuffle = direction == TransitionDirection.RANDOM;
+        plan.width = getWidth();
+        plan.paddingLeft = getPaddingLeft();
+        plan.paddingRight = getPaddingRight();
+        plan.glyphCache = glyphCache;
+        plan.paint.set(paint);
+
+        planner.submit(plan);
+    }
+
+    // A copy of text that's safe to read from another thread.
+    private static CharSequence snapshot(@Nullable CharSequence text) {
+        if (text == null) {
+            return "";
+        }
+        return text instanceof Spanned ? new SpannedString(text) : text.toString();
+    }
+
+    private void applyPlan(TransitionPlan plan) {
+        final long applyStart = System.nanoTime();
+        final boolean retargeting = retarget && !transitions.isEmpty();
+
+        // Swap the plan's buffer in. The one it replaces goes back to the plan to be reused.
+        final TransitionBuffer planned = plan.transitions;
+        if (retargeting) {
+            plan.transitions = previousTransitions;
+            previousTransitions = transitions;
+        } else {
+            plan.transitions = transitions;
+        }
+        transitions = planned;
+
+        finishTransition(plan.to, plan.from.length(), retargeting, false,
+                plan.setupNanos + System.nanoTime() - applyStart);
+    }
+
+    // Keeps the interrupted transition around so the new one can start from it. Returns true if it did.
+    private boolean beginTransition() {
+        final boolean retargeting = retarget && !transitions.isEmpty();
+        if (retargeting) {
+            final TransitionBuffer old = previousTransitions;
+            previousTransitions = transitions;
+            transitions = old;
+        }
+        transitions.clear();
+        return retargeting;
+    }
+
+    // Starts animating the transitions that have just been laid out.
+    private void finishTransition(CharSequence text, int fromLength, boolean retargeting, boolean shuffle,
+                                  long setupNanos) {
+        final OnTransitionMetricsListener listener = metricsListener;
+        final long finishStart = listener != null ? System.nanoTime() : 0;
+        final long now = clock.currentAnimationTimeMillis();
+        endMetrics(now - metrics.startMillis, true);
+
+        if (retargeting) {
+            retargetFrom(previousTransitions, now - animationStartTime, fromLength);
+            previousTransitions.clear();
+        }
+
+        if (shuffle) {
+            transitions.shuffle(random);
+        }
+        transitions.buildGradients(colorInterpolation == ColorInterpolation.LINEAR);
+
+        int changedCount = 0;
+        for (int i = 0; i < transitions.size(); i++) {
+            if (!transitions.isBoring(i)) {
+                changedCount++;
             }
         }
-        return defaultSize;
+        chooseLayers(changedCount);
+
+        // Retargeting needed the old schedule, so this comes after it.
+        schedule.build(transitions.size(), spacing, staggerWaveSize, maxStaggerDuration);
+        glyphFrames.invalidate();
+        animationStartTime = now;
+        staticLayer.invalidate();
+        idleRuns.invalidate();
+
+        if (listener != null) {
+            startMetrics(listener, setupNanos + System.nanoTime() - finishStart, transitions.size(), changedCount,
+                    now);
+        }
+
+        setTransitionText(text);
+        framesStale = true;
+        startAnimating();
     }
 
-    public void toggleText(CharSequence text) {
-        // This can be called during initialization, before this is created.
-        if (transitions == null) {
-            setText(text);
+    private void startMetrics(OnTransitionMetricsListener listener, long setupNanos, int transitionCount,
+                              int changedCount, long now) {
+        metrics.reset();
+        metrics.setupNanos = setupNanos;
+        metrics.droppedUpdates = droppedUpdates;
+        metrics.transitionCount = transitionCount;
+        metrics.changedCount = changedCount;
+        metrics.startMillis = now;
+        metricsRunning = true;
+        listener.onToggle(metrics.setupNanos, metrics.transitionCount, metrics.changedCount);
+    }
+
+    // Tells the listener the running transition is over, if it was told the transition started.
+    private void endMetrics(long durationMillis, boolean interrupted) {
+        final OnTransitionMetricsListener listener = metricsListener;
+        if (listener == null || !metricsRunning) {
             return;
         }
-        transitions.clear();
+        metricsRunning = false;
+        metrics.durationMillis = durationMillis;
+        metrics.interrupted = interrupted;
+        listener.onTransitionEnd(metrics);
+    }
 
-        CharSequence current = getText();
-        toggleText(text, current);
+    private void chooseLayers(int changedCount) {
+        final boolean transformed = (showCurve != null && showCurve.hasMatrix()) ||
+                (hideCurve != null && hideCurve.hasMatrix());
+        final LayerStats.Layer layer = TransitionLayers.choose(layerPolicy, transformed, changedCount,
+                isHardwareAccelerated(), glyphAtlas != null);
+        removeCallbacks(releaseLayers);
+        layers.begin(layer, transitions, paint);
+
+        if (layer == LayerStats.Layer.HARDWARE || layer == LayerStats.Layer.SOFTWARE) {
+            if (savedLayerType < 0) {
+                savedLayerType = getLayerType();
+            }
+            final int type = layer == LayerStats.Layer.HARDWARE ? LAYER_TYPE_HARDWARE : LAYER_TYPE_SOFTWARE;
+            if (getLayerType() != type) {
+                setLayerType(type, null);
+            }
+        } else {
+            restoreLayerType();
+        }
+    }
+
+    private void releaseLayers() {
+        layers.release();
+        restoreLayerType();
+    }
 
-        if (direction == TransitionDirection.RANDOM) {
-            Collections.shuffle(transitions);
+    private void restoreLayerType() {
+        if (savedLayerType < 0) {
+            return;
         }
+        if (getLayerType() != savedLayerType) {
+            setLayerType(savedLayerType, null);
+        }
+        savedLayerType = -1;
+    }
 
-        if (showAnimation != null) {
-            showAnimation.startNow();
+    private void startAnimating() {
+        if (usesFrameCallback()) {
+            if (frameDriver == null) {
+                frameDriver = new FrameCallbackDriver(new FrameCallbackDriver.Target() {
+                    @Override
+                    public boolean onAnimationFrame(long frameTimeMillis) {
+                        // Frame times are on the animation clock. Any other clock is read directly.
+                        return evaluateFrame(clock == SYSTEM_CLOCK ? frameTimeMillis
+                                : clock.currentAnimationTimeMillis());
+                    }
+                });
+            }
+            frameDriver.start();
+            invalidate();
+        } else {
+            postInvalidateOnAnimation();
         }
-        hideAnimation.startNow();
+    }
 
-        setText(text);
-        postInvalidateOnAnimation();
+    // Works out every glyph for this frame. Returns true if there'll be more frames after this one.
+    private boolean evaluateFrame(long frameTimeMillis) {
+        if (transitions.isEmpty()) {
+            return false;
+        }
+        evaluateFrames(frameTimeMillis - animationStartTime);
+        if (dirtyRegions && staticLayer.isValid()) {
+            invalidateActive(framesElapsed, true);
+        } else {
+            invalidate();
+        }
+        return !schedule.isFinished(framesElapsed, getAnimationDuration());
+    }
+
+    private void evaluateFrames(long elapsed) {
+        framesMoving = glyphFrames.evaluate(transitions, elapsed, schedule,
+                showCurve != null ? showCurve.getPropertyCurve() : null,
+                hideCurve != null ? hideCurve.getPropertyCurve() : null,
+                autoSlide, getWidth(), getHeight());
+        framesElapsed = elapsed;
+        framesStale = false;
     }
 
     @Override
     public void setGravity(int gravity) {
+        flushPendingText();
         toGravity = gravity;
-        toggleText(getText());
+        startTransition(getText());
         toGravity = null;
         super.setGravity(gravity);
     }
@@ -369,89 +1245,75 @@ public class AnimatedTextView extends TextView {
         return hgrav == Gravity.CENTER_HORIZONTAL;
     }
 
-    private float getWidth(CharSequence text, float defaultSize) {
-        float width = 0;
-        for (int i = 0; i < text.length(); i++) {
-            float size = getTextSize(text, i, defaultSize);
-            width += measureText(size, text.charAt(i));
-        }
-        return width;
-    }
-
     private void toggleText(CharSequence to, CharSequence from) {
         final int toGrav = getGravity(Destination.TO);
         final int fromGrav = getGravity(Destination.FROM);
-        final TransitionDirection direction = getTransitionDirection(toGrav, fromGrav);
-
-        float toPosition = isRightGravity(toGrav) ? getWidth() - getPaddingRight() : getPaddingLeft();
-        float fromPosition = isRightGravity(fromGrav) ? getWidth() - getPaddingRight() : getPaddingLeft();
-
-        float defaultFromSize = getTextSize(Destination.FROM);
-        float defaultToSize = getTextSize(Destination.TO);
-
-        if (isCenterGravity(fromGrav)) {
-            fromPosition = (getWidth() - getWidth(from, defaultFromSize))/2;
-        }
-
-        if (isCenterGravity(toGrav)) {
-            toPosition = (getWidth() - getWidth(to, defaultToSize))/2;
-        }
-
-        if (direction == TransitionDirection.GRAVITY) {
-            if (isRightGravity(fromGrav) && direction == TransitionDirection.LEFT) {
-                fromPosition -= getWidth(from, defaultFromSize);
-            } else if (isLeftGravity(fromGrav) || isRightGravity(toGrav)) {
-                fromPosition += getWidth(from, defaultFromSize);
-                if (isCenterGravity(toGrav)) {
-                    toPosition += getWidth(to, defaultToSize);
-                }
-            }
-        } else if (direction == TransitionDirection.LEFT || direction == TransitionDirection.RANDOM) {
-            if (isRightGravity(toGrav)) {
-                toPosition -= getWidth(to, defaultToSize);
-            }
-            if (isRightGravity(fromGrav)) {
-                fromPosition -= getWidth(from, defaultFromSize);
-            }
-        } else if (direction == TransitionDirection.RIGHT) {
-            if (isLeftGravity(toGrav) || isCenterGravity(toGrav)) {
-                toPosition += getWidth(to, defaultToSize);
-            }
-            if (isLeftGravity(fromGrav) || isCenterGravity(fromGrav)) {
-                fromPosition += getWidth(from, defaultFromSize);
+        final TransitionLayout.Direction direction = getLayoutDirection(toGrav, fromGrav);
+
+        layout.setBounds(getWidth(), getPaddingLeft(), getPaddingRight());
+        if (multiLine) {
+            final LineLayout fromLines = getCurrentLines(from, fromSpans, getTextSize(Destination.FROM));
+            nextLines.setLineSpacing(getLineSpacing());
+            // Lines can only be reused if every character in both texts is the same size.
+            if (linesUniform && toSpans.hasUniformSize() && getTextSize(Destination.TO) == linesTextSize) {
+                nextLines.layoutIncremental(fromLines, to, toSpans, getWrapWidth());
+            } else {
+                nextLines.layout(to, toSpans, getWrapWidth());
             }
+            layout.layoutLines(from, fromSpans, fromLines, getAlign(fromGrav), to, toSpans, nextLines, getAlign(toGrav),
+                    alignment == Alignment.MINIMAL_EDIT, direction, transitions);
+
+            // The new text's lines are the ones to reuse next time.
+            currentLines = nextLines;
+            nextLines = fromLines;
+            linesTextSize = getTextSize(Destination.TO);
+            linesUniform = toSpans.hasUniformSize();
+        } else if (alignment == Alignment.MINIMAL_EDIT) {
+            layout.layoutMinimalEdit(from, fromSpans, getAlign(fromGrav), to, toSpans, getAlign(toGrav),
+                    direction, transitions);
+        } else {
+            layout.layoutByIndex(from, fromSpans, getAlign(fromGrav), to, toSpans, getAlign(toGrav),
+                    direction, transitions);
         }
+    }
 
-        // We always use toGravity here so that we'll start from the same side, regardless of which direction
-        // the text is running.
-        int fromIndex  = direction == TransitionDirection.RIGHT ? from.length() - 1 : 0;
-        int startIndex = direction == TransitionDirection.RIGHT ?   to.length() - 1 : 0;
-        int endIndex   = direction == TransitionDirection.RIGHT ?                -1 : to.length();
-
-        for (int toIndex = startIndex; toIndex != endIndex; toIndex += direction.value) {
-            Transition transition = addTransitionFor(from, to, fromIndex, toIndex, fromPosition, toPosition);
-            transition.fromWidth = measureText(transition.fromSize, transition.from);
-            transition.toWidth = measureText(transition.toSize, transition.to);
+    // Returns currentLines laid out for text, only breaking it again if it holds something else.
+    private LineLayout getCurrentLines(CharSequence text, SpanRunIndex spans, float textSize) {
+        final float wrapWidth = getWrapWidth();
+        if (!linesUniform || !spans.hasUniformSize() || linesTextSize != textSize ||
+                currentLines.getWidth() != wrapWidth || !TextUtils.equals(currentLines.getText(), text)) {
+            currentLines.setLineSpacing(getLineSpacing());
+            currentLines.layout(text, spans, wrapWidth);
+            linesTextSize = textSize;
+            linesUniform = spans.hasUniformSize();
+        }
+        return currentLines;
+    }
 
-            // Adjust out position based on the textsize of the from and to strings.
-            fromPosition += direction.value * transition.fromWidth;
-            toPosition   += direction.value * transition.toWidth;
+    // Before the view has been laid out, only break at newlines.
+    private float getWrapWidth() {
+        final int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        return width > 0 ? width : Float.MAX_VALUE;
+    }
 
-            // If this is floating to the right, update its position to account for its size.
-            if (direction == TransitionDirection.RIGHT) { transition.fromPosition = fromPosition; }
-            if (direction == TransitionDirection.RIGHT) { transition.toPosition = toPosition; }
+    // Line height as a multiple of the text size, matching the spacing TextView uses.
+    private float getLineSpacing() {
+        final float size = paint.getTextSize();
+        return size > 0 ? paint.getFontSpacing() / size : 1;
+    }
 
-            // Iterate the from string.
-            fromIndex    += direction.value;
+    private TransitionLayout.Align getAlign(int gravity) {
+        if (isRightGravity(gravity)) {
+            return TransitionLayout.Align.RIGHT;
+        } else if (isCenterGravity(gravity)) {
+            return TransitionLayout.Align.CENTER;
         }
+        return TransitionLayout.Align.LEFT;
+    }
 
-        while (fromIndex > -1 && fromIndex < from.length()) {
-            Transition transition = addTransitionFor(from, to, fromIndex, -1, fromPosition, toPosition);
-            transition.fromWidth = measureText(transition.fromSize, transition.from);
-            fromPosition += direction.value * transition.fromWidth;
-            if (direction == TransitionDirection.RIGHT) { transition.fromPosition = fromPosition; }
-            fromIndex += direction.value;
-        }
+    private TransitionLayout.Direction getLayoutDirection(int toGrav, int fromGrav) {
+        return getTransitionDirection(toGrav, fromGrav) == TransitionDirection.RIGHT ?
+                TransitionLayout.Direction.RIGHT : TransitionLayout.Direction.LEFT;
     }
 
     private TransitionDirection getTransitionDirection(int toGrav, int fromGrav) {
@@ -472,6 +1334,66 @@ public class AnimatedTextView extends TextView {
         return this.direction;
     }
 
+    // Makes the new transitions start from wherever the interrupted ones had got to, instead of from where each
+    // letter sits in the old text. Letters that were on their way out keep fading from where they are, ahead of
+    // everything else.
+    private void retargetFrom(TransitionBuffer old, long elapsed, int oldLength) {
+        final TransitionBuffer t = transitions;
+        final long animationDuration = getAnimationDuration();
+
+        if (retargetIndex.length < oldLength) {
+            retargetIndex = new int[Math.max(oldLength, retargetIndex.length * 2)];
+        }
+        Arrays.fill(retargetIndex, 0, oldLength, -1);
+
+        final int count = t.size();
+        for (int j = 0; j < old.size(); j++) {
+            if (old.hasTo[j] && old.toIndex[j] >= 0 && old.toIndex[j] < oldLength) {
+                retargetIndex[old.toIndex[j]] = j;
+            }
+
+            // Letters that are still hiding aren't part of the new layout. Finish hiding them.
+            final long time = schedule.getTime(j, elapsed);
+            if (old.hasFrom[j] && !old.isSameChar(j) && time < animationDuration) {
+                sampleTransition(time, animationDuration);
+                float alpha = old.fromAlpha[j];
+                if (hideCurve != null && hideCurve.hasAlpha()) {
+                    alpha *= hideCurve.getAlpha(hideFraction);
+                }
+                if (alpha > 0) {
+                    t.addHiding(old, j, old.getPosition(j, hideProgress), old.getY(j, hideProgress),
+                            old.getSize(j, hideProgress), old.fromColor[j], alpha);
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            final int j = t.hasFrom[i] ? retargetIndex[t.fromIndex[i]] : -1;
+            if (j < 0) {
+                continue;
+            }
+
+            if (old.isBoring(j)) {
+                t.retarget(i, old.getPosition(j, 1), old.getY(j, 1), old.getSize(j, 1), old.getColor(j, 1), 1);
+                continue;
+            }
+
+            sampleTransition(schedule.getTime(j, elapsed), animationDuration);
+            if (old.isSameChar(j)) {
+                t.retarget(i, old.getPosition(j, hideProgress), old.getY(j, hideProgress),
+                        old.getSize(j, hideProgress), old.getColor(j, hideProgress), old.getAlpha(j, hideProgress));
+            } else {
+                float alpha = showCurve != null && showCurve.hasAlpha() ? showCurve.getAlpha(showFraction) : 1;
+                t.retarget(i, old.getPosition(j, showProgress), old.getY(j, showProgress),
+                        old.getSize(j, showProgress), old.toColor[j], alpha);
+            }
+        }
+
+        if (t.size() > count) {
+            t.moveToFront(count);
+        }
+    }
+
     @Override
     public void postInvalidateOnAnimation() {
         if (Build.VERSION.SDK_INT >= 16) {
@@ -481,129 +1403,478 @@ public class AnimatedTextView extends TextView {
         }
     }
 
-    List<Transition> transitions = new ArrayList<Transition>();
-
-    private Transition addTransition(Character from, Character to, float fromPosition, float toPosition) {
-        Transition t = new Transition();
-        t.from = from;
-        t.to = to;
-        t.fromPosition = fromPosition;
-        // Log.i(LOGTAG, "Add trans " + from + " at pos = " + position);
-        t.toPosition = toPosition;
-        transitions.add(t);
-        return t;
-    }
+    // Reused between toggles so that changing the text doesn't allocate per character.
+    TransitionBuffer transitions = new TransitionBuffer();
+    private final Random random = new Random();
 
     @Override
     public void onDraw(Canvas canvas) {
         CharSequence text = getText();
 
         int save = canvas.save();
-        canvas.translate(0, getPaddingTop());
-        if (transitions.size() > 0) {
-            long now = AnimationUtils.currentAnimationTimeMillis();
-            long showingTime = showAnimation != null ? showAnimation.getStartTime() + showAnimation.getDuration() : now;
-            long endingTime = hideAnimation.getStartTime() + hideAnimation.getDuration();
-            int i = 0;
+        if (ticker.isRunning()) {
+            canvas.translate(0, getPaddingTop());
+            drawNumericFrame(canvas);
+        } else if (!transitions.isEmpty()) {
+            final OnTransitionMetricsListener listener = metricsRunning ? metricsListener : null;
+            final long frameStart = listener != null ? System.nanoTime() : 0;
+            long now = clock.currentAnimationTimeMillis();
+            long elapsed = now - animationStartTime;
+            final long animationDuration = getAnimationDuration();
+            final boolean frameCallback = usesFrameCallback();
+            if (frameCallback) {
+                // The frame callback has already worked everything out. Only catch up if it hasn't run yet.
+                if (framesStale) {
+                    evaluateFrames(elapsed);
+                }
+                elapsed = framesElapsed;
+            }
+
+            final boolean dirty = dirtyRegions && prepareDirtyLayer(elapsed, animationDuration);
+            final boolean useLayer = dirty || (staticGlyphCache && prepareTransitionLayer());
+            if (useLayer) {
+                staticLayer.draw(canvas);
+            }
+            canvas.translate(0, getPaddingTop());
 
             int numMoved = 0;
-            for (Transition transition : transitions) {
-                if (drawTransition(canvas, transition, now - spacing * i, showingTime, endingTime)) {
-                    numMoved++;
+            if (dirty) {
+                numMoved = drawActive(canvas, elapsed, animationDuration, frameCallback);
+            } else if (frameCallback) {
+                numMoved = framesMoving;
+                drawFrames(canvas, useLayer);
+            } else {
+                // Only the letters from first to last are animating. The rest have finished or haven't started.
+                final int count = transitions.size();
+                final int first = Math.min(count, schedule.getFirstActive(elapsed, animationDuration));
+                final int last = Math.min(count - 1, schedule.getLastActive(elapsed));
+                updateSettledAlphas();
+                // Indexed on purpose, the enhanced for loop allocates an iterator every frame.
+                for (int i = 0; i < count; i++) {
+                    if (useLayer && transitions.isBoring(i)) {
+                        // Already in the layer
+                        continue;
+                    }
+                    if (i < first || i > last) {
+                        drawSettled(canvas, i, i < first, animationDuration);
+                    } else if (drawTransition(canvas, i, schedule.getTime(i, elapsed), animationDuration)) {
+                        numMoved++;
+                    }
                 }
-
-                i++;
             }
 
-            // If nothing moved, end the transitions
-            if (numMoved == 0) {
-                if (showAnimation != null) showAnimation.getTransformation(now, showTransformation);
-                hideAnimation.getTransformation(now, hideTransformation);
+            if (listener != null) {
+                final long drawNanos = System.nanoTime() - frameStart;
+                metrics.onFrame(frameStart, drawNanos);
+                listener.onFrame(drawNanos, transitions.size(), numMoved);
             }
 
-            // Invalidate if the showAnimation is still going
-            if (showAnimation != null && !showAnimation.hasEnded() || !hideAnimation.hasEnded()) {
-                postInvalidateOnAnimation();
+            // Invalidate if the last letter is still going
+            if (!schedule.isFinished(elapsed, animationDuration)) {
+                if (!frameCallback) {
+                    if (dirty) {
+                        invalidateActive(elapsed, false);
+                    } else {
+                        postInvalidateOnAnimation();
+                    }
+                }
             } else {
                 transitions.clear();
+                staticLayer.invalidate();
+                framesStale = true;
+                post(releaseLayers);
+                endMetrics(elapsed, false);
             }
-        } else {
-            if ((getGravity() & Gravity.LEFT) == Gravity.LEFT) {
-                float position = getPaddingLeft();
-                for (int i = 0; i < text.length(); i++) {
-                    canvas.drawText(text, i, i + 1, position, paint.getTextSize(), paint);
-                    float size = paint.measureText(text, i, i + 1);
-                    position += size;
-                }
-            } else {
-                float position = getWidth() - getPaddingRight();
-                for (int i = text.length() - 1; i >= 0; i--) {
-                    float size = paint.measureText(text, i, i + 1);
-                    canvas.drawText(text, i, i + 1, position - size, paint.getTextSize(), paint);
-                    position -= size;
+        } else if (staticGlyphCache) {
+            if (!staticLayer.matches(text, paint.getTextSize(), getCurrentTextColor(), getGravity(),
+                    getWidth(), getHeight())) {
+                Canvas layerCanvas = staticLayer.begin(getWidth(), getHeight());
+                if (layerCanvas != null) {
+                    int layerSave = layerCanvas.save();
+                    layerCanvas.translate(0, getPaddingTop());
+                    drawIdle(layerCanvas, text);
+                    layerCanvas.restoreToCount(layerSave);
+                    staticLayer.setKey(text, paint.getTextSize(), getCurrentTextColor(), getGravity());
                 }
             }
+            staticLayer.draw(canvas);
+        } else {
+            canvas.translate(0, getPaddingTop());
+            drawIdle(canvas, text);
         }
         canvas.restoreToCount(save);
     }
 
-    private boolean drawTransition(Canvas canvas, Transition transition, long now, long showTime, long hideTime) {
-        boolean moved = false;
-        if (showAnimation != null) {
-            showAnimation.initialize((int) transition.toPosition, (int) transition.toWidth, getWidth(), getHeight());
+    private void drawNumericFrame(Canvas canvas) {
+        final OnTransitionMetricsListener listener = metricsRunning ? metricsListener : null;
+        final long frameStart = listener != null ? System.nanoTime() : 0;
+        final int prevColor = paint.getColor();
+        final float prevSize = paint.getTextSize();
+        paint.setColor(getCurrentTextColor());
+        paint.setTextSize(getTextSize());
+
+        final TransitionLayout.Align align = getAlign(getGravity());
+        final float end = getWidth() - getPaddingRight();
+        final long now = clock.currentAnimationTimeMillis();
+        final boolean more = ticker.draw(canvas, now, paint, align, getPaddingLeft(), end, getWidth(), getHeight());
+        if (more) {
+            // Only the digits that are rolling need to be drawn again.
+            ticker.getDirtyBounds(align, getPaddingLeft(), end, dirtyRegion);
+            dirtyRegion.offset(0, getPaddingTop());
+            dirtyRegion.roundOut(invalidRect);
+            postInvalidateOnAnimation(invalidRect);
         }
-        if (hideAnimation != null) {
-            hideAnimation.initialize((int) transition.fromPosition, (int) transition.fromWidth, getWidth(), getHeight());
+
+        paint.setColor(prevColor);
+        paint.setTextSize(prevSize);
+
+        if (listener != null) {
+            final long drawNanos = System.nanoTime() - frameStart;
+            metrics.onFrame(frameStart, drawNanos);
+            listener.onFrame(drawNanos, metrics.transitionCount, metrics.changedCount);
+            if (!more) {
+                endMetrics(now - metrics.startMillis, false);
+            }
         }
+    }
 
-        if (transition.isBoring()) {
-            // If nothing is changing, just draw the letter in place
-            showTransformation.clear();
-            hideTransformation.clear();
+    private void drawIdle(Canvas canvas, CharSequence text) {
+        if (drawsNumeric(text)) {
+            final int prevColor = paint.getColor();
+            final float prevSize = paint.getTextSize();
+            paint.setColor(getCurrentTextColor());
+            paint.setTextSize(getTextSize());
+            ticker.drawIdle(canvas, text, paint, getAlign(getGravity()), getPaddingLeft(),
+                    getWidth() - getPaddingRight());
+            paint.setColor(prevColor);
+            paint.setTextSize(prevSize);
+            return;
+        }
 
-            int save = canvas.save();
-            canvas.translate(transition.toPosition, paint.getTextSize());
-            canvas.drawText("" + transition.to, 0, 1, 0, 0, paint);
-            canvas.restoreToCount(save);
-        } else {
-            float dt = 1;
-            float dt2 = 0;
-            if (showAnimation != null && hideAnimation != null && now < showAnimation.getStartTime()) {
-                // If this letter's showAnimation hasn't started yet, draw it at its startTime
-                if (autoSlide) {
-                    dt = 0;
-                    dt2 = 0;
+        final int gravity = getGravity();
+        if (!idleRuns.matches(text, paint.getTextSize(), getCurrentTextColor(), gravity,
+                getWidth(), getPaddingLeft(), getPaddingRight())) {
+            layoutIdleRuns(text, gravity);
+            idleRuns.setKey(text, paint.getTextSize(), getCurrentTextColor(), gravity,
+                    getWidth(), getPaddingLeft(), getPaddingRight());
+        }
+        idleRuns.draw(canvas, text, paint);
+    }
+
+    // Splits text into runs wherever its color or size changes, and lays them out using the same positions a
+    // transition ends at.
+    private void layoutIdleRuns(CharSequence text, int gravity) {
+        final IdleTextRuns runs = idleRuns;
+        runs.clear();
+
+        final float defaultSize = paint.getTextSize();
+        final SpanRunIndex spans = idleSpans;
+        spans.build(text, getCurrentTextColor(), defaultSize, getResources().getDisplayMetrics().density);
+
+        layout.setBounds(getWidth(), getPaddingLeft(), getPaddingRight());
+        if (multiLine) {
+            layoutIdleLines(text, gravity, spans, defaultSize);
+            return;
+        }
+
+        float width = 0;
+        for (int run = 0; run < spans.getRunCount(); run++) {
+            final int runStart = spans.getRunStart(run);
+            final int runEnd = spans.getRunEnd(run);
+            int i = runs.add(runStart, runEnd, spans.getRunColor(run), spans.getRunSize(run));
+            paint.setTextSize(runs.size[i]);
+            runs.x[i] = width;
+            width += paint.measureText(text, runStart, runEnd);
+        }
+        paint.setTextSize(defaultSize);
+
+        final float start = layout.getStartPosition(getAlign(gravity), width);
+        for (int i = 0; i < runs.size(); i++) {
+            runs.x[i] += start;
+        }
+    }
+
+    // Like layoutIdleRuns, but runs are also split at line breaks and placed using the lines' layout.
+    private void layoutIdleLines(CharSequence text, int gravity, SpanRunIndex spans, float textSize) {
+        final IdleTextRuns runs = idleRuns;
+        final LineLayout lines = getCurrentLines(text, spans, textSize);
+        final TransitionLayout.Align align = getAlign(gravity);
+
+        int run = 0;
+        for (int line = 0; line < lines.getLineCount(); line++) {
+            final int lineStart = lines.getLineStart(line);
+            int lineEnd = lines.getLineEnd(line);
+            // Newlines don't draw anything.
+            if (lineEnd > lineStart && text.charAt(lineEnd - 1) == '\n') {
+                lineEnd--;
+            }
+            final float left = layout.getStartPosition(align, lines.getLineWidth(line));
+
+            int start = lineStart;
+            while (start < lineEnd) {
+                while (spans.getRunEnd(run) <= start) {
+                    run++;
                 }
-                showAnimation.getTransformation(showAnimation.getStartTime(), showTransformation);
-                hideAnimation.getTransformation(hideAnimation.getStartTime(), hideTransformation);
-            } else if (showAnimation != null && hideAnimation != null && now < showTime) {
-                // This letter is moving, get its showTransformation set up correctly
-                moved = true;
-                showAnimation.getTransformation(now, showTransformation);
-                hideAnimation.getTransformation(now, hideTransformation);
-                if (autoSlide) {
-                    dt = showAnimation.getInterpolator().getInterpolation((float) (now - showAnimation.getStartTime()) / (float) showAnimation.getDuration());
-                    dt2 = hideAnimation.getInterpolator().getInterpolation((float) (now - hideAnimation.getStartTime()) / (float) hideAnimation.getDuration());
+                final int end = Math.min(lineEnd, spans.getRunEnd(run));
+                int i = runs.add(start, end, spans.getRunColor(run), spans.getRunSize(run));
+                runs.x[i] = left + lines.getX(start);
+                runs.y[i] = lines.getLineTop(line);
+                start = end;
+            }
+        }
+    }
+
+    // Brings the static layer up to date with the letters that aren't animating elapsed ms into the transition.
+    // Only the letters that started or finished since the last frame are repainted. Returns false if the layer
+    // can't be used.
+    private boolean prepareDirtyLayer(long elapsed, long animationDuration) {
+        final TransitionBuffer t = transitions;
+        final boolean unbounded = (showCurve != null && showCurve.hasMatrix()) ||
+                (hideCurve != null && hideCurve.hasMatrix());
+        // Sizes change glyph by glyph, so the window scales the font's extent by each one's size.
+        paint.getFontMetrics(fontMetrics);
+        final float textSize = Math.max(paint.getTextSize(), 1);
+        activeWindow.set(schedule, animationDuration, unbounded, -fontMetrics.top / textSize,
+                fontMetrics.bottom / textSize, getPaddingTop(), getWidth(), getHeight());
+        final int first = activeWindow.getFirstActive(elapsed, t.size());
+        final int last = activeWindow.getLastActive(elapsed, t.size());
+
+        if (!staticLayer.isValid()) {
+            Canvas layerCanvas = staticLayer.begin(getWidth(), getHeight());
+            if (layerCanvas == null) {
+                return false;
+            }
+            drawInactive(layerCanvas, first, last, animationDuration, null);
+        } else if (first != layerFirst || last != layerLast) {
+            dirtyRegion.setEmpty();
+            final int from = Math.min(first, layerFirst);
+            final int to = Math.max(last, layerLast);
+            for (int i = Math.max(from, 0); i <= to && i < t.size(); i++) {
+                final boolean wasActive = i >= layerFirst && i <= layerLast;
+                final boolean isActive = i >= first && i <= last;
+                if (wasActive != isActive) {
+                    activeWindow.getBounds(t, i, glyphBounds);
+                    dirtyRegion.union(glyphBounds);
+                }
+            }
+
+            Canvas layerCanvas = staticLayer.beginRegion(dirtyRegion);
+            if (layerCanvas != null) {
+                drawInactive(layerCanvas, first, last, animationDuration, dirtyRegion);
+                staticLayer.endRegion();
+            }
+        }
+
+        layerFirst = first;
+        layerLast = last;
+        return true;
+    }
+
+    // Draws every letter outside first to last, the ones that have finished at their end and the ones that
+    // haven't started at their start. If region isn't null, only letters that touch it are drawn.
+    private void drawInactive(Canvas canvas, int first, int last, long animationDuration, @Nullable RectF region) {
+        final TransitionBuffer t = transitions;
+        int save = canvas.save();
+        canvas.translate(0, getPaddingTop());
+        updateSettledAlphas();
+        for (int i = 0; i < t.size(); i++) {
+            if (i >= first && i <= last && !t.isBoring(i)) {
+                continue;
+            }
+            if (region != null) {
+                activeWindow.getBounds(t, i, glyphBounds);
+                if (!RectF.intersects(region, glyphBounds)) {
+                    continue;
                 }
+            }
+            drawSettled(canvas, i, i < first, animationDuration);
+        }
+        canvas.restoreToCount(save);
+    }
+
+    // Draws the letters that are animating. Everything else is already in the layer. Returns how many were drawn.
+    private int drawActive(Canvas canvas, long elapsed, long animationDuration, boolean frameCallback) {
+        final TransitionBuffer t = transitions;
+        final int first = activeWindow.getFirstActive(elapsed, t.size());
+        final int last = activeWindow.getLastActive(elapsed, t.size());
+        final float top = getPaddingTop();
+        final int prevColor = paint.getColor();
+        final float prevSize = paint.getTextSize();
+
+        int drawn = 0;
+        for (int i = Math.max(first, 0); i <= last; i++) {
+            if (t.isBoring(i)) {
+                continue;
+            }
+            // Bounds are in view coordinates, but the canvas has already been moved down by the top padding.
+            activeWindow.getBounds(t, i, glyphBounds);
+            if (canvas.quickReject(glyphBounds.left, glyphBounds.top - top, glyphBounds.right,
+                    glyphBounds.bottom - top, Canvas.EdgeType.AA)) {
+                continue;
+            }
+
+            if (frameCallback) {
+                drawFrameTransition(canvas, i);
             } else {
-                // This letter is done. Keep it at the end of its showAnimation (so the showAnimation doesn't end).
-                if (showAnimation != null) showAnimation.getTransformation(showTime - 1, showTransformation);
-                if (hideAnimation != null) hideAnimation.getTransformation(hideTime - 1, hideTransformation);
-                dt = 1;
-                dt2 = 1;
+                drawTransition(canvas, i, schedule.getTime(i, elapsed), animationDuration);
+            }
+            drawn++;
+        }
+
+        paint.setColor(prevColor);
+        paint.setTextSize(prevSize);
+        return drawn;
+    }
+
+    // Invalidates the letters that can change before the next frame. That's the ones that are animating, the ones
+    // that start in the next couple of frames, and the ones that finished since the layer was painted.
+    private void invalidateActive(long elapsed, boolean immediate) {
+        final TransitionBuffer t = transitions;
+        final int count = t.size();
+        final int first = Math.min(layerFirst, activeWindow.getFirstActive(elapsed, count));
+        // Always include the next letter to start, so frames keep coming through gaps in the stagger.
+        final int last = Math.min(count - 1, Math.max(activeWindow.getLastActive(elapsed + 2 * FRAME_MILLIS, count),
+                activeWindow.getLastActive(elapsed, count) + 1));
+
+        dirtyRegion.setEmpty();
+        activeWindow.unionBounds(t, first, last, dirtyRegion, glyphBounds);
+        dirtyRegion.roundOut(invalidRect);
+        if (immediate) {
+            invalidate(invalidRect.left, invalidRect.top, invalidRect.right, invalidRect.bottom);
+        } else {
+            postInvalidateOnAnimation(invalidRect);
+        }
+    }
+
+    private void postInvalidateOnAnimation(Rect rect) {
+        if (Build.VERSION.SDK_INT >= 16) {
+            postInvalidateOnAnimation(rect.left, rect.top, rect.right, rect.bottom);
+        } else {
+            postInvalidateDelayed(30, rect.left, rect.top, rect.right, rect.bottom);
+        }
+    }
+
+    // Renders the letters that don't change during this transition into the static layer. Returns false if the
+    // layer can't be used.
+    private boolean prepareTransitionLayer() {
+        if (staticLayer.isValid()) {
+            return true;
+        }
+
+        Canvas layerCanvas = staticLayer.begin(getWidth(), getHeight());
+        if (layerCanvas == null) {
+            return false;
+        }
+
+        int layerSave = layerCanvas.save();
+        layerCanvas.translate(0, getPaddingTop());
+        for (int i = 0; i < transitions.size(); i++) {
+            if (transitions.isBoring(i)) {
+                drawMoving(layerCanvas, i, 1);
+            }
+        }
+        layerCanvas.restoreToCount(layerSave);
+        return true;
+    }
+
+    // The time it takes a single letter to finish both its show and hide animations.
+    private long getAnimationDuration() {
+        long showDuration = showCurve != null ? showCurve.getDuration() : 0;
+        long hideDuration = hideCurve != null ? hideCurve.getDuration() : 0;
+        return Math.max(showDuration, hideDuration);
+    }
+
+    // Where a letter is in its animation. Filled in by sampleTransition.
+    private float showFraction;
+    private float hideFraction;
+    private float showProgress;
+    private float hideProgress;
+
+    // time is how long it's been since this letter started animating. It's negative if it hasn't started yet.
+    // Returns true if the letter is moving.
+    private boolean sampleTransition(long time, long animationDuration) {
+        boolean moving = false;
+        showProgress = 1;
+        hideProgress = 0;
+        if (time < 0) {
+            // If this letter's animation hasn't started yet, draw it at its start
+            if (autoSlide) {
+                showProgress = 0;
+                hideProgress = 0;
+            }
+            showFraction = 0;
+            hideFraction = 0;
+        } else if (time < animationDuration) {
+            // This letter is moving
+            moving = true;
+            showFraction = showCurve != null ? showCurve.getFraction(time) : 1;
+            hideFraction = hideCurve != null ? hideCurve.getFraction(time) : 1;
+            if (autoSlide) {
+                showProgress = showCurve != null ? showCurve.getProgress(showFraction) : 1;
+                hideProgress = hideCurve != null ? hideCurve.getProgress(hideFraction) : 1;
             }
+        } else {
+            // This letter is done. Keep it at the end of its animation.
+            showFraction = 1;
+            hideFraction = 1;
+            showProgress = 1;
+            hideProgress = 1;
+        }
+        return moving;
+    }
+
+    // The show and hide curves' alpha at their start and end, the only places letters that aren't animating sit.
+    private float showStartAlpha;
+    private float showEndAlpha;
+    private float hideStartAlpha;
+    private float hideEndAlpha;
+
+    private void updateSettledAlphas() {
+        final boolean showAlpha = showCurve != null && showCurve.hasAlpha();
+        final boolean hideAlpha = hideCurve != null && hideCurve.hasAlpha();
+        showStartAlpha = showAlpha ? showCurve.getAlpha(0) : 1;
+        showEndAlpha = showAlpha ? showCurve.getAlpha(1) : 1;
+        hideStartAlpha = hideAlpha ? hideCurve.getAlpha(0) : 1;
+        hideEndAlpha = hideAlpha ? hideCurve.getAlpha(1) : 1;
+    }
+
+    // Draws a letter that has finished, or hasn't started, at the end or start of its animation. Letters whose
+    // glyphs are all invisible there, like ones that have faded out or haven't faded in, are skipped without
+    // touching their curves. updateSettledAlphas has to have been called.
+    private void drawSettled(Canvas canvas, int i, boolean finished, long animationDuration) {
+        final TransitionBuffer t = transitions;
+        if (!t.isBoring(i) && !t.isSameChar(i)) {
+            final float hideAlpha = t.hasFrom[i] ? t.fromAlpha[i] * (finished ? hideEndAlpha : hideStartAlpha) : 0;
+            final float showAlpha = t.hasTo[i] ? (finished ? showEndAlpha : showStartAlpha) : 0;
+            if (hideAlpha <= 0 && showAlpha <= 0) {
+                return;
+            }
+        }
+        drawTransition(canvas, i, finished ? animationDuration : -1, animationDuration);
+    }
+
+    private boolean drawTransition(Canvas canvas, int i, long time, long animationDuration) {
+        final TransitionBuffer t = transitions;
+        boolean moved = false;
 
-            if (transition.from == transition.to) {
-                drawMoving(canvas, transition, dt2);
+        if (t.isBoring(i)) {
+            // If nothing is changing, just draw the letter in place
+            drawMoving(canvas, i, 1);
+        } else {
+            moved = sampleTransition(time, animationDuration);
+
+            if (t.isSameChar(i)) {
+                drawMoving(canvas, i, hideProgress);
             } else {
-                if (transition.from != null) {
-                    // Log.i(LOGTAG, "Draw " + transition.from);
-                    drawShowing(canvas, transition, transition.from, transition.fromColor, hideTransformation, dt2);
+                if (t.hasFrom[i]) {
+                    // Log.i(LOGTAG, "Draw " + t.toString(i));
+                    drawShowing(canvas, i, GlyphFrames.HIDING, t.fromGlyph[i], t.fromGlyphLength[i], t.fromColor[i],
+                            t.fromWidth[i], t.fromAlpha[i], hideCurve, hideFraction, hideProgress);
                 }
 
-                if (transition.to != null) {
-                    // Log.i(LOGTAG, "Draw " + transition.to);
-                    drawShowing(canvas, transition, transition.to, transition.toColor, showTransformation, dt);
+                if (t.hasTo[i]) {
+                    drawShowing(canvas, i, GlyphFrames.SHOWING, t.toGlyph[i], t.toGlyphLength[i], t.toColor[i],
+                            t.toWidth[i], 1, showCurve, showFraction, showProgress);
                 }
             }
         }
@@ -611,53 +1882,141 @@ public class AnimatedTextView extends TextView {
         return moved;
     }
 
-    private void drawMoving(Canvas canvas, Transition transition, float dt) {
+    // Draws the glyphs the frame callback worked out.
+    private void drawFrames(Canvas canvas, boolean useLayer) {
+        final TransitionBuffer t = transitions;
+        final int prevColor = paint.getColor();
+        final float prevSize = paint.getTextSize();
+
+        for (int i = 0; i < t.size(); i++) {
+            if (!useLayer || !t.isBoring(i)) {
+                drawFrameTransition(canvas, i);
+            }
+        }
+
+        paint.setColor(prevColor);
+        paint.setTextSize(prevSize);
+    }
+
+    // Leaves the paint's color and size changed.
+    private void drawFrameTransition(Canvas canvas, int i) {
+        final TransitionBuffer t = transitions;
+        if (t.isSameChar(i)) {
+            drawFrame(canvas, i, GlyphFrames.SHOWING, t.toGlyph[i], t.toGlyphLength[i]);
+            return;
+        }
+
+        if (t.hasFrom[i]) {
+            drawFrame(canvas, i, GlyphFrames.HIDING, t.fromGlyph[i], t.fromGlyphLength[i]);
+        }
+        if (t.hasTo[i]) {
+            drawFrame(canvas, i, GlyphFrames.SHOWING, t.toGlyph[i], t.toGlyphLength[i]);
+        }
+    }
+
+    // glyphStart and glyphLength are the cluster's range of TransitionBuffer.glyphChars.
+    private void drawFrame(Canvas canvas, int i, int slot, int glyphStart, int glyphLength) {
+        final GlyphFrames f = glyphFrames;
+        final float alpha = f.getAlpha(i, slot);
+        if (alpha <= 0) {
+            return;
+        }
+
+        final float size = f.getSize(i, slot);
+        paint.setTextSize(size);
+        paint.setColor(f.getColor(i, slot));
+        if (alpha < 1) {
+            paint.setAlpha((int) (alpha * 255));
+        }
+
+        int save = canvas.save();
+        canvas.translate(f.getX(i, slot), f.getY(i, slot) + size);
+        final boolean transformed = f.isTransformed(i, slot);
+        if (transformed) {
+            canvas.translate(f.getTranslateX(i, slot), f.getTranslateY(i, slot));
+            canvas.rotate(f.getRotation(i, slot));
+            canvas.scale(f.getScaleX(i, slot), f.getScaleY(i, slot));
+        }
+        if (transformed && layers.usesGlyphLayers()) {
+            layers.draw(canvas, i, slot, transitions.glyphChars, glyphStart, glyphLength, paint);
+        } else {
+            drawGlyph(canvas, i, glyphStart, glyphLength, transformed);
+        }
+        canvas.restoreToCount(save);
+    }
+
+    private void drawMoving(Canvas canvas, int i, float dt) {
+        final TransitionBuffer t = transitions;
         int prevColor = paint.getColor();
         float prevSize = paint.getTextSize();
 
-        paint.setTextSize(transition.fromSize + dt * (transition.toSize - transition.fromSize));
-        // This probably won't look great.
-        paint.setColor(transition.fromColor + (int) (dt * (transition.toColor - transition.fromColor)));
+        paint.setTextSize(t.getSize(i, dt));
+        paint.setColor(t.getColor(i, dt));
+        final float alpha = t.getAlpha(i, dt);
+        if (alpha < 1) {
+            paint.setAlpha((int) (alpha * 255));
+        }
 
         int save = canvas.save();
-        canvas.translate(transition.fromPosition + dt * (transition.toPosition - transition.fromPosition), paint.getTextSize());
-        canvas.drawText("" + transition.to, 0, 1,
-                0, 0,
-                paint);
+        canvas.translate(t.getPosition(i, dt), t.getY(i, dt) + paint.getTextSize());
+        drawGlyph(canvas, i, t.toGlyph[i], t.toGlyphLength[i], false);
         canvas.restoreToCount(save);
 
         paint.setColor(prevColor);
         paint.setTextSize(prevSize);
     }
 
-    private void drawShowing(Canvas canvas, Transition transition, char c, int color, Transformation transform, float dt) {
-        float alpha = 1.0f;
+    private void drawShowing(Canvas canvas, int i, int slot, int glyphStart, int glyphLength, int color, float width,
+                             float startAlpha, @Nullable AnimationCurve curve, float fraction, float dt) {
+        final TransitionBuffer t = transitions;
+        float alpha = startAlpha;
+        if (curve != null && curve.hasAlpha()) {
+            alpha *= curve.getAlpha(fraction);
+            // Log.i(LOGTAG, "Draw " + alpha + " -- " + c);
+        }
+        // Like drawFrame, invisible glyphs cost nothing.
+        if (alpha <= 0) {
+            return;
+        }
         int prevColor = paint.getColor();
         float prevSize = paint.getTextSize();
 
         int save = canvas.save();
-        if (transform.getTransformationType() == Transformation.TYPE_ALPHA || transform.getTransformationType() == Transformation.TYPE_BOTH) {
-            alpha = transform.getAlpha();
-            // Log.i(LOGTAG, "Draw " + alpha + " -- " + c);
-        }
 
-        paint.setTextSize(transition.fromSize + dt * (transition.toSize - transition.fromSize));
+        paint.setTextSize(t.getSize(i, dt));
         paint.setColor(color);
         paint.setAlpha((int) (alpha * 255));
 
-        canvas.translate(transition.fromPosition + dt * (transition.toPosition - transition.fromPosition), paint.getTextSize());
-        if (transform.getTransformationType() == Transformation.TYPE_MATRIX || transform.getTransformationType() == Transformation.TYPE_BOTH) {
-            canvas.concat(transform.getMatrix());
+        canvas.translate(t.getPosition(i, dt), t.getY(i, dt) + paint.getTextSize());
+        final boolean transformed = curve != null && curve.hasMatrix();
+        if (transformed) {
+            // Pivots are relative to the glyph's box.
+            curve.getMatrix(fraction, width, paint.getTextSize(), getWidth(), getHeight(), glyphMatrix, values);
+            canvas.concat(glyphMatrix);
         }
 
-        canvas.drawText("" + c, 0, 1,
-                0, 0,
-                paint);
+        if (transformed && layers.usesGlyphLayers()) {
+            layers.draw(canvas, i, slot, t.glyphChars, glyphStart, glyphLength, paint);
+        } else {
+            drawGlyph(canvas, i, glyphStart, glyphLength, transformed);
+        }
         canvas.restoreToCount(save);
 
         paint.setColor(prevColor);
         paint.setTextSize(prevSize);
     }
 
+    // Draws a glyph at the paint's size with its origin at 0, 0. Glyphs whose size is changing, or that are drawn
+    // rotated or scaled, come from the atlas, so they aren't rasterized again at every size and angle they pass
+    // through.
+    private void drawGlyph(Canvas canvas, int i, int glyphStart, int glyphLength, boolean transformed) {
+        final TransitionBuffer t = transitions;
+        if (glyphAtlas != null && (transformed || t.fromSize[i] != t.toSize[i]) && glyphAtlas.draw(canvas,
+                t.glyphChars, glyphStart, glyphLength, Math.max(t.fromSize[i], t.toSize[i]), paint)) {
+            return;
+        }
+        canvas.drawText(t.glyphChars, glyphStart, glyphLength, 0, 0, paint);
+    }
+
     float[] values = new float[9];
 }
@@ -0,0 +1,7 @@
+package org.digdug.animatedtextview;
+
+// Where a view reads the time its transitions are animated against. Views use the animation clock by default,
+// tests can step one by hand to draw a transition frame by frame.
+public interface AnimationClock {
+    long currentAnimationTimeMillis();
+}
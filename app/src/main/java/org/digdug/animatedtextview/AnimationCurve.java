@@ -0,0 +1,292 @@
+package org.digdug.animatedtextview;
+
+import android.graphics.Matrix;
+import android.view.animation.Animation;
+import android.view.animation.Interpolator;
+import android.view.animation.Transformation;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// An Animation baked into a lookup table. Sampling a curve is an interpolated table lookup, so drawing a glyph
+// doesn't need to initialize the Animation or walk its AnimationSet every frame.
+//
+// Animations can depend on the size of the glyph and its parent (e.g. a pivot at 50%). Those values only ever
+// move the translation, and they move it linearly, so each sample stores the translation as
+//   t = t0 + width * tw + height * th + parentWidth * tpw + parentHeight * tph
+// which makes a baked curve independent of the glyph it's drawn for.
+class AnimationCurve {
+    static final int DEFAULT_SAMPLES = 64;
+
+    private static final int ALPHA = 0;
+    private static final int PROGRESS = 1;
+    private static final int SCALE_X = 2;
+    private static final int SKEW_X = 3;
+    private static final int SKEW_Y = 4;
+    private static final int SCALE_Y = 5;
+    private static final int TRANS_X = 6;
+    private static final int TRANS_Y = 7;
+    private static final int WIDTH_X = 8;
+    private static final int WIDTH_Y = 9;
+    private static final int HEIGHT_X = 10;
+    private static final int HEIGHT_Y = 11;
+    private static final int PARENT_WIDTH_X = 12;
+    private static final int PARENT_WIDTH_Y = 13;
+    private static final int PARENT_HEIGHT_X = 14;
+    private static final int PARENT_HEIGHT_Y = 15;
+    private static final int STRIDE = 16;
+
+    // The compiled curve format written by the build's AnimationCurveCompiler:
+    //   int magic, short version, long duration, int samples, int stride, byte flags, samples * stride floats
+    private static final int MAGIC = 0x41545643; // "ATVC"
+    private static final short VERSION = 1;
+    private static final int FLAG_ALPHA = 1;
+    private static final int FLAG_MATRIX = 2;
+
+    private final long duration;
+    private final int samples;
+    private final float[] table;
+    private final boolean hasAlpha;
+    private final boolean hasMatrix;
+    // Created the first time it's asked for. Curves are immutable, so racing to create it is harmless.
+    private PropertyCurve properties;
+
+    private AnimationCurve(long duration, int samples, float[] table, boolean hasAlpha, boolean hasMatrix) {
+        this.duration = duration;
+        this.samples = samples;
+        this.table = table;
+        this.hasAlpha = hasAlpha;
+        this.hasMatrix = hasMatrix;
+    }
+
+    static AnimationCurve bake(Animation animation) {
+        return bake(animation, DEFAULT_SAMPLES);
+    }
+
+    static AnimationCurve bake(Animation animation, int samples) {
+        if (samples < 2) {
+            throw new IllegalArgumentException("A curve needs at least two samples: " + samples);
+        }
+
+        final long duration = animation.getDuration();
+        final long offset = animation.getStartOffset();
+        final float[] table = new float[samples * STRIDE];
+        final Transformation transformation = new Transformation();
+        final float[] values = new float[9];
+
+        // Bake once with every dimension at zero, and then once with each dimension at one. The difference is
+        // how far that dimension moves the translation.
+        final int[][] sizes = new int[][] {
+                { 0, 0, 0, 0 },
+                { 1, 0, 0, 0 },
+                { 0, 1, 0, 0 },
+                { 0, 0, 1, 0 },
+                { 0, 0, 0, 1 },
+        };
+
+        boolean hasAlpha = false;
+        boolean hasMatrix = false;
+        for (int pass = 0; pass < sizes.length; pass++) {
+            animation.reset();
+            animation.initialize(sizes[pass][0], sizes[pass][1], sizes[pass][2], sizes[pass][3]);
+            animation.setStartTime(0);
+
+            for (int s = 0; s < samples; s++) {
+                final float fraction = (float) s / (samples - 1);
+                transformation.clear();
+                animation.getTransformation(offset + (long) (fraction * duration), transformation);
+                transformation.getMatrix().getValues(values);
+
+                final int base = s * STRIDE;
+                if (pass == 0) {
+                    table[base + ALPHA] = transformation.getAlpha();
+                    table[base + SCALE_X] = values[Matrix.MSCALE_X];
+                    table[base + SKEW_X] = values[Matrix.MSKEW_X];
+                    table[base + SKEW_Y] = values[Matrix.MSKEW_Y];
+                    table[base + SCALE_Y] = values[Matrix.MSCALE_Y];
+                    table[base + TRANS_X] = values[Matrix.MTRANS_X];
+                    table[base + TRANS_Y] = values[Matrix.MTRANS_Y];
+
+                    hasAlpha |= table[base + ALPHA] != 1;
+                    hasMatrix |= !transformation.getMatrix().isIdentity();
+                } else {
+                    final int slot = WIDTH_X + 2 * (pass - 1);
+                    table[base + slot] = values[Matrix.MTRANS_X] - table[base + TRANS_X];
+                    table[base + slot + 1] = values[Matrix.MTRANS_Y] - table[base + TRANS_Y];
+                    hasMatrix |= table[base + slot] != 0 || table[base + slot + 1] != 0;
+                }
+            }
+        }
+
+        final Interpolator interpolator = animation.getInterpolator();
+        for (int s = 0; s < samples; s++) {
+            final float fraction = (float) s / (samples - 1);
+            table[s * STRIDE + PROGRESS] = interpolator != null ? interpolator.getInterpolation(fraction) : fraction;
+        }
+
+        // Leave the animation the way we found it.
+        animation.reset();
+        return new AnimationCurve(duration, samples, table, hasAlpha, hasMatrix);
+    }
+
+    // Reads a curve compiled at build time. Its duration is 0 if the animation didn't have one.
+    static AnimationCurve read(InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a compiled curve");
+        }
+        final short version = data.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported curve version " + version);
+        }
+        final long duration = data.readLong();
+        final int samples = data.readInt();
+        final int stride = data.readInt();
+        if (samples < 2 || stride != STRIDE) {
+            throw new IOException("Invalid curve table: " + samples + " samples of " + stride);
+        }
+        final int flags = data.readByte();
+
+        final float[] table = new float[samples * STRIDE];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = data.readFloat();
+        }
+        return new AnimationCurve(duration, samples, table, (flags & FLAG_ALPHA) != 0, (flags & FLAG_MATRIX) != 0);
+    }
+
+    // The same curve played over a different duration. The table is shared, so this is cheap.
+    AnimationCurve withDuration(long duration) {
+        if (duration == this.duration) {
+            return this;
+        }
+        return new AnimationCurve(duration, samples, table, hasAlpha, hasMatrix);
+    }
+
+    // This curve split into alpha, scale, rotation and translation channels. Any skew in the animation is lost.
+    PropertyCurve getPropertyCurve() {
+        PropertyCurve curve = properties;
+        if (curve == null) {
+            curve = toPropertyCurve();
+            properties = curve;
+        }
+        return curve;
+    }
+
+    private PropertyCurve toPropertyCurve() {
+        final float[] out = new float[samples * PropertyCurve.STRIDE];
+        float lastRotation = 0;
+        for (int s = 0; s < samples; s++) {
+            final int in = s * STRIDE;
+            final int base = s * PropertyCurve.STRIDE;
+
+            // The linear part is rotate(theta) * scale(sx, sy) (plus skew, which is dropped).
+            final float a = table[in + SCALE_X];
+            final float b = table[in + SKEW_X];
+            final float c = table[in + SKEW_Y];
+            final float d = table[in + SCALE_Y];
+            float scaleX = (float) Math.hypot(a, c);
+            float scaleY;
+            float rotation;
+            if (scaleX != 0) {
+                rotation = (float) Math.toDegrees(Math.atan2(c, a));
+                scaleY = (a * d - b * c) / scaleX;
+            } else {
+                rotation = (float) Math.toDegrees(Math.atan2(-b, d));
+                scaleY = (float) Math.hypot(b, d);
+            }
+
+            // Keep the rotation continuous so interpolating between samples doesn't spin the wrong way.
+            if (s > 0) {
+                while (rotation - lastRotation > 180) rotation -= 360;
+                while (rotation - lastRotation < -180) rotation += 360;
+            }
+            lastRotation = rotation;
+
+            out[base + PropertyCurve.ALPHA] = table[in + ALPHA];
+            out[base + PropertyCurve.PROGRESS] = table[in + PROGRESS];
+            out[base + PropertyCurve.SCALE_X] = scaleX;
+            out[base + PropertyCurve.SCALE_Y] = scaleY;
+            out[base + PropertyCurve.ROTATION] = rotation;
+            for (int field = 0; field < 10; field++) {
+                out[base + PropertyCurve.TRANS_X + field] = table[in + TRANS_X + field];
+            }
+        }
+        return new PropertyCurve(duration, samples, out);
+    }
+
+    long getDuration() {
+        return duration;
+    }
+
+    boolean hasAlpha() {
+        return hasAlpha;
+    }
+
+    boolean hasMatrix() {
+        return hasMatrix;
+    }
+
+    // Returns the fraction of this curve that has elapsed time ms after it started.
+    float getFraction(long time) {
+        if (time <= 0) {
+            return duration <= 0 ? 1 : 0;
+        } else if (time >= duration) {
+            return 1;
+        }
+        return (float) time / duration;
+    }
+
+    float getAlpha(float fraction) {
+        return sample(fraction, ALPHA);
+    }
+
+    // The animation's interpolator applied to fraction.
+    float getProgress(float fraction) {
+        return sample(fraction, PROGRESS);
+    }
+
+    // Fills out with this curve's matrix for a glyph of the given size. values must hold at least nine floats.
+    void getMatrix(float fraction, float width, float height, float parentWidth, float parentHeight,
+                   Matrix out, float[] values) {
+        final float position = clamp(fraction) * (samples - 1);
+        final int index = Math.min((int) position, samples - 2);
+        final float t = position - index;
+        final int a = index * STRIDE;
+        final int b = a + STRIDE;
+
+        values[Matrix.MSCALE_X] = lerp(a, b, SCALE_X, t);
+        values[Matrix.MSKEW_X] = lerp(a, b, SKEW_X, t);
+        values[Matrix.MSKEW_Y] = lerp(a, b, SKEW_Y, t);
+        values[Matrix.MSCALE_Y] = lerp(a, b, SCALE_Y, t);
+        values[Matrix.MTRANS_X] = lerp(a, b, TRANS_X, t) +
+                width * lerp(a, b, WIDTH_X, t) +
+                height * lerp(a, b, HEIGHT_X, t) +
+                parentWidth * lerp(a, b, PARENT_WIDTH_X, t) +
+                parentHeight * lerp(a, b, PARENT_HEIGHT_X, t);
+        values[Matrix.MTRANS_Y] = lerp(a, b, TRANS_Y, t) +
+                width * lerp(a, b, WIDTH_Y, t) +
+                height * lerp(a, b, HEIGHT_Y, t) +
+                parentWidth * lerp(a, b, PARENT_WIDTH_Y, t) +
+                parentHeight * lerp(a, b, PARENT_HEIGHT_Y, t);
+        values[Matrix.MPERSP_0] = 0;
+        values[Matrix.MPERSP_1] = 0;
+        values[Matrix.MPERSP_2] = 1;
+        out.setValues(values);
+    }
+
+    private float sample(float fraction, int field) {
+        final float position = clamp(fraction) * (samples - 1);
+        final int index = Math.min((int) position, samples - 2);
+        return lerp(index * STRIDE, (index + 1) * STRIDE, field, position - index);
+    }
+
+    private float lerp(int a, int b, int field, float t) {
+        final float from = table[a + field];
+        return from + t * (table[b + field] - from);
+    }
+
+    private static float clamp(float fraction) {
+        return fraction < 0 ? 0 : (fraction > 1 ? 1 : fraction);
+    }
+}
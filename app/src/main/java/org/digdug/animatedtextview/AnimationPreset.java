@@ -0,0 +1,103 @@
+package org.digdug.animatedtextview;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.support.annotation.AnimRes;
+import android.view.animation.Animation;
+import android.view.animation.AnimationUtils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+
+// A show or hide animation from res/anim, compiled into a curve when the app is built (see the
+// compileAnimationCurves task). Loading a preset reads a small table from the app's assets instead of inflating
+// and baking the XML, and each one is only loaded once per process. Presets are immutable and shared, so switching
+// a view between them costs nothing.
+//
+// Animations the build couldn't compile are inflated and baked the first time they're asked for instead.
+public final class AnimationPreset {
+    private static final String ASSET_DIR = "curves/";
+    private static final String ASSET_SUFFIX = ".curve";
+    // Animations without a duration are baked over this one, and take the view's when they're used.
+    private static final int NORMALIZED_DURATION = 1000;
+
+    private static final HashMap<String, AnimationPreset> presets = new HashMap<String, AnimationPreset>();
+
+    private final String name;
+    private final AnimationCurve curve;
+
+    private AnimationPreset(String name, AnimationCurve curve) {
+        this.name = name;
+        this.curve = curve;
+    }
+
+    public static AnimationPreset get(Context context, @AnimRes int animId) {
+        return get(context, context.getResources().getResourceEntryName(animId));
+    }
+
+    // name is the animation's file name in res/anim, without the extension.
+    public static AnimationPreset get(Context context, String name) {
+        synchronized (presets) {
+            AnimationPreset preset = presets.get(name);
+            if (preset == null) {
+                preset = new AnimationPreset(name, load(context, name));
+                presets.put(name, preset);
+            }
+            return preset;
+        }
+    }
+
+    private static AnimationCurve load(Context context, String name) {
+        InputStream in = null;
+        try {
+            in = context.getAssets().open(ASSET_DIR + name + ASSET_SUFFIX);
+            return AnimationCurve.read(in);
+        } catch (FileNotFoundException e) {
+            return inflate(context, name);
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't read animation preset " + name, e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static AnimationCurve inflate(Context context, String name) {
+        final Resources res = context.getResources();
+        final int animId = res.getIdentifier(name, "anim", context.getPackageName());
+        if (animId == 0) {
+            throw new IllegalArgumentException("No animation named " + name);
+        }
+
+        final Animation animation = AnimationUtils.loadAnimation(context, animId);
+        if (animation.getDuration() == 0) {
+            animation.setDuration(NORMALIZED_DURATION);
+            return AnimationCurve.bake(animation).withDuration(0);
+        }
+        return AnimationCurve.bake(animation);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // 0 if the animation doesn't have a duration, and takes the view's.
+    public long getDuration() {
+        return curve.getDuration();
+    }
+
+    AnimationCurve getCurve() {
+        return curve;
+    }
+
+    @Override
+    public String toString() {
+        return "AnimationPreset " + name;
+    }
+}
@@ -0,0 +1,48 @@
+package org.digdug.animatedtextview;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+// Calls back once per vsync for as long as the target wants it to. Kept separate from the view so that the view
+// doesn't reference Choreographer on releases that don't have it.
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+class FrameCallbackDriver implements Choreographer.FrameCallback {
+    interface Target {
+        // Returns true to be called again next frame.
+        boolean onAnimationFrame(long frameTimeMillis);
+    }
+
+    private final Target target;
+    private boolean running = false;
+
+    FrameCallbackDriver(Target target) {
+        this.target = target;
+    }
+
+    void start() {
+        if (!running) {
+            running = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    void stop() {
+        if (running) {
+            running = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        running = false;
+        if (target.onAnimationFrame(frameTimeNanos / 1000000)) {
+            start();
+        }
+    }
+}
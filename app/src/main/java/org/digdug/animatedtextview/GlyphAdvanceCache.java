@@ -0,0 +1,191 @@
+package org.digdug.animatedtextview;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.support.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// A bounded, least recently used cache of glyph advances. Entries are keyed by code point (or by the characters of
+// a grapheme cluster), text size, typeface and the rest of the paint state that changes how text is shaped, so a
+// single cache can be shared between any number of views.
+public class GlyphAdvanceCache {
+    public static final int DEFAULT_CAPACITY = 512;
+
+    private final int capacity;
+    private final LinkedHashMap<Key, Float> advances;
+    // Reused for lookups so that a hit doesn't allocate.
+    private final Key probe = new Key();
+
+    private long hits = 0;
+    private long misses = 0;
+
+    public GlyphAdvanceCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public GlyphAdvanceCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.advances = new LinkedHashMap<Key, Float>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Float> eldest) {
+                return size() > GlyphAdvanceCache.this.capacity;
+            }
+        };
+    }
+
+    // Returns the advance of codePoint at the given size, measuring it with paint on a miss. The paint's
+    // text size is left untouched.
+    public synchronized float getAdvance(Paint paint, int codePoint, float size) {
+        probe.set(codePoint, size, paint);
+        return getAdvance(paint, size);
+    }
+
+    // Returns the advance of a run of text, e.g. a grapheme cluster made of several code points, measuring it with
+    // paint on a miss. The paint's text size is left untouched.
+    public synchronized float getAdvance(Paint paint, CharSequence text, int start, int end, float size) {
+        probe.set(text, start, end, size, paint);
+        return getAdvance(paint, size);
+    }
+
+    // Looks up the probe.
+    private float getAdvance(Paint paint, float size) {
+        Float advance = advances.get(probe);
+        if (advance != null) {
+            hits++;
+            return advance;
+        }
+
+        misses++;
+        float prevSize = paint.getTextSize();
+        paint.setTextSize(size);
+        float measured = paint.measureText(probe.chars, 0, probe.length);
+        paint.setTextSize(prevSize);
+
+        advances.put(new Key().copy(probe), measured);
+        return measured;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return advances.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized void clear() {
+        advances.clear();
+        hits = misses = 0;
+    }
+
+    private static class Key {
+        // The probe's grows to fit the longest cluster looked up. Stored keys are exactly length long.
+        char[] chars = new char[2];
+        int length;
+        int sizeBits;
+        @Nullable Typeface typeface;
+        int flags;
+        int scaleXBits;
+        int skewXBits;
+        int letterSpacingBits;
+        @Nullable String fontFeatures;
+        int hash;
+
+        Key set(int codePoint, float size, Paint paint) {
+            length = Character.toChars(codePoint, chars, 0);
+            return set(size, paint);
+        }
+
+        Key set(CharSequence text, int start, int end, float size, Paint paint) {
+            length = end - start;
+            if (chars.length < length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                chars[i] = text.charAt(start + i);
+            }
+            return set(size, paint);
+        }
+
+        private Key set(float size, Paint paint) {
+            sizeBits = Float.floatToIntBits(size);
+            typeface = paint.getTypeface();
+            // Hinting and fake bold change advances, anti-aliasing doesn't.
+            flags = paint.getFlags() &
+                    (Paint.FAKE_BOLD_TEXT_FLAG | Paint.LINEAR_TEXT_FLAG | Paint.SUBPIXEL_TEXT_FLAG);
+            scaleXBits = Float.floatToIntBits(paint.getTextScaleX());
+            skewXBits = Float.floatToIntBits(paint.getTextSkewX());
+            if (Build.VERSION.SDK_INT >= 21) {
+                letterSpacingBits = Float.floatToIntBits(paint.getLetterSpacing());
+                fontFeatures = paint.getFontFeatureSettings();
+            }
+
+            int result = 0;
+            for (int i = 0; i < length; i++) {
+                result = 31 * result + chars[i];
+            }
+            result = 31 * result + sizeBits;
+            result = 31 * result + System.identityHashCode(typeface);
+            result = 31 * result + flags;
+            result = 31 * result + scaleXBits;
+            result = 31 * result + skewXBits;
+            result = 31 * result + letterSpacingBits;
+            hash = 31 * result + (fontFeatures != null ? fontFeatures.hashCode() : 0);
+            return this;
+        }
+
+        Key copy(Key other) {
+            chars = new char[other.length];
+            System.arraycopy(other.chars, 0, chars, 0, other.length);
+            length = other.length;
+            sizeBits = other.sizeBits;
+            typeface = other.typeface;
+            flags = other.flags;
+            scaleXBits = other.scaleXBits;
+            skewXBits = other.skewXBits;
+            letterSpacingBits = other.letterSpacingBits;
+            fontFeatures = other.fontFeatures;
+            hash = other.hash;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            if (hash != other.hash || length != other.length || sizeBits != other.sizeBits ||
+                    typeface != other.typeface || flags != other.flags || scaleXBits != other.scaleXBits ||
+                    skewXBits != other.skewXBits || letterSpacingBits != other.letterSpacingBits ||
+                    !(fontFeatures == null ? other.fontFeatures == null : fontFeatures.equals(other.fontFeatures))) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (chars[i] != other.chars[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package org.digdug.animatedtextview;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+// Glyphs rasterized once and drawn as scaled bitmaps. Drawing text at a new size every frame makes the font engine
+// rasterize the glyph again at that size, which is the slowest part of a size animation. The atlas renders each
+// glyph once at the largest size it reaches and scales the bitmap down instead.
+//
+// Glyphs are packed in rows into ALPHA_8 pages, which are tinted by the paint's color when they're drawn, so one
+// entry serves every color. Glyphs that may have colors of their own, like emoji, can't be stored that way and are
+// left to be drawn as text. When the pages are full the least recently used page is emptied and reused. An atlas
+// can be shared by any number of views, and empties itself when the system is low on memory if it's registered
+// with a context. Only use it from the UI thread.
+public class GlyphAtlas implements ComponentCallbacks2 {
+    public static final int DEFAULT_PAGE_SIZE = 512;
+    public static final int DEFAULT_MAX_PAGES = 4;
+
+    @Nullable private static GlyphAtlas shared;
+
+    private final int pageSize;
+    private final int maxPages;
+    private final ArrayList<Page> pages = new ArrayList<Page>();
+    private final HashMap<Key, Entry> entries = new HashMap<Key, Entry>();
+    // Reused for lookups so that a hit doesn't allocate.
+    private final Key probe = new Key();
+    // Bumped every lookup. Pages remember when they were last used.
+    private long clock = 0;
+
+    private final Canvas canvas = new Canvas();
+    private final Paint renderPaint = new Paint();
+    private final Paint.FontMetrics fontMetrics = new Paint.FontMetrics();
+    private final RectF dst = new RectF();
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public GlyphAtlas() {
+        this(DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    public GlyphAtlas(int pageSize, int maxPages) {
+        if (pageSize <= 0 || maxPages <= 0) {
+            throw new IllegalArgumentException("Invalid atlas size: " + maxPages + " pages of " + pageSize);
+        }
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+    }
+
+    // An atlas shared by every view in the process that enables one. It's trimmed with the application.
+    public static GlyphAtlas getShared(Context context) {
+        if (shared == null) {
+            shared = new GlyphAtlas();
+            shared.register(context);
+        }
+        return shared;
+    }
+
+    // Trims the atlas when the application is asked to give memory back.
+    public void register(Context context) {
+        context.getApplicationContext().registerComponentCallbacks(this);
+    }
+
+    public void unregister(Context context) {
+        context.getApplicationContext().unregisterComponentCallbacks(this);
+    }
+
+    // Draws a glyph whose baseline origin is at 0, 0 on the canvas, at the paint's size, color and alpha. The glyph
+    // is rasterized at renderSize the first time, which should be the largest size it's drawn at. Returns false if
+    // the glyph can't be drawn from the atlas, because it may be in color or doesn't fit in a page, in which case
+    // nothing was drawn.
+    public boolean draw(Canvas target, char[] chars, int start, int length, float renderSize, Paint paint) {
+        if (isColorGlyph(chars, start, length)) {
+            return false;
+        }
+        final Entry entry = get(chars, start, length, renderSize, paint);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.bounds.isEmpty()) {
+            // Nothing to draw, e.g. a space.
+            return true;
+        }
+
+        final float scale = paint.getTextSize() / renderSize;
+        dst.set(-entry.originX * scale, -entry.originY * scale,
+                (entry.bounds.width() - entry.originX) * scale, (entry.bounds.height() - entry.originY) * scale);
+        // Scaled bitmaps need filtering to look like text.
+        final boolean filter = (paint.getFlags() & Paint.FILTER_BITMAP_FLAG) != 0;
+        paint.setFilterBitmap(true);
+        target.drawBitmap(entry.page.bitmap, entry.bounds, dst, paint);
+        paint.setFilterBitmap(filter);
+        return true;
+    }
+
+    // True if the glyph could be drawn from a color font, which an ALPHA_8 page would flatten into one color. That's
+    // anything outside the BMP, where nearly all emoji are, anything asking for emoji presentation, and the BMP
+    // symbol blocks that have emoji in them.
+    static boolean isColorGlyph(char[] chars, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            final char c = chars[i];
+            if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c) ||
+                    c == '\uFE0F' ||                   // Emoji presentation selector
+                    c == '\u20E3' ||                   // Combining enclosing keycap
+                    (c >= '\u2300' && c <= '\u23FF') || // Miscellaneous technical, e.g. watch and hourglass
+                    (c >= '\u2600' && c <= '\u27BF') || // Miscellaneous symbols and dingbats
+                    (c >= '\u2B00' && c <= '\u2BFF')) { // Miscellaneous symbols and arrows, e.g. star
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private Entry get(char[] chars, int start, int length, float size, Paint paint) {
+        clock++;
+        probe.set(chars, start, length, size, paint);
+        Entry entry = entries.get(probe);
+        if (entry != null) {
+            hits++;
+        } else {
+            misses++;
+            entry = render(chars, start, length, size, paint);
+            if (entry == null) {
+                return null;
+            }
+            entries.put(new Key().copy(probe), entry);
+        }
+        if (entry.page != null) {
+            entry.page.lastUsed = clock;
+        }
+        return entry;
+    }
+
+    @Nullable
+    private Entry render(char[] chars, int start, int length, float size, Paint paint) {
+        final Paint p = renderPaint;
+        p.set(paint);
+        p.setTextSize(size);
+        p.setColor(0xFF000000);
+        p.getFontMetrics(fontMetrics);
+        // Room for glyphs that overhang their advance.
+        final int pad = (int) Math.ceil(size / 8) + 1;
+        final int width = (int) Math.ceil(p.measureText(chars, start, length)) + 2 * pad;
+        final int height = (int) Math.ceil(fontMetrics.descent - fontMetrics.ascent) + 2 * pad;
+        if (width > pageSize || height > pageSize) {
+            return null;
+        }
+
+        final Entry entry = new Entry();
+        entry.originX = pad;
+        entry.originY = pad - fontMetrics.ascent;
+        if (width <= 2 * pad || height <= 2 * pad) {
+            // Empty, it doesn't need a page.
+            return entry;
+        }
+
+        final Page page = allocate(width, height, entry.bounds);
+        entry.page = page;
+        canvas.setBitmap(page.bitmap);
+        canvas.drawText(chars, start, length, entry.bounds.left + entry.originX, entry.bounds.top + entry.originY, p);
+        canvas.setBitmap(null);
+        return entry;
+    }
+
+    // Finds room for a width by height glyph, emptying the least recently used page if none has any. The page
+    // counts as used.
+    Page allocate(int width, int height, Rect out) {
+        final Page page = findRoom(width, height, out);
+        page.lastUsed = ++clock;
+        return page;
+    }
+
+    private Page findRoom(int width, int height, Rect out) {
+        for (int i = 0; i < pages.size(); i++) {
+            if (pages.get(i).allocate(width, height, out)) {
+                return pages.get(i);
+            }
+        }
+
+        Page page;
+        if (pages.size() < maxPages) {
+            page = new Page(Bitmap.createBitmap(pageSize, pageSize, Bitmap.Config.ALPHA_8));
+            pages.add(page);
+        } else {
+            page = pages.get(0);
+            for (int i = 1; i < pages.size(); i++) {
+                if (pages.get(i).lastUsed < page.lastUsed) {
+                    page = pages.get(i);
+                }
+            }
+            evict(page);
+        }
+        page.allocate(width, height, out);
+        return page;
+    }
+
+    private void evict(Page page) {
+        final Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue().page == page) {
+                it.remove();
+            }
+        }
+        page.clear();
+        evictions++;
+    }
+
+    // Drops every page. The bitmaps aren't recycled, a display list may still be drawing them. They're left to the
+    // garbage collector.
+    public void clear() {
+        entries.clear();
+        pages.clear();
+    }
+
+    // Drops every page but the most recently used one.
+    private void trim() {
+        if (pages.size() <= 1) {
+            return;
+        }
+        Page keep = pages.get(0);
+        for (int i = 1; i < pages.size(); i++) {
+            if (pages.get(i).lastUsed > keep.lastUsed) {
+                keep = pages.get(i);
+            }
+        }
+        final Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue().page != keep) {
+                it.remove();
+            }
+        }
+        evictions += pages.size() - 1;
+        pages.clear();
+        pages.add(keep);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        // From RUNNING_CRITICAL up the app is either about to be killed or isn't visible.
+        if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            clear();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            trim();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    public long getHitCount() {
+        return hits;
+    }
+
+    public long getMissCount() {
+        return misses;
+    }
+
+    public long getEvictionCount() {
+        return evictions;
+    }
+
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Glyphs are packed in rows. A glyph goes at the end of the first row it fits in, or starts a new row.
+    static class Page {
+        final Bitmap bitmap;
+        long lastUsed;
+        private final ArrayList<Rect> rows = new ArrayList<Rect>();
+        private int bottom = 0;
+
+        Page(Bitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+
+        boolean allocate(int width, int height, Rect out) {
+            for (int i = 0; i < rows.size(); i++) {
+                final Rect row = rows.get(i);
+                // Only rows that don't waste much height, so tall rows don't fill up with small glyphs.
+                if (height <= row.height() && height * 4 >= row.height() * 3 &&
+                        row.right + width <= bitmap.getWidth()) {
+                    out.set(row.right, row.top, row.right + width, row.top + height);
+                    row.right += width;
+                    return true;
+                }
+            }
+            if (bottom + height > bitmap.getHeight() || width > bitmap.getWidth()) {
+                return false;
+            }
+            rows.add(new Rect(0, bottom, width, bottom + height));
+            out.set(0, bottom, width, bottom + height);
+            bottom += height;
+            return true;
+        }
+
+        // Starts over in the same bitmap, so eviction doesn't allocate while drawing. Only the least recently used
+        // page is emptied. It can only still be in a display list waiting to be drawn if every page was drawn from
+        // in the same frame, and then the atlas is too small for what's on screen anyway.
+        void clear() {
+            rows.clear();
+            bottom = 0;
+            bitmap.eraseColor(Color.TRANSPARENT);
+        }
+    }
+
+    private static class Entry {
+        // Null if the glyph is empty.
+        @Nullable Page page;
+        final Rect bounds = new Rect();
+        // Where the glyph's baseline origin is, relative to bounds.
+        float originX;
+        float originY;
+    }
+
+    // A glyph is the same if its characters, size, typeface and the paint flags that change its shape are.
+    private static class Key {
+        char[] chars = new char[2];
+        int start;
+        int length;
+        int sizeBits;
+        @Nullable Typeface typeface;
+        int flags;
+        int skewBits;
+        int hash;
+
+        Key set(char[] chars, int start, int length, float size, Paint paint) {
+            this.chars = chars;
+            this.start = start;
+            this.length = length;
+            sizeBits = Float.floatToIntBits(size);
+            typeface = paint.getTypeface();
+            flags = paint.getFlags() & (Paint.FAKE_BOLD_TEXT_FLAG | Paint.ANTI_ALIAS_FLAG);
+            skewBits = Float.floatToIntBits(paint.getTextSkewX());
+
+            int result = 0;
+            for (int i = start; i < start + length; i++) {
+                result = 31 * result + chars[i];
+            }
+            result = 31 * result + sizeBits;
+            result = 31 * result + System.identityHashCode(typeface);
+            result = 31 * result + flags;
+            hash = 31 * result + skewBits;
+            return this;
+        }
+
+        // Copies a probe, which points into someone else's characters.
+        Key copy(Key other) {
+            chars = new char[other.length];
+            System.arraycopy(other.chars, other.start, chars, 0, other.length);
+            start = 0;
+            length = other.length;
+            sizeBits = other.sizeBits;
+            typeface = other.typeface;
+            flags = other.flags;
+            skewBits = other.skewBits;
+            hash = other.hash;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            if (hash != other.hash || length != other.length || sizeBits != other.sizeBits ||
+                    typeface != other.typeface || flags != other.flags || skewBits != other.skewBits) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (chars[start + i] != other.chars[other.start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.digdug.animatedtextview;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+
+// The text split into runs that share a color and size, with each run's position already laid out. Lets the idle
+// view draw whole runs at once (which keeps kerning and shaping intact) instead of one character at a time.
+class IdleTextRuns {
+    int[] start = new int[4];
+    int[] end = new int[4];
+    float[] x = new float[4];
+    // The top of the run's line.
+    float[] y = new float[4];
+    int[] color = new int[4];
+    float[] size = new float[4];
+    private int count = 0;
+
+    // What the runs were laid out for.
+    @Nullable private CharSequence text;
+    private float textSize;
+    private int textColor;
+    private int gravity;
+    private int width;
+    private int paddingLeft;
+    private int paddingRight;
+
+    int size() {
+        return count;
+    }
+
+    boolean matches(CharSequence text, float textSize, int textColor, int gravity,
+                    int width, int paddingLeft, int paddingRight) {
+        return this.text == text &&
+                this.textSize == textSize &&
+                this.textColor == textColor &&
+                this.gravity == gravity &&
+                this.width == width &&
+                this.paddingLeft == paddingLeft &&
+                this.paddingRight == paddingRight;
+    }
+
+    void setKey(CharSequence text, float textSize, int textColor, int gravity,
+                int width, int paddingLeft, int paddingRight) {
+        this.text = text;
+        this.textSize = textSize;
+        this.textColor = textColor;
+        this.gravity = gravity;
+        this.width = width;
+        this.paddingLeft = paddingLeft;
+        this.paddingRight = paddingRight;
+    }
+
+    void invalidate() {
+        text = null;
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    // Adds a run. Positions are filled in later, once the total width is known. Returns the run's index.
+    int add(int runStart, int runEnd, int runColor, float runSize) {
+        if (count == start.length) {
+            final int capacity = count * 2;
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            color = Arrays.copyOf(color, capacity);
+            size = Arrays.copyOf(size, capacity);
+        }
+        start[count] = runStart;
+        end[count] = runEnd;
+        y[count] = 0;
+        color[count] = runColor;
+        size[count] = runSize;
+        return count++;
+    }
+
+    void draw(Canvas canvas, CharSequence text, Paint paint) {
+        final int prevColor = paint.getColor();
+        final float prevSize = paint.getTextSize();
+        for (int i = 0; i < count; i++) {
+            paint.setColor(color[i]);
+            paint.setTextSize(size[i]);
+            canvas.drawText(text, start[i], end[i], x[i], y[i] + size[i], paint);
+        }
+        paint.setColor(prevColor);
+        paint.setTextSize(prevSize);
+    }
+}
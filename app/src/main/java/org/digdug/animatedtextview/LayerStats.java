@@ -0,0 +1,77 @@
+package org.digdug.animatedtextview;
+
+// Counts which layers a view's layer policy chose for its transitions. The counters keep running until reset.
+public class LayerStats {
+    public enum Layer {
+        // Glyphs are drawn directly.
+        NONE,
+        // Each transformed glyph is rendered into its own bitmap once, then drawn transformed.
+        GLYPH,
+        // The whole view is on a hardware layer.
+        HARDWARE,
+        // The whole view is on a software layer.
+        SOFTWARE
+    }
+
+    long noLayerCount;
+    long glyphLayerCount;
+    long hardwareLayerCount;
+    long softwareLayerCount;
+    long glyphBitmapCount;
+
+    void onTransition(Layer layer) {
+        switch (layer) {
+            case NONE:
+                noLayerCount++;
+                break;
+            case GLYPH:
+                glyphLayerCount++;
+                break;
+            case HARDWARE:
+                hardwareLayerCount++;
+                break;
+            case SOFTWARE:
+                softwareLayerCount++;
+                break;
+        }
+    }
+
+    // Transitions drawn without any layer.
+    public long getNoLayerCount() {
+        return noLayerCount;
+    }
+
+    // Transitions that used per-glyph layers.
+    public long getGlyphLayerCount() {
+        return glyphLayerCount;
+    }
+
+    // Transitions that put the view on a hardware layer.
+    public long getHardwareLayerCount() {
+        return hardwareLayerCount;
+    }
+
+    // Transitions that put the view on a software layer.
+    public long getSoftwareLayerCount() {
+        return softwareLayerCount;
+    }
+
+    // Glyph bitmaps rendered for per-glyph layers.
+    public long getGlyphBitmapCount() {
+        return glyphBitmapCount;
+    }
+
+    public void reset() {
+        noLayerCount = 0;
+        glyphLayerCount = 0;
+        hardwareLayerCount = 0;
+        softwareLayerCount = 0;
+        glyphBitmapCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "LayerStats none=" + noLayerCount + " glyph=" + glyphLayerCount + " hardware=" + hardwareLayerCount +
+                " software=" + softwareLayerCount + " glyphBitmaps=" + glyphBitmapCount;
+    }
+}
@@ -107,23 +107,23 @@ public class MainActivity extends ActionBarActivity {
         adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         transitions.setAdapter(adapter);
         transitions.setSelection(0, true);
-        text.setAnimations(R.anim.fade_in, R.anim.fade_out);
+        text.setPresets("fade_in", "fade_out");
         transitions.setOnItemSelectedListener(new OnItemSelectedListener() {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
                 CharSequence obj = (CharSequence) parent.getItemAtPosition(position);
                 if (obj.equals("Fade")) {
-                    text.setAnimations(R.anim.fade_in, R.anim.fade_out);
+                    text.setPresets("fade_in", "fade_out");
                 } else if (obj.equals("Rotate")) {
-                    text.setAnimations(R.anim.rotate_in, R.anim.rotate_out);
+                    text.setPresets("rotate_in", "rotate_out");
                 } else if (obj.equals("Slide in")) {
-                    text.setAnimations(R.anim.slide_in, R.anim.drop_out);
+                    text.setPresets("slide_in", "drop_out");
                 } else if (obj.equals("Rise up")) {
-                    text.setAnimations(R.anim.rise_in, R.anim.rise_out);
+                    text.setPresets("rise_in", "rise_out");
                 } else if (obj.equals("Squash")) {
-                    text.setAnimations(R.anim.squash_in, R.anim.squash_out);
+                    text.setPresets("squash_in", "squash_out");
                 } else if (obj.equals("Zoom")) {
-                    text.setAnimations(R.anim.zoom_in, R.anim.zoom_out);
+                    text.setPresets("zoom_in", "zoom_out");
                 }
             }
 
@@ -0,0 +1,293 @@
+package org.digdug.animatedtextview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.support.annotation.Nullable;
+import android.text.Spanned;
+import android.text.style.CharacterStyle;
+
+// Draws numbers as an odometer. Digits sit in fixed width cells laid out by an Odometer, and the ones that change
+// roll through a strip of the digits 0 to 9 that's rendered once per size and color. Cells that don't change are
+// rendered into a layer when a transition starts, so a frame only draws the cells that are moving.
+class NumericTicker {
+    private static final char[] DIGITS = "0123456789".toCharArray();
+    // The strip ends with 0 again, so a roll from 9 to 0 has somewhere to go.
+    private static final int STRIP_ROWS = 11;
+
+    private final GlyphMetrics metrics;
+    private final Odometer odometer = new Odometer();
+    private final StaticGlyphLayer layer = new StaticGlyphLayer();
+    private float layerLeft;
+
+    // Every digit gets the widest digit's advance, and is centered in it.
+    private float digitAdvance;
+    private final float[] digitOffset = new float[10];
+    // Rows are one line of text tall. rowBaseline is where the baseline sits in a row.
+    private float rowHeight;
+    private float rowBaseline;
+    private final Paint.FontMetrics fontMetrics = new Paint.FontMetrics();
+    // What the digits were measured with.
+    private float measuredSize = -1;
+    @Nullable private Typeface measuredTypeface;
+
+    @Nullable private Bitmap strip;
+    private final Canvas stripCanvas = new Canvas();
+    private float stripSize = -1;
+    private int stripColor;
+    @Nullable private Typeface stripTypeface;
+
+    // The text the odometer was last laid out for while idle.
+    @Nullable private CharSequence idleText;
+
+    private boolean running = false;
+    private long startTime;
+    private long duration;
+    @Nullable private AnimationCurve curve;
+
+    NumericTicker(GlyphMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // True if text can be drawn as an odometer. Text with spans that style it is left to the normal transitions.
+    static boolean canTick(CharSequence text) {
+        if (!Odometer.isNumeric(text)) {
+            return false;
+        }
+        return !(text instanceof Spanned) ||
+                ((Spanned) text).getSpans(0, text.length(), CharacterStyle.class).length == 0;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    // Starts rolling from one number to another, using the paint's size and typeface. If a transition is already
+    // running, digits carry on from where they are. curve sets the timing, if it's null the roll is linear over
+    // fallbackDuration. Returns how many cells change.
+    int start(CharSequence from, CharSequence to, Paint paint, long now, @Nullable AnimationCurve curve,
+              long fallbackDuration) {
+        measureDigits(paint);
+        final float size = paint.getTextSize();
+        if (running) {
+            odometer.retarget(to, getProgress(now), digitAdvance, metrics, size);
+        } else {
+            odometer.layout(from, to, digitAdvance, metrics, size);
+        }
+        idleText = null;
+
+        startTime = now;
+        this.curve = curve;
+        duration = curve != null ? curve.getDuration() : fallbackDuration;
+        running = odometer.getChangedCount() > 0;
+        layer.invalidate();
+        return odometer.getChangedCount();
+    }
+
+    void stop() {
+        running = false;
+        idleText = null;
+        layer.invalidate();
+    }
+
+    // The strip isn't recycled, a display list may still be drawing it. It's left to the garbage collector.
+    void release() {
+        layer.release();
+        if (strip != null) {
+            stripCanvas.setBitmap(null);
+            strip = null;
+        }
+        stripSize = -1;
+    }
+
+    private float getProgress(long now) {
+        final long time = now - startTime;
+        if (curve != null) {
+            return curve.getProgress(curve.getFraction(time));
+        }
+        return duration <= 0 ? 1 : Math.min(1, Math.max(0, (float) time / duration));
+    }
+
+    // Draws a frame of the running transition. The canvas's origin is the top of the text. Returns false once
+    // the transition is over, and this frame was its last.
+    boolean draw(Canvas canvas, long now, Paint paint, TransitionLayout.Align align, float start, float end,
+                 int width, int height) {
+        final float left = getLeft(align, start, end);
+        final boolean done = now - startTime >= duration;
+        final float progress = done ? 1 : getProgress(now);
+
+        // Cells that aren't changing are only drawn once per transition.
+        if (!layer.isValid() || layerLeft != left) {
+            final Canvas layerCanvas = layer.begin(width, height);
+            if (layerCanvas != null) {
+                drawUnchanged(layerCanvas, paint, left);
+                layerLeft = left;
+            }
+        }
+        if (layer.isValid()) {
+            layer.draw(canvas);
+        } else {
+            drawUnchanged(canvas, paint, left);
+        }
+
+        final boolean hasStrip = prepareStrip(paint);
+        final Odometer o = odometer;
+        for (int i = 0; i < o.getChangedCount(); i++) {
+            final int cell = o.getChanged(i);
+            if (o.getKind(cell) == Odometer.ROLL && hasStrip) {
+                drawRoll(canvas, cell, left, paint.getTextSize(), progress);
+            } else {
+                drawSlide(canvas, cell, left, paint, progress);
+            }
+        }
+
+        if (done) {
+            running = false;
+        }
+        return !done;
+    }
+
+    // Draws text that isn't changing. The canvas's origin is the top of the text.
+    void drawIdle(Canvas canvas, CharSequence text, Paint paint, TransitionLayout.Align align, float start,
+                  float end) {
+        measureDigits(paint);
+        if (idleText != text) {
+            odometer.layout(text, text, digitAdvance, metrics, paint.getTextSize());
+            idleText = text;
+        }
+        drawUnchanged(canvas, paint, getLeft(align, start, end));
+    }
+
+    // The area the changing cells cover, relative to the top of the text.
+    void getDirtyBounds(TransitionLayout.Align align, float start, float end, RectF out) {
+        out.setEmpty();
+        final Odometer o = odometer;
+        final float left = getLeft(align, start, end);
+        final float top = measuredSize - rowBaseline;
+        for (int i = 0; i < o.getChangedCount(); i++) {
+            final int cell = o.getChanged(i);
+            final float x = left + o.getX(cell);
+            out.union(x, top, x + o.getAdvance(cell), top + rowHeight);
+        }
+    }
+
+    private float getLeft(TransitionLayout.Align align, float start, float end) {
+        final float width = odometer.getWidth();
+        switch (align) {
+            case RIGHT:
+                return end - width;
+            case CENTER:
+                return (start + end - width) / 2;
+            default:
+                return start;
+        }
+    }
+
+    private void drawUnchanged(Canvas canvas, Paint paint, float left) {
+        final Odometer o = odometer;
+        final float baseline = paint.getTextSize();
+        for (int cell = 0; cell < o.size(); cell++) {
+            final char c = o.getToChar(cell);
+            if (o.getKind(cell) == Odometer.UNCHANGED && c != Odometer.EMPTY) {
+                canvas.drawText(o.toChars, cell, 1, left + o.getX(cell) + getOffset(c), baseline, paint);
+            }
+        }
+    }
+
+    // Shows the strip through the cell, scrolled to the cell's position.
+    private void drawRoll(Canvas canvas, int cell, float left, float baseline, float progress) {
+        final float x = left + odometer.getX(cell);
+        final float top = baseline - rowBaseline;
+        final int save = canvas.save();
+        canvas.clipRect(x, top, x + odometer.getAdvance(cell), top + rowHeight);
+        canvas.drawBitmap(strip, x, top - odometer.getPosition(cell, progress) * rowHeight, null);
+        canvas.restoreToCount(save);
+    }
+
+    // Moves the old character up and out of the cell while the new one comes in from below.
+    private void drawSlide(Canvas canvas, int cell, float left, Paint paint, float progress) {
+        final Odometer o = odometer;
+        final float x = left + o.getX(cell);
+        final float baseline = paint.getTextSize();
+        final float top = baseline - rowBaseline;
+        final int save = canvas.save();
+        canvas.clipRect(x, top, x + o.getAdvance(cell), top + rowHeight);
+        final char from = o.getFromChar(cell);
+        if (from != Odometer.EMPTY) {
+            canvas.drawText(o.fromChars, cell, 1, x + getOffset(from), baseline - progress * rowHeight, paint);
+        }
+        final char to = o.getToChar(cell);
+        if (to != Odometer.EMPTY) {
+            canvas.drawText(o.toChars, cell, 1, x + getOffset(to), baseline + (1 - progress) * rowHeight, paint);
+        }
+        canvas.restoreToCount(save);
+    }
+
+    private float getOffset(char c) {
+        return Odometer.isDigit(c) ? digitOffset[c - '0'] : 0;
+    }
+
+    // Finds the digits' shared advance and the row metrics. Digits are only measured when the size or typeface
+    // changes.
+    private void measureDigits(Paint paint) {
+        final float size = paint.getTextSize();
+        final Typeface typeface = paint.getTypeface();
+        if (size == measuredSize && typeface == measuredTypeface) {
+            return;
+        }
+
+        digitAdvance = 0;
+        for (int d = 0; d < 10; d++) {
+            digitOffset[d] = metrics.getAdvance(DIGITS[d], size);
+            digitAdvance = Math.max(digitAdvance, digitOffset[d]);
+        }
+        for (int d = 0; d < 10; d++) {
+            digitOffset[d] = (digitAdvance - digitOffset[d]) / 2;
+        }
+
+        paint.getFontMetrics(fontMetrics);
+        rowHeight = (float) Math.ceil(fontMetrics.descent - fontMetrics.ascent);
+        rowBaseline = -fontMetrics.ascent;
+        measuredSize = size;
+        measuredTypeface = typeface;
+        idleText = null;
+    }
+
+    // Renders the digit strip if the paint has changed since it was last rendered. Returns false if there's
+    // nothing to render into.
+    private boolean prepareStrip(Paint paint) {
+        final float size = paint.getTextSize();
+        final int color = paint.getColor();
+        final Typeface typeface = paint.getTypeface();
+        if (strip != null && size == stripSize && color == stripColor && typeface == stripTypeface) {
+            return true;
+        }
+
+        measureDigits(paint);
+        final int width = (int) Math.ceil(digitAdvance);
+        final int height = (int) Math.ceil(rowHeight * STRIP_ROWS);
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+
+        if (strip == null || strip.getWidth() != width || strip.getHeight() != height) {
+            // The old strip is dropped rather than recycled, a display list may still be drawing it.
+            strip = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            stripCanvas.setBitmap(strip);
+        } else {
+            strip.eraseColor(Color.TRANSPARENT);
+        }
+
+        for (int row = 0; row < STRIP_ROWS; row++) {
+            final int d = row % 10;
+            stripCanvas.drawText(DIGITS, d, 1, digitOffset[d], row * rowHeight + rowBaseline, paint);
+        }
+        stripSize = size;
+        stripColor = color;
+        stripTypeface = typeface;
+        return true;
+    }
+}
@@ -0,0 +1,169 @@
+package org.digdug.animatedtextview;
+
+import android.text.Spanned;
+import android.text.style.AbsoluteSizeSpan;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.RelativeSizeSpan;
+import android.text.style.TextAppearanceSpan;
+
+import java.util.Arrays;
+
+// Resolves the color and size of every character in a piece of text in a single pass over its spans. Lookups
+// remember the last run they hit, so walking the text in either direction is O(1) per character.
+class SpanRunIndex implements GlyphStyles {
+    private int[] runStart = new int[4];
+    private int[] runEnd = new int[4];
+    private int[] runColor = new int[4];
+    private float[] runSize = new float[4];
+    private int count = 0;
+    private int length = 0;
+    private int last = 0;
+
+    private int defaultColor;
+    private float defaultSize;
+
+    void build(CharSequence text, int defaultColor, float defaultSize, float density) {
+        this.defaultColor = defaultColor;
+        this.defaultSize = defaultSize;
+        length = text.length();
+        count = 0;
+        last = 0;
+
+        if (!(text instanceof Spanned)) {
+            add(0, length, defaultColor, defaultSize);
+            return;
+        }
+
+        final Spanned spanned = (Spanned) text;
+        int start = 0;
+        while (start < length) {
+            int end = nextTransition(spanned, start, length);
+            Object[] spans = spanned.getSpans(start, end, Object.class);
+
+            int color = defaultColor;
+            boolean hasColor = false;
+            float size = defaultSize;
+            boolean hasSize = false;
+            float relativeSize = 1;
+            for (Object span : spans) {
+                if (!hasColor && span instanceof ForegroundColorSpan) {
+                    color = ((ForegroundColorSpan) span).getForegroundColor();
+                    hasColor = true;
+                } else if (!hasSize && span instanceof TextAppearanceSpan) {
+                    // TextAppearanceSpans without a size report -1.
+                    int appearanceSize = ((TextAppearanceSpan) span).getTextSize();
+                    if (appearanceSize > 0) {
+                        size = appearanceSize;
+                        hasSize = true;
+                    }
+                } else if (!hasSize && span instanceof AbsoluteSizeSpan) {
+                    AbsoluteSizeSpan absolute = (AbsoluteSizeSpan) span;
+                    size = absolute.getDip() ? absolute.getSize() * density : absolute.getSize();
+                    hasSize = true;
+                } else if (span instanceof RelativeSizeSpan) {
+                    relativeSize *= ((RelativeSizeSpan) span).getSizeChange();
+                }
+            }
+
+            add(start, end, color, size * relativeSize);
+            start = end;
+        }
+    }
+
+    int getRunCount() {
+        return count;
+    }
+
+    int getRunStart(int run) {
+        return runStart[run];
+    }
+
+    int getRunEnd(int run) {
+        return runEnd[run];
+    }
+
+    int getRunColor(int run) {
+        return runColor[run];
+    }
+
+    float getRunSize(int run) {
+        return runSize[run];
+    }
+
+    // True if every character is the default size.
+    boolean hasUniformSize() {
+        for (int run = 0; run < count; run++) {
+            if (runSize[run] != defaultSize) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getColor(int index) {
+        final int run = findRun(index);
+        return run < 0 ? defaultColor : runColor[run];
+    }
+
+    @Override
+    public float getSize(int index) {
+        final int run = findRun(index);
+        return run < 0 ? defaultSize : runSize[run];
+    }
+
+    private int findRun(int index) {
+        if (index < 0 || index >= length || count == 0) {
+            return -1;
+        }
+
+        // Most lookups walk the text in order, so check the last run and its neighbours first.
+        if (index >= runStart[last] && index < runEnd[last]) {
+            return last;
+        }
+        if (last + 1 < count && index >= runStart[last + 1] && index < runEnd[last + 1]) {
+            return ++last;
+        }
+        if (last > 0 && index >= runStart[last - 1] && index < runEnd[last - 1]) {
+            return --last;
+        }
+
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (index < runStart[mid]) {
+                high = mid - 1;
+            } else if (index >= runEnd[mid]) {
+                low = mid + 1;
+            } else {
+                last = mid;
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static int nextTransition(Spanned spanned, int start, int limit) {
+        int next = spanned.nextSpanTransition(start, limit, ForegroundColorSpan.class);
+        next = Math.min(next, spanned.nextSpanTransition(start, limit, TextAppearanceSpan.class));
+        next = Math.min(next, spanned.nextSpanTransition(start, limit, AbsoluteSizeSpan.class));
+        next = Math.min(next, spanned.nextSpanTransition(start, limit, RelativeSizeSpan.class));
+        return next;
+    }
+
+    private void add(int start, int end, int color, float size) {
+        if (count == runStart.length) {
+            final int capacity = count * 2;
+            runStart = Arrays.copyOf(runStart, capacity);
+            runEnd = Arrays.copyOf(runEnd, capacity);
+            runColor = Arrays.copyOf(runColor, capacity);
+            runSize = Arrays.copyOf(runSize, capacity);
+        }
+        runStart[count] = start;
+        runEnd[count] = end;
+        runColor[count] = color;
+        runSize[count] = size;
+        count++;
+    }
+}
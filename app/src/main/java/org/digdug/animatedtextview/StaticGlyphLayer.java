@@ -0,0 +1,101 @@
+package org.digdug.animatedtextview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.RectF;
+import android.support.annotation.Nullable;
+
+// An offscreen bitmap holding the glyphs that aren't changing. It's rendered once and then composited every frame,
+// so only the glyphs that are actually animating need to be drawn live.
+class StaticGlyphLayer {
+    @Nullable private Bitmap bitmap;
+    private final Canvas canvas = new Canvas();
+    private boolean valid = false;
+    private int regionSave;
+
+    // What the layer was last rendered for. If any of these change the layer has to be redrawn.
+    @Nullable private CharSequence text;
+    private float textSize;
+    private int color;
+    private int gravity;
+
+    boolean isValid() {
+        return valid;
+    }
+
+    void invalidate() {
+        valid = false;
+        text = null;
+    }
+
+    // Returns true if this layer already holds the given idle text.
+    boolean matches(CharSequence text, float textSize, int color, int gravity, int width, int height) {
+        return valid &&
+                this.text == text &&
+                this.textSize == textSize &&
+                this.color == color &&
+                this.gravity == gravity &&
+                bitmap != null && bitmap.getWidth() == width && bitmap.getHeight() == height;
+    }
+
+    void setKey(@Nullable CharSequence text, float textSize, int color, int gravity) {
+        this.text = text;
+        this.textSize = textSize;
+        this.color = color;
+        this.gravity = gravity;
+    }
+
+    // Clears the layer and returns a canvas to draw its contents into. The bitmap is reused if the size hasn't
+    // changed. Returns null if there's nothing to draw into.
+    @Nullable
+    Canvas begin(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+
+        if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            release();
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            canvas.setBitmap(bitmap);
+        } else {
+            bitmap.eraseColor(Color.TRANSPARENT);
+        }
+
+        valid = true;
+        return canvas;
+    }
+
+    // Clears part of the layer and returns a canvas clipped to it so that part can be redrawn. Returns null if
+    // the layer isn't valid. Call endRegion when done.
+    @Nullable
+    Canvas beginRegion(RectF region) {
+        if (!valid || bitmap == null) {
+            return null;
+        }
+        regionSave = canvas.save();
+        canvas.clipRect(region.left, region.top, region.right, region.bottom);
+        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        return canvas;
+    }
+
+    void endRegion() {
+        canvas.restoreToCount(regionSave);
+    }
+
+    void draw(Canvas target) {
+        if (valid && bitmap != null) {
+            target.drawBitmap(bitmap, 0, 0, null);
+        }
+    }
+
+    // The bitmap isn't recycled, a display list may still be drawing it. It's left to the garbage collector.
+    void release() {
+        invalidate();
+        if (bitmap != null) {
+            canvas.setBitmap(null);
+            bitmap = null;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.digdug.animatedtextview;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.View;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Hands text updates to the UI thread, keeping only the newest one when they arrive faster than they're shown.
+// offer() can be called from any thread, everything else has to be called on the UI thread.
+class TextUpdateThrottler {
+    // Deliver updates as soon as the UI thread gets to them.
+    static final long ASAP = -1;
+    // Deliver at most one update per frame, on the next frame.
+    static final long NEXT_FRAME = 0;
+
+    private static final long FRAME_MILLIS = 16;
+
+    interface Target {
+        // droppedUpdates is how many updates were replaced by this one since the last delivery.
+        void onTextUpdate(CharSequence text, int droppedUpdates);
+    }
+
+    private final View view;
+    private final Target target;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final AtomicReference<CharSequence> pending = new AtomicReference<CharSequence>();
+    private final AtomicInteger droppedSinceDelivery = new AtomicInteger();
+    private final AtomicLong droppedTotal = new AtomicLong();
+    private volatile long interval = ASAP;
+    // Only touched on the UI thread.
+    private long lastDelivery = -1;
+
+    private final Runnable schedule = new Runnable() {
+        @Override
+        public void run() {
+            scheduleDelivery();
+        }
+    };
+
+    private final Runnable deliver = new Runnable() {
+        @Override
+        public void run() {
+            final CharSequence text = pending.getAndSet(null);
+            if (text == null) {
+                return;
+            }
+            lastDelivery = SystemClock.uptimeMillis();
+            target.onTextUpdate(text, droppedSinceDelivery.getAndSet(0));
+        }
+    };
+
+    TextUpdateThrottler(View view, Target target) {
+        this.view = view;
+        this.target = target;
+    }
+
+    // ASAP, NEXT_FRAME, or the minimum number of milliseconds between updates.
+    void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    long getInterval() {
+        return interval;
+    }
+
+    long getDroppedCount() {
+        return droppedTotal.get();
+    }
+
+    void resetDroppedCount() {
+        droppedTotal.set(0);
+    }
+
+    void offer(CharSequence text) {
+        if (text == null) {
+            text = "";
+        }
+
+        if (pending.getAndSet(text) != null) {
+            // Something is already waiting to be delivered. It's been replaced.
+            droppedSinceDelivery.incrementAndGet();
+            droppedTotal.incrementAndGet();
+            return;
+        }
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            scheduleDelivery();
+        } else {
+            handler.post(schedule);
+        }
+    }
+
+    // Delivers anything pending right away.
+    void flush() {
+        removeCallbacks();
+        deliver.run();
+    }
+
+    // Throws away anything pending. It's counted as dropped.
+    void cancel() {
+        removeCallbacks();
+        if (pending.getAndSet(null) != null) {
+            droppedSinceDelivery.incrementAndGet();
+            droppedTotal.incrementAndGet();
+        }
+    }
+
+    boolean hasPending() {
+        return pending.get() != null;
+    }
+
+    private void scheduleDelivery() {
+        final long interval = this.interval;
+        if (interval == NEXT_FRAME) {
+            if (Build.VERSION.SDK_INT >= 16) {
+                view.postOnAnimation(deliver);
+            } else {
+                handler.postDelayed(deliver, FRAME_MILLIS);
+            }
+            return;
+        }
+
+        final long wait = interval < 0 || lastDelivery < 0 ? 0 : lastDelivery + interval - SystemClock.uptimeMillis();
+        if (wait <= 0) {
+            deliver.run();
+        } else {
+            handler.postDelayed(deliver, wait);
+        }
+    }
+
+    private void removeCallbacks() {
+        handler.removeCallbacks(schedule);
+        handler.removeCallbacks(deliver);
+        view.removeCallbacks(deliver);
+    }
+}
@@ -0,0 +1,218 @@
+package org.digdug.animatedtextview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Picks the layers a transition is drawn with, and owns the per-glyph ones.
+//
+// Drawing text through a rotate or scale makes the renderer rasterize the glyph again at every new transform.
+// A glyph layer renders the glyph into a bitmap once, at the largest size it reaches, and each frame only draws
+// that bitmap transformed. Glyphs are rendered when the transition begins, so frames don't allocate. They're packed
+// into pages that are kept and drawn over by the next transition, so toggling text doesn't allocate bitmaps either.
+//
+// A GlyphAtlas does the same job for glyphs drawn through it, with pages shared between transitions and views, so
+// AUTO doesn't add glyph layers on top of one.
+class TransitionLayers {
+    // No glyph layers for transitions that change more glyphs than this. Rendering them all would cost more than the
+    // frames save, and the pages would have to grow with the text.
+    static final int MAX_GLYPH_LAYERS = 48;
+    // Glyphs too big for a page get one of their own size.
+    static final int PAGE_SIZE = 256;
+
+    private final LayerStats stats;
+    private LayerStats.Layer layer = LayerStats.Layer.NONE;
+
+    // Pages are reused by every transition, and dropped when the view is detached.
+    private final ArrayList<GlyphAtlas.Page> pages = new ArrayList<GlyphAtlas.Page>();
+    // Counts transitions. Pages remember the last one that rendered into them.
+    private long generation = 0;
+
+    // Indexed by 2 * transition + slot, like GlyphFrames. The page each glyph is in, or null if it's drawn as text.
+    private GlyphAtlas.Page[] glyphPages = new GlyphAtlas.Page[32];
+    private Rect[] bounds = new Rect[0];
+    // The size each glyph was rendered at, and where its origin is relative to its bounds.
+    private float[] renderSize = new float[32];
+    private float[] originX = new float[32];
+    private float[] originY = new float[32];
+
+    private final Canvas canvas = new Canvas();
+    private final Paint renderPaint = new Paint();
+    private final Paint.FontMetrics fontMetrics = new Paint.FontMetrics();
+    private final RectF dst = new RectF();
+
+    TransitionLayers(LayerStats stats) {
+        this.stats = stats;
+    }
+
+    // A layer for the whole view is only used when it's asked for. Redrawing a view sized layer every frame costs
+    // more than drawing the glyphs directly, so AUTO falls back to no layer when there are too many glyphs.
+    static LayerStats.Layer choose(AnimatedTextView.LayerPolicy policy, boolean transformed, int changed,
+                                   boolean hardwareAccelerated, boolean atlas) {
+        switch (policy) {
+            case GLYPH:
+                return transformed && changed <= MAX_GLYPH_LAYERS ? LayerStats.Layer.GLYPH : LayerStats.Layer.NONE;
+            case VIEW:
+                return hardwareAccelerated ? LayerStats.Layer.HARDWARE : LayerStats.Layer.SOFTWARE;
+            case AUTO:
+                // Alpha and color changes draw fine without a layer.
+                if (!transformed || changed == 0 || changed > MAX_GLYPH_LAYERS || atlas) {
+                    return LayerStats.Layer.NONE;
+                }
+                return LayerStats.Layer.GLYPH;
+            default:
+                return LayerStats.Layer.NONE;
+        }
+    }
+
+    // Starts drawing transitions t using layer, in place of the last transition. Glyph layers are rendered here, in
+    // the glyphs' colors with paint's typeface and flags.
+    void begin(LayerStats.Layer layer, TransitionBuffer t, Paint paint) {
+        release();
+        this.layer = layer;
+        stats.onTransition(layer);
+        if (layer != LayerStats.Layer.GLYPH) {
+            return;
+        }
+
+        if (glyphPages.length < 2 * t.size()) {
+            final int capacity = Math.max(2 * t.size(), glyphPages.length * 2);
+            glyphPages = new GlyphAtlas.Page[capacity];
+            renderSize = Arrays.copyOf(renderSize, capacity);
+            originX = Arrays.copyOf(originX, capacity);
+            originY = Arrays.copyOf(originY, capacity);
+        }
+        if (bounds.length < glyphPages.length) {
+            final int from = bounds.length;
+            bounds = Arrays.copyOf(bounds, glyphPages.length);
+            for (int i = from; i < bounds.length; i++) {
+                bounds[i] = new Rect();
+            }
+        }
+
+        // Frames are recorded from scratch, so nothing still draws the last transition's glyphs from the pages.
+        generation++;
+        for (int i = 0; i < pages.size(); i++) {
+            pages.get(i).clear();
+        }
+
+        renderPaint.set(paint);
+        for (int i = 0; i < t.size(); i++) {
+            // Glyphs that stay the same letter only move, they're never drawn transformed.
+            if (t.isSameChar(i)) {
+                continue;
+            }
+            final float size = Math.max(t.fromSize[i], t.toSize[i]);
+            if (t.hasFrom[i]) {
+                render(2 * i + GlyphFrames.HIDING, t.glyphChars, t.fromGlyph[i], t.fromGlyphLength[i], size,
+                        t.fromColor[i]);
+            }
+            if (t.hasTo[i]) {
+                render(2 * i + GlyphFrames.SHOWING, t.glyphChars, t.toGlyph[i], t.toGlyphLength[i], size,
+                        t.toColor[i]);
+            }
+        }
+
+        // Pages only a bigger transition needed.
+        for (int i = pages.size() - 1; i >= 0; i--) {
+            if (pages.get(i).lastUsed != generation) {
+                pages.remove(i);
+            }
+        }
+    }
+
+    LayerStats.Layer getLayer() {
+        return layer;
+    }
+
+    boolean usesGlyphLayers() {
+        return layer == LayerStats.Layer.GLYPH;
+    }
+
+    // Draws a glyph whose origin is at 0, 0 on the already transformed canvas, from its page. The paint's size,
+    // color and alpha are the glyph's. Glyphs without a page are drawn as text.
+    void draw(Canvas target, int i, int slot, char[] chars, int start, int length, Paint paint) {
+        final int k = 2 * i + slot;
+        final GlyphAtlas.Page page = glyphPages[k];
+        if (page == null) {
+            target.drawText(chars, start, length, 0, 0, paint);
+            return;
+        }
+
+        final Rect b = bounds[k];
+        final float scale = paint.getTextSize() / renderSize[k];
+        dst.set(-originX[k] * scale, -originY[k] * scale,
+                (b.width() - originX[k]) * scale, (b.height() - originY[k]) * scale);
+        // The page already has the glyph's color. Only the paint's alpha is applied. Scaled bitmaps need
+        // filtering to look like text.
+        final boolean filter = (paint.getFlags() & Paint.FILTER_BITMAP_FLAG) != 0;
+        paint.setFilterBitmap(true);
+        target.drawBitmap(page.bitmap, b, dst, paint);
+        paint.setFilterBitmap(filter);
+    }
+
+    private void render(int k, char[] chars, int start, int length, float size, int color) {
+        final Paint p = renderPaint;
+        p.setTextSize(size);
+        p.setColor(color);
+        p.getFontMetrics(fontMetrics);
+        // Room for glyphs that overhang their advance.
+        final float pad = size / 8 + 1;
+        final int width = (int) Math.ceil(p.measureText(chars, start, length) + 2 * pad);
+        final int height = (int) Math.ceil(fontMetrics.descent - fontMetrics.ascent + 2 * pad);
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        final Rect b = bounds[k];
+        final GlyphAtlas.Page page = allocate(width, height, b);
+        canvas.setBitmap(page.bitmap);
+        canvas.drawText(chars, start, length, b.left + pad, b.top + pad - fontMetrics.ascent, p);
+        canvas.setBitmap(null);
+
+        glyphPages[k] = page;
+        renderSize[k] = size;
+        originX[k] = pad;
+        originY[k] = pad - fontMetrics.ascent;
+        stats.glyphBitmapCount++;
+    }
+
+    private GlyphAtlas.Page allocate(int width, int height, Rect out) {
+        GlyphAtlas.Page page = null;
+        for (int i = 0; i < pages.size() && page == null; i++) {
+            if (pages.get(i).allocate(width, height, out)) {
+                page = pages.get(i);
+            }
+        }
+        if (page == null) {
+            page = new GlyphAtlas.Page(Bitmap.createBitmap(Math.max(PAGE_SIZE, width), Math.max(PAGE_SIZE, height),
+                    Bitmap.Config.ARGB_8888));
+            page.allocate(width, height, out);
+            pages.add(page);
+        }
+        page.lastUsed = generation;
+        return page;
+    }
+
+    int getPageCount() {
+        return pages.size();
+    }
+
+    // Ends the transition. Its pages are kept for the next one.
+    void release() {
+        Arrays.fill(glyphPages, null);
+        layer = LayerStats.Layer.NONE;
+    }
+
+    // Drops the pages too. They aren't recycled, a display list may still be drawing them. They're left to the
+    // garbage collector.
+    void clear() {
+        release();
+        pages.clear();
+    }
+}
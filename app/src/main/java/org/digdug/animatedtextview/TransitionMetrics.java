@@ -0,0 +1,112 @@
+package org.digdug.animatedtextview;
+
+// Counters describing a single text transition. A view reuses one instance for every transition, so listeners
+// should copy out anything they want to keep.
+public class TransitionMetrics {
+    // A frame that takes longer than this past the previous one is counted as dropping frames.
+    static final long FRAME_NANOS = 1000000000L / 60;
+
+    long setupNanos;
+    int transitionCount;
+    int changedCount;
+    int droppedUpdates;
+    int frameCount;
+    long totalDrawNanos;
+    long maxDrawNanos;
+    int droppedFrames;
+    long durationMillis;
+    boolean interrupted;
+    // Animation clock time the transition was toggled at.
+    long startMillis;
+
+    private long lastFrameNanos;
+
+    void reset() {
+        setupNanos = 0;
+        transitionCount = 0;
+        changedCount = 0;
+        droppedUpdates = 0;
+        frameCount = 0;
+        totalDrawNanos = 0;
+        maxDrawNanos = 0;
+        droppedFrames = 0;
+        durationMillis = 0;
+        interrupted = false;
+        startMillis = 0;
+        lastFrameNanos = 0;
+    }
+
+    void onFrame(long frameStartNanos, long drawNanos) {
+        if (lastFrameNanos != 0) {
+            long interval = frameStartNanos - lastFrameNanos;
+            if (interval > FRAME_NANOS + FRAME_NANOS / 2) {
+                droppedFrames += (int) ((interval + FRAME_NANOS / 2) / FRAME_NANOS) - 1;
+            }
+        }
+        lastFrameNanos = frameStartNanos;
+
+        frameCount++;
+        totalDrawNanos += drawNanos;
+        if (drawNanos > maxDrawNanos) {
+            maxDrawNanos = drawNanos;
+        }
+    }
+
+    // Time spent in toggleText laying out the transition.
+    public long getSetupNanos() {
+        return setupNanos;
+    }
+
+    public int getTransitionCount() {
+        return transitionCount;
+    }
+
+    // The number of transitions that actually change something, i.e. that aren't drawn in place.
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    // How many text updates were dropped in favor of the one this transition shows.
+    public int getDroppedUpdates() {
+        return droppedUpdates;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public long getTotalDrawNanos() {
+        return totalDrawNanos;
+    }
+
+    public long getMaxDrawNanos() {
+        return maxDrawNanos;
+    }
+
+    public long getAverageDrawNanos() {
+        return frameCount == 0 ? 0 : totalDrawNanos / frameCount;
+    }
+
+    // An estimate of how many frames were missed, based on the gaps between draws.
+    public int getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    // Wall time from the toggle until the last letter finished animating, or until the transition was interrupted.
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    // True if the text changed again, or numbers stopped rolling, before this transition finished.
+    public boolean isInterrupted() {
+        return interrupted;
+    }
+
+    @Override
+    public String toString() {
+        return "TransitionMetrics setup=" + setupNanos + "ns transitions=" + transitionCount +
+                " changed=" + changedCount + " droppedUpdates=" + droppedUpdates + " frames=" + frameCount +
+                " avgDraw=" + getAverageDrawNanos() + "ns maxDraw=" + maxDrawNanos + "ns dropped=" + droppedFrames +
+                " duration=" + durationMillis + "ms" + (interrupted ? " interrupted" : "");
+    }
+}
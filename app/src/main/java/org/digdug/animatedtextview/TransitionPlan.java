@@ -0,0 +1,111 @@
+package org.digdug.animatedtextview;
+
+import android.graphics.Paint;
+
+import java.util.Random;
+
+// Everything needed to lay out a transition away from the UI thread. The view fills one in from a snapshot of its
+// state, TransitionPlanner runs it on a worker thread, and the view starts the transition once it's back. Plans
+// are pooled, so once they've grown to fit the text they don't allocate again.
+class TransitionPlan implements Runnable {
+    private final TransitionPlanner planner;
+
+    // Filled in on the UI thread. None of this is touched by the view while the plan is running.
+    int generation;
+    CharSequence from;
+    CharSequence to;
+    int fromColor;
+    int toColor;
+    float fromSize;
+    float toSize;
+    float density;
+    TransitionLayout.Align fromAlign;
+    TransitionLayout.Align toAlign;
+    TransitionLayout.Direction direction;
+    boolean minimalEdit;
+    boolean multiLine;
+    // Only used for multi-line text.
+    float wrapWidth;
+    float lineSpacing;
+    boolean shuffle;
+    float width;
+    float paddingLeft;
+    float paddingRight;
+    GlyphAdvanceCache glyphCache;
+    final Paint paint = new Paint();
+
+    // Filled in by run().
+    TransitionBuffer transitions = new TransitionBuffer();
+    long setupNanos;
+
+    private final SpanRunIndex fromSpans = new SpanRunIndex();
+    private final SpanRunIndex toSpans = new SpanRunIndex();
+    private final Random random = new Random();
+    private final GlyphMetrics metrics = new GlyphMetrics() {
+        @Override
+        public float getAdvance(int codePoint, float size) {
+            return glyphCache.getAdvance(paint, codePoint, size);
+        }
+
+        @Override
+        public float getAdvance(CharSequence text, int start, int end, float size) {
+            return glyphCache.getAdvance(paint, text, start, end, size);
+        }
+    };
+    private final TransitionLayout layout = new TransitionLayout(metrics);
+    // Plans don't know what the view's lines looked like, so both texts are broken from scratch.
+    private final LineLayout fromLines = new LineLayout(metrics);
+    private final LineLayout toLines = new LineLayout(metrics);
+
+    final Runnable onReady = new Runnable() {
+        @Override
+        public void run() {
+            planner.onPlanReady(TransitionPlan.this);
+        }
+    };
+
+    TransitionPlan(TransitionPlanner planner) {
+        this.planner = planner;
+    }
+
+    @Override
+    public void run() {
+        // Don't bother if a newer plan has already replaced this one.
+        if (!planner.isStale(this)) {
+            final long start = System.nanoTime();
+            transitions.clear();
+            fromSpans.build(from, fromColor, fromSize, density);
+            toSpans.build(to, toColor, toSize, density);
+
+            layout.setBounds(width, paddingLeft, paddingRight);
+            if (multiLine) {
+                fromLines.setLineSpacing(lineSpacing);
+                toLines.setLineSpacing(lineSpacing);
+                fromLines.layout(from, fromSpans, wrapWidth);
+                toLines.layout(to, toSpans, wrapWidth);
+                layout.layoutLines(from, fromSpans, fromLines, fromAlign, to, toSpans, toLines, toAlign,
+                        minimalEdit, direction, transitions);
+            } else if (minimalEdit) {
+                layout.layoutMinimalEdit(from, fromSpans, fromAlign, to, toSpans, toAlign, direction, transitions);
+            } else {
+                layout.layoutByIndex(from, fromSpans, fromAlign, to, toSpans, toAlign, direction, transitions);
+            }
+
+            if (shuffle) {
+                transitions.shuffle(random);
+            }
+            setupNanos = System.nanoTime() - start;
+        }
+
+        planner.post(onReady);
+    }
+
+    // Drops references to the text and the view's cache, so a pooled plan doesn't keep them alive.
+    void recycle() {
+        from = null;
+        to = null;
+        fromLines.layout("", fromSpans, 0);
+        toLines.layout("", toSpans, 0);
+        glyphCache = null;
+    }
+}
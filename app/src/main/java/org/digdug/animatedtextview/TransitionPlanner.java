@@ -0,0 +1,85 @@
+package org.digdug.animatedtextview;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+// Runs TransitionPlans on a background thread and hands them back to the UI thread. Only the newest plan is ever
+// applied. Older ones are skipped if they haven't started yet, and thrown away if they have.
+class TransitionPlanner {
+    interface Target {
+        // Called on the UI thread. The plan is recycled when this returns.
+        void onPlanReady(TransitionPlan plan);
+    }
+
+    // One thread shared by every view. Plans are short and only the newest one for each view matters.
+    private static ExecutorService executor;
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "AnimatedTextView layout");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    private final Target target;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Bumped on the UI thread every time a plan is started or cancelled. Read by the worker to skip stale plans.
+    private volatile int generation = 0;
+    // Only touched on the UI thread.
+    private final ArrayList<TransitionPlan> pool = new ArrayList<TransitionPlan>();
+
+    TransitionPlanner(Target target) {
+        this.target = target;
+    }
+
+    // Returns a plan to fill in. Anything already running is now stale.
+    TransitionPlan obtain() {
+        final TransitionPlan plan = pool.isEmpty() ? new TransitionPlan(this) : pool.remove(pool.size() - 1);
+        plan.generation = ++generation;
+        return plan;
+    }
+
+    void submit(TransitionPlan plan) {
+        getExecutor().execute(plan);
+    }
+
+    // Makes any plan that's running stale, e.g. because the text was changed directly.
+    void cancel() {
+        generation++;
+    }
+
+    boolean isStale(TransitionPlan plan) {
+        return plan.generation != generation;
+    }
+
+    void post(Runnable runnable) {
+        handler.post(runnable);
+    }
+
+    void onPlanReady(TransitionPlan plan) {
+        if (!isStale(plan)) {
+            target.onPlanReady(plan);
+        }
+        plan.recycle();
+        pool.add(plan);
+    }
+}
@@ -0,0 +1,68 @@
+package org.digdug.animatedtextview;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+// Checks that binding a style, as a list does every time a cell is reused, leaves nothing of the previous style
+// behind and falls back to the view's own settings for whatever the style doesn't set.
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class AnimatedTextStyleTest {
+    @Test
+    public void stylesWithoutAnAtlasDropThePreviousStylesAtlas() {
+        final AnimatedTextView view = new AnimatedTextView(RuntimeEnvironment.application);
+        final GlyphAtlas atlas = new GlyphAtlas();
+        view.setAnimatedTextStyle(new AnimatedTextStyle.Builder(RuntimeEnvironment.application)
+                .setGlyphAtlas(atlas)
+                .build());
+        assertSame(atlas, view.getGlyphAtlas());
+
+        view.setAnimatedTextStyle(new AnimatedTextStyle.Builder(RuntimeEnvironment.application).build());
+        assertNull(view.getGlyphAtlas());
+    }
+
+    @Test
+    public void stylesWithoutAnAtlasUseTheViewsOwn() {
+        final AnimatedTextView view = new AnimatedTextView(RuntimeEnvironment.application);
+        final GlyphAtlas atlas = new GlyphAtlas();
+        view.setGlyphAtlas(atlas);
+        view.setAnimatedTextStyle(new AnimatedTextStyle.Builder(RuntimeEnvironment.application)
+                .setGlyphAtlas(new GlyphAtlas())
+                .build());
+        view.setAnimatedTextStyle(new AnimatedTextStyle.Builder(RuntimeEnvironment.application).build());
+        assertSame(atlas, view.getGlyphAtlas());
+    }
+
+    @Test
+    public void unsetPaintSettingsAreKept() {
+        final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTypeface(Typeface.MONOSPACE);
+        paint.setColor(0xff0000ff);
+        paint.setTextAlign(Paint.Align.CENTER);
+        new AnimatedTextStyle.Builder(RuntimeEnvironment.application).build().applyTo(paint);
+        assertSame(Typeface.MONOSPACE, paint.getTypeface());
+        assertEquals(0xff0000ff, paint.getColor());
+        assertEquals(Paint.Align.CENTER, paint.getTextAlign());
+        assertTrue(paint.isAntiAlias());
+
+        new AnimatedTextStyle.Builder(RuntimeEnvironment.application)
+                .setTypeface(Typeface.SERIF)
+                .setAntiAlias(false)
+                .build()
+                .applyTo(paint);
+        assertSame(Typeface.SERIF, paint.getTypeface());
+        assertFalse(paint.isAntiAlias());
+    }
+}
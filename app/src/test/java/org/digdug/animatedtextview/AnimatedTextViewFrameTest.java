@@ -0,0 +1,228 @@
+package org.digdug.animatedtextview;
+
+import android.graphics.Bitmap;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Steps transitions frame by frame on a manual clock and checks each frame's draw calls and allocations against
+// frame-baseline.properties.
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class AnimatedTextViewFrameTest {
+    private static final int WIDTH = 600;
+    private static final int HEIGHT = 100;
+    private static final int DURATION = 300;
+    private static final int SPACING = 50;
+    // Long enough for "Hello" to "World" to finish, plus an idle frame.
+    private static final long RUN_MILLIS = DURATION + 4 * SPACING + 2 * FrameHarness.FRAME_MILLIS;
+    private static final int MAX_FRAMES = 64;
+
+    private static final Properties baseline = new Properties();
+
+    @BeforeClass
+    public static void loadBaseline() throws IOException {
+        final InputStream in = AnimatedTextViewFrameTest.class.getResourceAsStream("frame-baseline.properties");
+        if (in == null) {
+            fail("frame-baseline.properties is missing");
+        }
+        try {
+            baseline.load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static AnimatedTextView createView() {
+        final AnimatedTextView view = new AnimatedTextView(RuntimeEnvironment.application);
+        // TextView relays out through its layout params once it has been laid out.
+        view.setLayoutParams(new ViewGroup.LayoutParams(WIDTH, HEIGHT));
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+        view.setDuration(DURATION);
+        view.setSpacing(SPACING);
+        view.setText("Hello");
+        return view;
+    }
+
+    private static FrameHarness runFade() {
+        final AnimatedTextView view = createView();
+        view.setLayerPolicy(AnimatedTextView.LayerPolicy.NONE);
+        final FrameHarness harness = new FrameHarness(view, MAX_FRAMES);
+        harness.run("World", RUN_MILLIS);
+        return harness;
+    }
+
+    @Test
+    public void fadeFramesStayWithinBaseline() {
+        assertWithinBaseline("fade", runFade());
+    }
+
+    @Test
+    public void rotatingGlyphLayerFramesStayWithinBaseline() {
+        final AnimatedTextView view = createView();
+        view.setShowAnimation(R.anim.rotate_in);
+        view.setHideAnimation(R.anim.rotate_out);
+        view.setDuration(DURATION);
+        view.setLayerPolicy(AnimatedTextView.LayerPolicy.GLYPH);
+        final FrameHarness harness = new FrameHarness(view, MAX_FRAMES);
+        harness.run("World", RUN_MILLIS);
+
+        assertEquals(1, view.getLayerStats().getGlyphLayerCount());
+        // Four letters change, each with a glyph hiding and one showing. "l" stays and is drawn as text.
+        assertEquals(8, view.getLayerStats().getGlyphBitmapCount());
+        // One frame in only "W" has started showing. The other new letters haven't faded in, so they're skipped.
+        assertEquals(5, harness.bitmapCalls[1]);
+        assertWithinBaseline("rotateGlyphLayers", harness);
+    }
+
+    @Test
+    public void glyphLayersReuseTheirPages() {
+        final AnimatedTextView view = createView();
+        view.setShowAnimation(R.anim.rotate_in);
+        view.setHideAnimation(R.anim.rotate_out);
+        view.setDuration(DURATION);
+        view.setLayerPolicy(AnimatedTextView.LayerPolicy.GLYPH);
+        final FrameHarness harness = new FrameHarness(view, 2 * MAX_FRAMES);
+        harness.run("World", RUN_MILLIS);
+        final Bitmap page = harness.lastBitmap[1];
+        assertNotNull(page);
+
+        final int second = harness.frameCount;
+        harness.run("Hello", RUN_MILLIS);
+        assertEquals(2, view.getLayerStats().getGlyphLayerCount());
+        assertEquals(16, view.getLayerStats().getGlyphBitmapCount());
+        // The second transition's glyphs are rendered over the first's, in the same page.
+        assertSame(page, harness.lastBitmap[second + 1]);
+    }
+
+    @Test
+    public void framesAreDeterministic() {
+        assertEquals(runFade().glyphs, runFade().glyphs);
+    }
+
+    @Test
+    public void transitionStartsOnOldTextAndEndsOnNewText() {
+        final FrameHarness harness = runFade();
+
+        // Nothing has faded yet. The old letters are opaque, the new ones invisible and not drawn at all.
+        final String first = harness.glyphs.get(0);
+        assertTrue(first, lineFor(first, "H").contains("alpha=255"));
+        assertFalse(first, first.contains("\"W\""));
+
+        // Once it's over the text is drawn in one piece.
+        final String last = harness.glyphs.get(harness.frameCount - 1);
+        assertEquals(last, 1, harness.drawCalls[harness.frameCount - 1]);
+        assertTrue(last, last.startsWith("\"World\""));
+        assertTrue(last, last.contains("alpha=255"));
+    }
+
+    @Test
+    public void interruptedTransitionsStillEnd() {
+        final AnimatedTextView view = createView();
+        final EndRecorder ends = new EndRecorder();
+        view.setOnTransitionMetricsListener(ends);
+        final FrameHarness harness = new FrameHarness(view, MAX_FRAMES);
+        harness.run("World", 5 * FrameHarness.FRAME_MILLIS);
+        assertEquals("", ends.toString());
+
+        // The clock moved on a frame after each of the six frames drawn.
+        harness.run("Hello", RUN_MILLIS);
+        assertEquals("interrupted " + 6 * FrameHarness.FRAME_MILLIS + "ms, finished", ends.toString());
+    }
+
+    @Test
+    public void listenersSetMidTransitionWaitForTheNextOne() {
+        final AnimatedTextView view = createView();
+        final FrameHarness harness = new FrameHarness(view, MAX_FRAMES);
+        harness.run("World", 5 * FrameHarness.FRAME_MILLIS);
+
+        final EndRecorder ends = new EndRecorder();
+        view.setOnTransitionMetricsListener(ends);
+        // One more letter staggers in after the others.
+        harness.run("World!", RUN_MILLIS + SPACING);
+        assertEquals("finished", ends.toString());
+    }
+
+    // Writes down how each transition ended. The metrics are reused, so only what's needed is copied out.
+    private static class EndRecorder implements AnimatedTextView.OnTransitionMetricsListener {
+        private final StringBuilder ends = new StringBuilder();
+
+        @Override
+        public void onToggle(long setupNanos, int transitionCount, int changedCount) {
+        }
+
+        @Override
+        public void onFrame(long drawNanos, int transitionCount, int movingCount) {
+        }
+
+        @Override
+        public void onTransitionEnd(TransitionMetrics metrics) {
+            if (ends.length() > 0) {
+                ends.append(", ");
+            }
+            ends.append(metrics.isInterrupted() ? "interrupted " + metrics.getDurationMillis() + "ms" : "finished");
+        }
+
+        @Override
+        public String toString() {
+            return ends.toString();
+        }
+    }
+
+    private static String lineFor(String frame, String glyph) {
+        for (String line : frame.split("\n")) {
+            if (line.startsWith("\"" + glyph + "\"")) {
+                return line;
+            }
+        }
+        fail("No glyph " + glyph + " in\n" + frame);
+        return null;
+    }
+
+    // Fails if any frame after the first has more draw calls, or a typical animating frame allocates more, than the
+    // baseline allows. Every scenario has to have both budgets.
+    private static void assertWithinBaseline(String scenario, FrameHarness harness) {
+        final int drawCalls = harness.getMaxDrawCalls();
+        final long allocated = harness.getFrameAllocatedBytes();
+        // Failures print what was measured, so after an intended change the new values can be copied in.
+        final String measured = scenario + ".drawCalls=" + drawCalls + "\n" +
+                scenario + ".allocatedBytes=" + allocated + "\n" + harness.describeTiming();
+
+        final String maxDrawCalls = getBudget(scenario + ".drawCalls");
+        if (drawCalls > Integer.parseInt(maxDrawCalls)) {
+            fail("Draw calls per frame went over the baseline of " + maxDrawCalls + ". Measured:\n" + measured);
+        }
+
+        final String maxAllocated = getBudget(scenario + ".allocatedBytes");
+        if (FrameHarness.canCountAllocations() && allocated > Long.parseLong(maxAllocated)) {
+            fail("Bytes allocated per frame went over the baseline of " + maxAllocated + ". Measured:\n" + measured);
+        }
+    }
+
+    private static String getBudget(String name) {
+        final String budget = baseline.getProperty(name);
+        if (budget == null) {
+            fail("frame-baseline.properties has no " + name);
+        }
+        return budget;
+    }
+}
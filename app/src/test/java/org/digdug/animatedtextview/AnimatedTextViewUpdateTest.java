@@ -0,0 +1,92 @@
+package org.digdug.animatedtextview;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+// Checks that text set directly, or detaching, wins over updates that were still on their way to the view.
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class AnimatedTextViewUpdateTest {
+    // How long to wait for the background layout to hand its plan back.
+    private static final long PLAN_TIMEOUT_MILLIS = 1000;
+
+    private AnimatedTextView view;
+
+    @Before
+    public void setUp() {
+        // Plans are handed back through the main looper. Holding it lets the test decide when they arrive.
+        ShadowLooper.pauseMainLooper();
+        view = new AnimatedTextView(RuntimeEnvironment.application);
+        view.setText("Hello");
+    }
+
+    @After
+    public void tearDown() {
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    @Test
+    public void setTextDropsPlansInProgress() throws InterruptedException {
+        view.toggleTextAsync("World");
+        view.setText("Other");
+        waitForPlan();
+        ShadowLooper.runUiThreadTasks();
+
+        assertEquals("Other", view.getText().toString());
+        assertFalse(view.isTransitioning());
+    }
+
+    @Test
+    public void detachingDropsPlansInProgress() throws InterruptedException {
+        view.toggleTextAsync("World");
+        view.onDetachedFromWindow();
+        waitForPlan();
+        ShadowLooper.runUiThreadTasks();
+
+        assertEquals("Hello", view.getText().toString());
+        assertFalse(view.isTransitioning());
+    }
+
+    @Test
+    public void setTextDropsHeldUpdates() {
+        view.setUpdateInterval(100);
+        view.toggleText("World");
+        // Within the interval of the first update, so it's held.
+        view.toggleText("Later");
+        view.setText("Other");
+        ShadowLooper.idleMainLooper(200);
+
+        assertEquals("Other", view.getText().toString());
+        assertEquals(1, view.getDroppedUpdateCount());
+    }
+
+    @Test
+    public void detachingDropsHeldUpdates() {
+        view.setUpdateInterval(100);
+        view.toggleText("World");
+        view.toggleText("Later");
+        view.onDetachedFromWindow();
+        ShadowLooper.idleMainLooper(200);
+
+        assertEquals("World", view.getText().toString());
+        assertEquals(1, view.getDroppedUpdateCount());
+    }
+
+    // Stale plans can be skipped before they're posted, so nothing may ever arrive.
+    private static void waitForPlan() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + PLAN_TIMEOUT_MILLIS;
+        while (Robolectric.getForegroundThreadScheduler().size() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package org.digdug.animatedtextview;
+
+import android.content.Context;
+import android.graphics.Matrix;
+import android.view.animation.Animation;
+import android.view.animation.AnimationUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+// Checks the curves compiled from res/anim at build time. Alpha and timing are compared with the same animations
+// inflated and baked at runtime where Robolectric inflates them faithfully. Its Matrix shadow only records operations
+// and doesn't compute their values, and sets don't pick up an android:interpolator that points at a framework
+// resource. Matrices and shared interpolators are checked against values worked out by hand instead.
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class AnimationPresetTest {
+    // The presets without a shared interpolator.
+    private static final int[] ANIMATIONS = {
+            R.anim.fade_in, R.anim.fade_out, R.anim.rotate_in, R.anim.rotate_out, R.anim.squash_in,
+            R.anim.squash_out, R.anim.zoom_in, R.anim.zoom_out,
+    };
+    private static final int DURATION = 1000;
+    private static final float EPSILON = 1e-3f;
+    // Translations are in pixels and the bounce interpolator ends just past 1, so allow a tenth of a pixel.
+    private static final float TRANSLATION_EPSILON = 0.1f;
+    // Sizes to check the size dependent parts of the translation with.
+    private static final float WIDTH = 20;
+    private static final float HEIGHT = 30;
+    private static final float PARENT_WIDTH = 400;
+    private static final float PARENT_HEIGHT = 50;
+
+    @Test
+    public void compiledAlphaMatchesInflatedAnimations() throws IOException {
+        final Context context = RuntimeEnvironment.application;
+        for (int animId : ANIMATIONS) {
+            final String name = context.getResources().getResourceEntryName(animId);
+            final AnimationCurve compiled = readCompiled(context, name).withDuration(DURATION);
+
+            final Animation animation = AnimationUtils.loadAnimation(context, animId);
+            if (animation.getDuration() == 0) {
+                animation.setDuration(DURATION);
+            }
+            final AnimationCurve baked = AnimationCurve.bake(animation);
+
+            assertEquals(name, baked.getDuration(), compiled.getDuration());
+            assertEquals(name, baked.hasAlpha(), compiled.hasAlpha());
+            for (int s = 0; s <= 100; s++) {
+                final float fraction = s / 100f;
+                final String at = name + " at " + fraction;
+                assertEquals(at, baked.getAlpha(fraction), compiled.getAlpha(fraction), EPSILON);
+                assertEquals(at, baked.getProgress(fraction), compiled.getProgress(fraction), EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void compiledCurvesWithoutMatrices() throws IOException {
+        final Context context = RuntimeEnvironment.application;
+        final AnimationCurve fadeIn = readCompiled(context, "fade_in");
+        assertFalse(fadeIn.hasMatrix());
+        // Animations without a duration take the view's.
+        assertEquals(0, fadeIn.getDuration());
+        assertEquals(0, fadeIn.getAlpha(0), EPSILON);
+        // The default interpolator, accelerate decelerate, is symmetric about the middle.
+        assertEquals(0.5f, fadeIn.getAlpha(0.5f), EPSILON);
+        assertEquals(0.5f, fadeIn.getProgress(0.5f), EPSILON);
+        assertEquals(1, fadeIn.getAlpha(1), EPSILON);
+
+        final AnimationCurve fadeOut = readCompiled(context, "fade_out");
+        assertFalse(fadeOut.hasMatrix());
+        assertEquals(1, fadeOut.getAlpha(0), EPSILON);
+        assertEquals(0, fadeOut.getAlpha(1), EPSILON);
+    }
+
+    @Test
+    public void compiledSharedInterpolators() throws IOException {
+        final Context context = RuntimeEnvironment.application;
+        // The set's interpolator applies to every child. The bounce interpolator is 8t^2 on t * 1.1226 until its
+        // first bounce, and 8(t - 0.54719)^2 + 0.7 after it.
+        final AnimationCurve dropOut = readCompiled(context, "drop_out");
+        assertEquals(0.1008f, dropOut.getProgress(0.1f), EPSILON);
+        assertEquals(0.7016f, dropOut.getProgress(0.5f), EPSILON);
+        assertEquals(1 - 0.7016f, dropOut.getAlpha(0.5f), EPSILON);
+
+        final AnimationCurve slideIn = readCompiled(context, "slide_in");
+        assertEquals(0.7016f, slideIn.getAlpha(0.5f), EPSILON);
+
+        // The overshoot interpolator with its default tension of 2 is (t - 1)^2(3(t - 1) + 2) + 1.
+        final AnimationCurve riseIn = readCompiled(context, "rise_in");
+        assertEquals(1.125f, riseIn.getProgress(0.5f), EPSILON);
+        assertEquals(1, riseIn.getProgress(1), EPSILON);
+    }
+
+    @Test
+    public void compiledRotationsPivotOnTheGlyph() throws IOException {
+        final AnimationCurve rotateIn = readCompiled(RuntimeEnvironment.application, "rotate_in");
+        assertTrue(rotateIn.hasMatrix());
+        // -90 degrees around the glyph's center: cos = 0 and sin = -1, so x' = y + (w - h) / 2 and
+        // y' = -x + (w + h) / 2.
+        assertMatrix("rotate_in at 0", rotateIn, 0,
+                0, 1, (WIDTH - HEIGHT) / 2,
+                -1, 0, (WIDTH + HEIGHT) / 2);
+        assertMatrix("rotate_in at 1", rotateIn, 1,
+                1, 0, 0,
+                0, 1, 0);
+        assertEquals(0, rotateIn.getAlpha(0), EPSILON);
+
+        final AnimationCurve rotateOut = readCompiled(RuntimeEnvironment.application, "rotate_out");
+        assertMatrix("rotate_out at 1", rotateOut, 1,
+                0, 1, (WIDTH - HEIGHT) / 2,
+                -1, 0, (WIDTH + HEIGHT) / 2);
+    }
+
+    @Test
+    public void compiledScalesUseAbsolutePivots() throws IOException {
+        final Context context = RuntimeEnvironment.application;
+        // pivotX="0.5" is half a pixel, not half the glyph. The translation is pivot * (1 - scale).
+        final AnimationCurve zoomIn = readCompiled(context, "zoom_in");
+        assertMatrix("zoom_in at 0", zoomIn, 0,
+                0, 0, 0.5f,
+                0, 0, 0.5f);
+        assertMatrix("zoom_in at 0.5", zoomIn, 0.5f,
+                0.5f, 0, 0.25f,
+                0, 0.5f, 0.25f);
+
+        final AnimationCurve zoomOut = readCompiled(context, "zoom_out");
+        assertMatrix("zoom_out at 1", zoomOut, 1,
+                3, 0, -1,
+                0, 3, -1);
+        assertEquals(0, zoomOut.getAlpha(1), EPSILON);
+
+        final AnimationCurve squashOut = readCompiled(context, "squash_out");
+        assertFalse(squashOut.hasAlpha());
+        assertMatrix("squash_out at 1", squashOut, 1,
+                0, 0, 0.5f,
+                0, 1, 0);
+    }
+
+    @Test
+    public void compiledTranslations() throws IOException {
+        final Context context = RuntimeEnvironment.application;
+        // The bounce interpolator starts at 0 and ends at 1.
+        final AnimationCurve slideIn = readCompiled(context, "slide_in");
+        assertMatrix("slide_in at 0", slideIn, 0,
+                1, 0, -1000,
+                0, 1, 0);
+        assertMatrix("slide_in at 1", slideIn, 1,
+                1, 0, 0,
+                0, 1, 0);
+
+        final AnimationCurve dropOut = readCompiled(context, "drop_out");
+        assertMatrix("drop_out at 1", dropOut, 1,
+                1, 0, 0,
+                0, 1, 75);
+        assertEquals(0, dropOut.getAlpha(1), EPSILON);
+    }
+
+    @Test
+    public void presetsAreLoadedOnce() {
+        final Context context = RuntimeEnvironment.application;
+        assertSame(AnimationPreset.get(context, "fade_in"), AnimationPreset.get(context, R.anim.fade_in));
+    }
+
+    @Test
+    public void presetsTakeTheViewsDuration() {
+        final AnimatedTextView view = new AnimatedTextView(RuntimeEnvironment.application);
+        view.setDuration(300);
+        view.setPresets("zoom_in", "zoom_out");
+        assertNull(view.getShowAnimation());
+        assertEquals("zoom_in", view.getShowPreset().getName());
+
+        assertEquals(300, view.getShowCurve().getDuration());
+        assertEquals(300, view.getHideCurve().getDuration());
+
+        view.setDuration(500);
+        assertEquals(0, view.getShowPreset().getDuration());
+        assertEquals(0, view.getHidePreset().getDuration());
+        assertEquals(500, view.getShowCurve().getDuration());
+        assertEquals(500, view.getHideCurve().getDuration());
+    }
+
+    private static AnimationCurve readCompiled(Context context, String name) throws IOException {
+        final InputStream in = context.getAssets().open("curves/" + name + ".curve");
+        try {
+            return AnimationCurve.read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    // Checks the first two rows of the curve's matrix for a WIDTH by HEIGHT glyph.
+    private static void assertMatrix(String at, AnimationCurve curve, float fraction, float scaleX, float skewX,
+                                     float transX, float skewY, float scaleY, float transY) {
+        final float[] values = new float[9];
+        curve.getMatrix(fraction, WIDTH, HEIGHT, PARENT_WIDTH, PARENT_HEIGHT, new Matrix(), values);
+        assertEquals(at + " scaleX", scaleX, values[Matrix.MSCALE_X], EPSILON);
+        assertEquals(at + " skewX", skewX, values[Matrix.MSKEW_X], EPSILON);
+        assertEquals(at + " transX", transX, values[Matrix.MTRANS_X], TRANSLATION_EPSILON);
+        assertEquals(at + " skewY", skewY, values[Matrix.MSKEW_Y], EPSILON);
+        assertEquals(at + " scaleY", scaleY, values[Matrix.MSCALE_Y], EPSILON);
+        assertEquals(at + " transY", transY, values[Matrix.MTRANS_Y], TRANSLATION_EPSILON);
+    }
+}
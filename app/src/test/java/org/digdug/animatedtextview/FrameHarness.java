@@ -0,0 +1,124 @@
+package org.digdug.animatedtextview;
+
+import android.graphics.Bitmap;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Steps a view through a transition on a clock that only moves when told to. Every frame is drawn into a
+// RecordingCanvas, and its draw calls, allocated bytes, draw time and glyphs are kept.
+class FrameHarness {
+    static final long FRAME_MILLIS = 16;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final AnimatedTextView view;
+    private final RecordingCanvas canvas = new RecordingCanvas();
+    private long now = 1000;
+
+    // Per frame. Frame 0 is the one drawn right after toggleText.
+    final int[] drawCalls;
+    final int[] bitmapCalls;
+    // The last bitmap drawn in the frame or any before it.
+    final Bitmap[] lastBitmap;
+    final long[] allocatedBytes;
+    final long[] drawNanos;
+    // Whether the transition was still running after the frame was drawn.
+    final boolean[] transitioning;
+    final List<String> glyphs = new ArrayList<String>();
+    int frameCount = 0;
+
+    FrameHarness(AnimatedTextView view, int maxFrames) {
+        this.view = view;
+        drawCalls = new int[maxFrames];
+        bitmapCalls = new int[maxFrames];
+        lastBitmap = new Bitmap[maxFrames];
+        allocatedBytes = new long[maxFrames];
+        drawNanos = new long[maxFrames];
+        transitioning = new boolean[maxFrames];
+        view.setAnimationClock(new AnimationClock() {
+            @Override
+            public long currentAnimationTimeMillis() {
+                return now;
+            }
+        });
+    }
+
+    // Allocations can only be counted on JVMs that track them per thread.
+    static boolean canCountAllocations() {
+        return THREADS instanceof com.sun.management.ThreadMXBean &&
+                ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported();
+    }
+
+    private static long allocatedBytes() {
+        if (!canCountAllocations()) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // Toggles the text and draws a frame every FRAME_MILLIS until millis have passed.
+    void run(CharSequence text, long millis) {
+        view.toggleText(text);
+        // Reading the counter can allocate too. That's taken off every frame.
+        final long before = allocatedBytes();
+        final long overhead = allocatedBytes() - before;
+
+        for (long elapsed = 0; elapsed <= millis && frameCount < drawCalls.length; elapsed += FRAME_MILLIS) {
+            canvas.reset();
+            final long startBytes = allocatedBytes();
+            final long startNanos = System.nanoTime();
+            view.onDraw(canvas);
+            drawNanos[frameCount] = System.nanoTime() - startNanos;
+            allocatedBytes[frameCount] = Math.max(0, allocatedBytes() - startBytes - overhead);
+            drawCalls[frameCount] = canvas.drawCalls;
+            bitmapCalls[frameCount] = canvas.bitmapCalls;
+            lastBitmap[frameCount] = canvas.lastBitmap;
+            transitioning[frameCount] = view.isTransitioning();
+            glyphs.add(canvas.describe());
+            frameCount++;
+            now += FRAME_MILLIS;
+        }
+    }
+
+    // The largest value after the first frame, which is allowed to warm up caches.
+    int getMaxDrawCalls() {
+        int max = 0;
+        for (int i = 1; i < frameCount; i++) {
+            max = Math.max(max, drawCalls[i]);
+        }
+        return max;
+    }
+
+    // The median over the frames after the first that the transition was still running for. The frame that ends
+    // it and the idle frames after it only happen once. So do the odd spikes from the JIT, while an allocation
+    // added to the draw path shows up in every frame.
+    long getFrameAllocatedBytes() {
+        final long[] animating = new long[frameCount];
+        int count = 0;
+        for (int i = 1; i < frameCount; i++) {
+            if (transitioning[i]) {
+                animating[count++] = allocatedBytes[i];
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        Arrays.sort(animating, 0, count);
+        return animating[count / 2];
+    }
+
+    String describeTiming() {
+        long total = 0;
+        long max = 0;
+        for (int i = 0; i < frameCount; i++) {
+            total += drawNanos[i];
+            max = Math.max(max, drawNanos[i]);
+        }
+        return frameCount + " frames, mean " + (frameCount > 0 ? total / frameCount / 1000 : 0) + "us, max " +
+                max / 1000 + "us";
+    }
+}
@@ -0,0 +1,116 @@
+package org.digdug.animatedtextview;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+// Checks how glyphs are packed into pages and which pages are emptied when the atlas runs out of room. Rectangles
+// are allocated directly, since what the glyphs look like doesn't matter here.
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class GlyphAtlasTest {
+    private static final int PAGE_SIZE = 100;
+
+    private final Rect rect = new Rect();
+
+    @Test
+    public void glyphsArePackedInRows() {
+        final GlyphAtlas atlas = new GlyphAtlas(PAGE_SIZE, 1);
+        final GlyphAtlas.Page page = allocate(atlas, 40, 20, 0, 0);
+        assertSame(page, allocate(atlas, 40, 20, 40, 0));
+        // A little shorter still goes in the row.
+        assertSame(page, allocate(atlas, 20, 16, 80, 0));
+        // The row is full.
+        assertSame(page, allocate(atlas, 40, 20, 0, 20));
+        // Much shorter glyphs start their own row instead of wasting a tall one.
+        assertSame(page, allocate(atlas, 10, 5, 0, 40));
+        assertSame(page, allocate(atlas, 10, 5, 10, 40));
+        assertEquals(1, atlas.getPageCount());
+        assertEquals(0, atlas.getEvictionCount());
+    }
+
+    @Test
+    public void fullPagesAddAnotherUntilTheLimit() {
+        final GlyphAtlas atlas = new GlyphAtlas(PAGE_SIZE, 2);
+        final GlyphAtlas.Page first = allocate(atlas, PAGE_SIZE, PAGE_SIZE, 0, 0);
+        final GlyphAtlas.Page second = allocate(atlas, 50, 50, 0, 0);
+        assertNotSame(first, second);
+        // The first page with room is used.
+        assertSame(second, allocate(atlas, 50, 50, 50, 0));
+        assertEquals(2, atlas.getPageCount());
+        assertEquals(0, atlas.getEvictionCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedPageIsReused() {
+        final GlyphAtlas atlas = new GlyphAtlas(PAGE_SIZE, 2);
+        final GlyphAtlas.Page first = allocate(atlas, PAGE_SIZE, PAGE_SIZE, 0, 0);
+        final GlyphAtlas.Page second = allocate(atlas, PAGE_SIZE, PAGE_SIZE, 0, 0);
+        final Bitmap bitmap = first.bitmap;
+
+        // Both are full. The first was used longest ago, so it's emptied, in the same bitmap.
+        assertSame(first, allocate(atlas, PAGE_SIZE, 10, 0, 0));
+        assertSame(bitmap, first.bitmap);
+        assertEquals(1, atlas.getEvictionCount());
+        assertEquals(2, atlas.getPageCount());
+
+        // Now the second page is the oldest.
+        assertSame(first, allocate(atlas, PAGE_SIZE, 90, 0, 10));
+        assertSame(second, allocate(atlas, PAGE_SIZE, 10, 0, 0));
+        assertEquals(2, atlas.getEvictionCount());
+    }
+
+    @Test
+    public void trimKeepsTheMostRecentlyUsedPage() {
+        final GlyphAtlas atlas = new GlyphAtlas(PAGE_SIZE, 4);
+        allocate(atlas, PAGE_SIZE, PAGE_SIZE, 0, 0);
+        allocate(atlas, PAGE_SIZE, PAGE_SIZE, 0, 0);
+        final GlyphAtlas.Page last = allocate(atlas, PAGE_SIZE, 50, 0, 0);
+        assertEquals(3, atlas.getPageCount());
+
+        atlas.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(1, atlas.getPageCount());
+        assertEquals(2, atlas.getEvictionCount());
+        // What was in it is still there.
+        assertSame(last, allocate(atlas, PAGE_SIZE, 50, 0, 50));
+
+        atlas.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(0, atlas.getPageCount());
+    }
+
+    @Test
+    public void colorGlyphsAreLeftToText() {
+        final GlyphAtlas atlas = new GlyphAtlas(PAGE_SIZE, 1);
+        final Paint paint = new Paint();
+        paint.setTextSize(20);
+        final String[] glyphs = {"\uD83D\uDE00", "\u2764\uFE0F", "\u2600", "1\u20E3"};
+        for (String glyph : glyphs) {
+            assertFalse(glyph, atlas.draw(new Canvas(), glyph.toCharArray(), 0, glyph.length(), 20, paint));
+        }
+        assertEquals(0, atlas.getMissCount());
+        assertEquals(0, atlas.getPageCount());
+
+        assertFalse(GlyphAtlas.isColorGlyph("a\u00E9".toCharArray(), 0, 2));
+        assertTrue(GlyphAtlas.isColorGlyph("\u2B50".toCharArray(), 0, 1));
+    }
+
+    // Allocates a rectangle and checks where it went.
+    private GlyphAtlas.Page allocate(GlyphAtlas atlas, int width, int height, int left, int top) {
+        final GlyphAtlas.Page page = atlas.allocate(width, height, rect);
+        assertEquals(new Rect(left, top, left + width, top + height), rect);
+        return page;
+    }
+}
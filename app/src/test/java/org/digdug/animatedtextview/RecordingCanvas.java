@@ -0,0 +1,269 @@
+package org.digdug.animatedtextview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.util.Arrays;
+
+// A canvas that records what's drawn instead of drawing it. Each draw call is recorded as a glyph at the origin
+// the canvas's translations move it to. Rotations, scales and matrices aren't applied, they only mark the glyph as
+// transformed. Once the arrays have grown nothing allocates, so frames drawn into it can be checked for
+// allocations.
+class RecordingCanvas extends Canvas {
+    private static final int MAX_SAVES = 64;
+
+    // The translation and whether anything else was applied, for each save.
+    private final float[] translateX = new float[MAX_SAVES];
+    private final float[] translateY = new float[MAX_SAVES];
+    private final boolean[] transformed = new boolean[MAX_SAVES];
+    private int depth = 0;
+
+    int drawCalls = 0;
+    int bitmapCalls = 0;
+    // The bitmap of the last bitmap draw call, kept across frames.
+    Bitmap lastBitmap;
+
+    // One entry per draw call. Bitmaps have no text.
+    int glyphCount = 0;
+    float[] glyphX = new float[16];
+    float[] glyphY = new float[16];
+    float[] glyphSize = new float[16];
+    int[] glyphAlpha = new int[16];
+    boolean[] glyphTransformed = new boolean[16];
+    int[] glyphTextStart = new int[16];
+    int[] glyphTextLength = new int[16];
+    char[] text = new char[64];
+    int textLength = 0;
+    // Lets char arrays be recorded like any other text.
+    private final CharArraySequence charArray = new CharArraySequence();
+
+    // Forgets the last frame.
+    void reset() {
+        depth = 0;
+        translateX[0] = 0;
+        translateY[0] = 0;
+        transformed[0] = false;
+        drawCalls = 0;
+        bitmapCalls = 0;
+        glyphCount = 0;
+        textLength = 0;
+    }
+
+    String getGlyphText(int glyph) {
+        return new String(text, glyphTextStart[glyph], glyphTextLength[glyph]);
+    }
+
+    // Describes the frame one glyph per line, so two runs can be compared.
+    String describe() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < glyphCount; i++) {
+            sb.append('"').append(getGlyphText(i)).append("\" x=").append(glyphX[i]).append(" y=").append(glyphY[i])
+                    .append(" size=").append(glyphSize[i]).append(" alpha=").append(glyphAlpha[i]);
+            if (glyphTransformed[i]) {
+                sb.append(" transformed");
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private void record(float x, float y, Paint paint, CharSequence chars, int start, int end) {
+        ensureGlyphCapacity();
+        final int i = glyphCount++;
+        glyphX[i] = translateX[depth] + x;
+        glyphY[i] = translateY[depth] + y;
+        glyphSize[i] = paint.getTextSize();
+        glyphAlpha[i] = paint.getAlpha();
+        glyphTransformed[i] = transformed[depth];
+
+        if (text.length < textLength + end - start) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + end - start));
+        }
+        glyphTextStart[i] = textLength;
+        glyphTextLength[i] = end - start;
+        for (int c = start; c < end; c++) {
+            text[textLength++] = chars.charAt(c);
+        }
+        drawCalls++;
+    }
+
+    private void ensureGlyphCapacity() {
+        if (glyphCount < glyphX.length) {
+            return;
+        }
+        final int capacity = glyphX.length * 2;
+        glyphX = Arrays.copyOf(glyphX, capacity);
+        glyphY = Arrays.copyOf(glyphY, capacity);
+        glyphSize = Arrays.copyOf(glyphSize, capacity);
+        glyphAlpha = Arrays.copyOf(glyphAlpha, capacity);
+        glyphTransformed = Arrays.copyOf(glyphTransformed, capacity);
+        glyphTextStart = Arrays.copyOf(glyphTextStart, capacity);
+        glyphTextLength = Arrays.copyOf(glyphTextLength, capacity);
+    }
+
+    // A CharSequence over a char array that can be pointed at different arrays without allocating.
+    private static class CharArraySequence implements CharSequence {
+        char[] chars;
+
+        @Override
+        public int length() {
+            return chars.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+    }
+
+    @Override
+    public void drawText(char[] chars, int index, int count, float x, float y, Paint paint) {
+        charArray.chars = chars;
+        record(x, y, paint, charArray, index, index + count);
+    }
+
+    @Override
+    public void drawText(CharSequence chars, int start, int end, float x, float y, Paint paint) {
+        record(x, y, paint, chars, start, end);
+    }
+
+    @Override
+    public void drawText(String chars, float x, float y, Paint paint) {
+        record(x, y, paint, chars, 0, chars.length());
+    }
+
+    @Override
+    public void drawText(String chars, int start, int end, float x, float y, Paint paint) {
+        record(x, y, paint, chars, start, end);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        record(left, top, paint, "", 0, 0);
+        bitmapCalls++;
+        lastBitmap = bitmap;
+    }
+
+    // GlyphAtlas draws glyphs out of its pages this way.
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+        record(dst.left, dst.top, paint, "", 0, 0);
+        bitmapCalls++;
+        lastBitmap = bitmap;
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint) {
+        final boolean prev = transformed[depth];
+        transformed[depth] = true;
+        record(0, 0, paint, "", 0, 0);
+        transformed[depth] = prev;
+        bitmapCalls++;
+        lastBitmap = bitmap;
+    }
+
+    @Override
+    public int save() {
+        if (depth + 1 == MAX_SAVES) {
+            throw new IllegalStateException("Too many saves");
+        }
+        translateX[depth + 1] = translateX[depth];
+        translateY[depth + 1] = translateY[depth];
+        transformed[depth + 1] = transformed[depth];
+        return ++depth;
+    }
+
+    @Override
+    public int save(int saveFlags) {
+        return save();
+    }
+
+    @Override
+    public int getSaveCount() {
+        return depth + 1;
+    }
+
+    @Override
+    public void restore() {
+        if (depth == 0) {
+            throw new IllegalStateException("Underflow in restore");
+        }
+        depth--;
+    }
+
+    @Override
+    public void restoreToCount(int saveCount) {
+        if (saveCount < 1 || saveCount > depth + 1) {
+            throw new IllegalStateException("Bad restoreToCount " + saveCount);
+        }
+        depth = saveCount - 1;
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+        // Translations after a rotate or scale can't be tracked without applying the matrix.
+        if (!transformed[depth]) {
+            translateX[depth] += dx;
+            translateY[depth] += dy;
+        }
+    }
+
+    @Override
+    public void scale(float sx, float sy) {
+        if (sx != 1 || sy != 1) {
+            transformed[depth] = true;
+        }
+    }
+
+    @Override
+    public void rotate(float degrees) {
+        if (degrees != 0) {
+            transformed[depth] = true;
+        }
+    }
+
+    @Override
+    public void concat(Matrix matrix) {
+        transformed[depth] = true;
+    }
+
+    @Override
+    public boolean clipRect(float left, float top, float right, float bottom) {
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(RectF rect) {
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(Rect rect) {
+        return true;
+    }
+
+    @Override
+    public boolean quickReject(float left, float top, float right, float bottom, EdgeType type) {
+        return false;
+    }
+
+    @Override
+    public boolean quickReject(RectF rect, EdgeType type) {
+        return false;
+    }
+
+    @Override
+    public boolean quickReject(Path path, EdgeType type) {
+        return false;
+    }
+}
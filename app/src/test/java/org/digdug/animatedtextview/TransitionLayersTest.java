@@ -0,0 +1,52 @@
+package org.digdug.animatedtextview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TransitionLayersTest {
+    private static final int FEW = 5;
+    private static final int MANY = TransitionLayers.MAX_GLYPH_LAYERS + 1;
+
+    @Test
+    public void noneNeverUsesALayer() {
+        assertEquals(LayerStats.Layer.NONE, choose(AnimatedTextView.LayerPolicy.NONE, true, FEW, false));
+        assertEquals(LayerStats.Layer.NONE, choose(AnimatedTextView.LayerPolicy.NONE, true, MANY, false));
+    }
+
+    @Test
+    public void autoOnlyUsesGlyphLayersForAFewTransformedGlyphs() {
+        assertEquals(LayerStats.Layer.GLYPH, choose(AnimatedTextView.LayerPolicy.AUTO, true, FEW, false));
+        assertEquals(LayerStats.Layer.GLYPH,
+                choose(AnimatedTextView.LayerPolicy.AUTO, true, TransitionLayers.MAX_GLYPH_LAYERS, false));
+        // Fades and slides draw fine as they are.
+        assertEquals(LayerStats.Layer.NONE, choose(AnimatedTextView.LayerPolicy.AUTO, false, FEW, false));
+        assertEquals(LayerStats.Layer.NONE, choose(AnimatedTextView.LayerPolicy.AUTO, true, 0, false));
+        // Too many to render, and never a view layer unless it's asked for.
+        assertEquals(LayerStats.Layer.NONE, choose(AnimatedTextView.LayerPolicy.AUTO, true, MANY, false));
+        // The atlas already draws transformed glyphs from bitmaps.
+        assertEquals(LayerStats.Layer.NONE, choose(AnimatedTextView.LayerPolicy.AUTO, true, FEW, true));
+    }
+
+    @Test
+    public void glyphUsesGlyphLayersForTransformedGlyphsUpToTheLimit() {
+        assertEquals(LayerStats.Layer.GLYPH,
+                choose(AnimatedTextView.LayerPolicy.GLYPH, true, TransitionLayers.MAX_GLYPH_LAYERS, false));
+        assertEquals(LayerStats.Layer.NONE, choose(AnimatedTextView.LayerPolicy.GLYPH, true, MANY, false));
+        assertEquals(LayerStats.Layer.GLYPH, choose(AnimatedTextView.LayerPolicy.GLYPH, true, FEW, true));
+        assertEquals(LayerStats.Layer.NONE, choose(AnimatedTextView.LayerPolicy.GLYPH, false, FEW, false));
+    }
+
+    @Test
+    public void viewUsesALayerForTheWindowsKindOfDrawing() {
+        assertEquals(LayerStats.Layer.HARDWARE,
+                TransitionLayers.choose(AnimatedTextView.LayerPolicy.VIEW, false, 0, true, false));
+        assertEquals(LayerStats.Layer.SOFTWARE,
+                TransitionLayers.choose(AnimatedTextView.LayerPolicy.VIEW, true, MANY, false, false));
+    }
+
+    private static LayerStats.Layer choose(AnimatedTextView.LayerPolicy policy, boolean transformed, int changed,
+                                           boolean atlas) {
+        return TransitionLayers.choose(policy, transformed, changed, true, atlas);
+    }
+}
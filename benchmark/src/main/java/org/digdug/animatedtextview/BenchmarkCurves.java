@@ -0,0 +1,38 @@
+package org.digdug.animatedtextview;
+
+// Builds PropertyCurves for the benchmarks, which can't bake them from Animations the way the view does. It's in
+// the curve's package to reach its constructor.
+public class BenchmarkCurves {
+    private static final int SAMPLES = 64;
+
+    private BenchmarkCurves() {
+    }
+
+    // Fades the glyph in or out without moving it.
+    public static PropertyCurve fade(long duration, boolean in) {
+        return build(duration, in, false);
+    }
+
+    // Fades the glyph while scaling it from or to nothing about its center, like zoom_in and zoom_out.
+    public static PropertyCurve zoom(long duration, boolean in) {
+        return build(duration, in, true);
+    }
+
+    private static PropertyCurve build(long duration, boolean in, boolean zoom) {
+        final float[] table = new float[SAMPLES * PropertyCurve.STRIDE];
+        for (int s = 0; s < SAMPLES; s++) {
+            final float fraction = (float) s / (SAMPLES - 1);
+            final float shown = in ? fraction : 1 - fraction;
+            final float scale = zoom ? shown : 1;
+            final int base = s * PropertyCurve.STRIDE;
+            table[base + PropertyCurve.ALPHA] = shown;
+            table[base + PropertyCurve.PROGRESS] = fraction;
+            table[base + PropertyCurve.SCALE_X] = scale;
+            table[base + PropertyCurve.SCALE_Y] = scale;
+            // Keeps the center still: half the glyph's size times what the scale takes off.
+            table[base + PropertyCurve.WIDTH_X] = (1 - scale) / 2;
+            table[base + PropertyCurve.HEIGHT_Y] = (1 - scale) / 2;
+        }
+        return new PropertyCurve(duration, SAMPLES, table);
+    }
+}
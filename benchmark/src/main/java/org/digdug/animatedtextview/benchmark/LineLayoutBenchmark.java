@@ -0,0 +1,61 @@
+package org.digdug.animatedtextview.benchmark;
+
+import org.digdug.animatedtextview.LineLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Breaking a paragraph into lines after a one character edit in the middle, from scratch and reusing the lines
+// of the text before the edit.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineLayoutBenchmark {
+    private static final float TEXT_SIZE = 48;
+    private static final float WIDTH = 40 * TEXT_SIZE;
+
+    @Param({ "100", "1000", "10000" })
+    public int length;
+
+    private String from;
+    private String to;
+    private StubGlyphStyles styles;
+    private LineLayout previous;
+    private LineLayout next;
+
+    @Setup
+    public void setUp() {
+        from = Texts.random(length, 1);
+        to = from.substring(0, length / 2) + "x" + from.substring(length / 2);
+        styles = new StubGlyphStyles(false, TEXT_SIZE);
+        final StubGlyphMetrics metrics = new StubGlyphMetrics();
+        previous = new LineLayout(metrics);
+        next = new LineLayout(metrics);
+        previous.layout(from, styles, WIDTH);
+    }
+
+    @Benchmark
+    public LineLayout full() {
+        next.layout(to, styles, WIDTH);
+        return next;
+    }
+
+    @Benchmark
+    public LineLayout incremental() {
+        next.layoutIncremental(previous, to, styles, WIDTH);
+        return next;
+    }
+}
@@ -0,0 +1,67 @@
+package org.digdug.animatedtextview.benchmark;
+
+import org.digdug.animatedtextview.Odometer;
+import org.digdug.animatedtextview.TransitionBuffer;
+import org.digdug.animatedtextview.TransitionLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// A counter ticking up by one, laid out as a full transition and as an odometer.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OdometerBenchmark {
+    private static final float TEXT_SIZE = 48;
+
+    @Param({ "1,234", "1,234,567.88" })
+    public String from;
+
+    private String to;
+    private StubGlyphMetrics metrics;
+    private StubGlyphStyles styles;
+    private TransitionLayout layout;
+    private final TransitionBuffer buffer = new TransitionBuffer();
+    private final Odometer odometer = new Odometer();
+    private float digitAdvance;
+
+    @Setup
+    public void setUp() {
+        final char last = from.charAt(from.length() - 1);
+        to = from.substring(0, from.length() - 1) + (char) (last + 1);
+        metrics = new StubGlyphMetrics();
+        styles = new StubGlyphStyles(false, TEXT_SIZE);
+        layout = new TransitionLayout(metrics);
+        layout.setBounds(from.length() * TEXT_SIZE, 20, 20);
+        for (char d = '0'; d <= '9'; d++) {
+            digitAdvance = Math.max(digitAdvance, metrics.getAdvance(d, TEXT_SIZE));
+        }
+    }
+
+    @Benchmark
+    public TransitionBuffer transition() {
+        buffer.clear();
+        layout.layoutByIndex(from, styles, TransitionLayout.Align.RIGHT, to, styles, TransitionLayout.Align.RIGHT,
+                TransitionLayout.Direction.LEFT, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Odometer odometer() {
+        odometer.layout(from, to, digitAdvance, metrics, TEXT_SIZE);
+        return odometer;
+    }
+}
@@ -0,0 +1,16 @@
+package org.digdug.animatedtextview.benchmark;
+
+import org.digdug.animatedtextview.GlyphMetrics;
+
+// Stands in for Paint.measureText. Advances vary a little by character so the layout does real arithmetic.
+class StubGlyphMetrics implements GlyphMetrics {
+    @Override
+    public float getAdvance(int codePoint, float size) {
+        return size * (0.45f + (codePoint % 7) * 0.02f);
+    }
+
+    @Override
+    public float getAdvance(CharSequence text, int start, int end, float size) {
+        return size * 0.6f * (end - start);
+    }
+}
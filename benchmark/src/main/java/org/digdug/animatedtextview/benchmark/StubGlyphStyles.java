@@ -0,0 +1,35 @@
+package org.digdug.animatedtextview.benchmark;
+
+import org.digdug.animatedtextview.GlyphStyles;
+
+// Stands in for a SpanRunIndex. Plain text has a single style, styled text switches color and size every few
+// characters the way a heavily spanned string would.
+class StubGlyphStyles implements GlyphStyles {
+    private static final int RUN_LENGTH = 8;
+    private static final int[] COLORS = { 0xff000000, 0xff0000ff, 0xffff0000, 0xff00ff00 };
+    private static final float[] SIZES = { 1f, 1.5f, 0.75f, 1.25f };
+
+    private final boolean styled;
+    private final float defaultSize;
+
+    StubGlyphStyles(boolean styled, float defaultSize) {
+        this.styled = styled;
+        this.defaultSize = defaultSize;
+    }
+
+    @Override
+    public int getColor(int index) {
+        if (!styled || index < 0) {
+            return COLORS[0];
+        }
+        return COLORS[(index / RUN_LENGTH) % COLORS.length];
+    }
+
+    @Override
+    public float getSize(int index) {
+        if (!styled || index < 0) {
+            return defaultSize;
+        }
+        return defaultSize * SIZES[(index / RUN_LENGTH) % SIZES.length];
+    }
+}
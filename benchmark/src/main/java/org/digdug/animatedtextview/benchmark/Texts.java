@@ -0,0 +1,39 @@
+package org.digdug.animatedtextview.benchmark;
+
+import java.util.Random;
+
+// Deterministic input text for the benchmarks.
+class Texts {
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789.,";
+
+    static String random(int length, long seed) {
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return builder.toString();
+    }
+
+    // Returns text with roughly one in ten characters inserted, removed or replaced.
+    static String edit(String text, long seed) {
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder(text.length() + text.length() / 10);
+        for (int i = 0; i < text.length(); i++) {
+            switch (random.nextInt(30)) {
+                case 0:
+                    builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                    builder.append(text.charAt(i));
+                    break;
+                case 1:
+                    break;
+                case 2:
+                    builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                    break;
+                default:
+                    builder.append(text.charAt(i));
+            }
+        }
+        return builder.toString();
+    }
+}
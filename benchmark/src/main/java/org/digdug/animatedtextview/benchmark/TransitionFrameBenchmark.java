@@ -0,0 +1,89 @@
+package org.digdug.animatedtextview.benchmark;
+
+import org.digdug.animatedtextview.BenchmarkCurves;
+import org.digdug.animatedtextview.GlyphFrames;
+import org.digdug.animatedtextview.PropertyCurve;
+import org.digdug.animatedtextview.StaggerSchedule;
+import org.digdug.animatedtextview.TransitionBuffer;
+import org.digdug.animatedtextview.TransitionLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// The per-frame work of the FRAME_CALLBACK engine: GlyphFrames working out every glyph's position, size, color,
+// alpha and transform over a StaggerSchedule, without the drawing. frame works out every glyph each time, the way
+// the first frame of a transition does. activeFrame steps a frame at a time so only the glyphs the schedule says
+// started or finished since the last frame are worked out again.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransitionFrameBenchmark {
+    private static final float TEXT_SIZE = 48;
+    private static final int DURATION = 250;
+    private static final int SPACING = 50;
+    private static final int FRAME = 16;
+
+    @Param({ "10", "100", "500", "1000", "10000" })
+    public int length;
+
+    @Param({ "false", "true" })
+    public boolean styled;
+
+    // Whether the glyphs are scaled as well as faded.
+    @Param({ "false", "true" })
+    public boolean zoom;
+
+    private final TransitionBuffer buffer = new TransitionBuffer();
+    private final StaggerSchedule schedule = new StaggerSchedule();
+    private final GlyphFrames frames = new GlyphFrames();
+    private PropertyCurve show;
+    private PropertyCurve hide;
+    private float width;
+    private long elapsed = 0;
+    private long totalDuration;
+
+    @Setup
+    public void setUp() {
+        String from = Texts.random(length, 1);
+        String to = Texts.edit(from, 2);
+        width = length * TEXT_SIZE;
+        TransitionLayout layout = new TransitionLayout(new StubGlyphMetrics());
+        layout.setBounds(width, 20, 20);
+        layout.layoutByIndex(from, new StubGlyphStyles(styled, TEXT_SIZE), TransitionLayout.Align.LEFT,
+                to, new StubGlyphStyles(styled, TEXT_SIZE), TransitionLayout.Align.LEFT,
+                TransitionLayout.Direction.LEFT, buffer);
+        totalDuration = (long) SPACING * (buffer.size() - 1) + DURATION;
+        schedule.build(buffer.size(), SPACING, 1, StaggerSchedule.NO_LIMIT);
+        show = zoom ? BenchmarkCurves.zoom(DURATION, true) : BenchmarkCurves.fade(DURATION, true);
+        hide = zoom ? BenchmarkCurves.zoom(DURATION, false) : BenchmarkCurves.fade(DURATION, false);
+    }
+
+    @Benchmark
+    public void frame(Blackhole blackhole) {
+        // Step through the animation a frame at a time, wrapping around at the end.
+        elapsed = (elapsed + FRAME) % totalDuration;
+        frames.invalidate();
+        blackhole.consume(frames.evaluate(buffer, elapsed, schedule, show, hide, true, width, TEXT_SIZE));
+    }
+
+    @Benchmark
+    public void activeFrame(Blackhole blackhole) {
+        // Wrapping around goes back in time, which works out every glyph again once per pass.
+        elapsed = (elapsed + FRAME) % totalDuration;
+        blackhole.consume(frames.evaluate(buffer, elapsed, schedule, show, hide, true, width, TEXT_SIZE));
+    }
+}
@@ -0,0 +1,71 @@
+package org.digdug.animatedtextview.benchmark;
+
+import org.digdug.animatedtextview.TransitionBuffer;
+import org.digdug.animatedtextview.TransitionLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// What a single toggleText costs: measuring both strings and building every transition.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransitionLayoutBenchmark {
+    private static final float TEXT_SIZE = 48;
+
+    @Param({ "10", "100", "1000", "10000" })
+    public int length;
+
+    @Param({ "LEFT", "CENTER", "RIGHT" })
+    public TransitionLayout.Align gravity;
+
+    @Param({ "LEFT", "RIGHT" })
+    public TransitionLayout.Direction direction;
+
+    @Param({ "false", "true" })
+    public boolean styled;
+
+    @Param({ "INDEX", "MINIMAL_EDIT" })
+    public String alignment;
+
+    private String from;
+    private String to;
+    private StubGlyphStyles fromStyles;
+    private StubGlyphStyles toStyles;
+    private TransitionLayout layout;
+    private final TransitionBuffer buffer = new TransitionBuffer();
+
+    @Setup
+    public void setUp() {
+        from = Texts.random(length, 1);
+        to = Texts.edit(from, 2);
+        fromStyles = new StubGlyphStyles(styled, TEXT_SIZE);
+        toStyles = new StubGlyphStyles(styled, TEXT_SIZE);
+        layout = new TransitionLayout(new StubGlyphMetrics());
+        layout.setBounds(length * TEXT_SIZE, 20, 20);
+    }
+
+    @Benchmark
+    public TransitionBuffer layout() {
+        buffer.clear();
+        if ("MINIMAL_EDIT".equals(alignment)) {
+            layout.layoutMinimalEdit(from, fromStyles, gravity, to, toStyles, gravity, direction, buffer);
+        } else {
+            layout.layoutByIndex(from, fromStyles, gravity, to, toStyles, gravity, direction, buffer);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,660 @@
+package org.digdug.animatedtextview.gradle;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+// Bakes a res/anim XML file into the table AnimationCurve.bake makes at runtime, without Android. The animation
+// classes' math is reproduced here for the elements and attributes the framework inflates: <set>, <alpha>,
+// <scale>, <rotate> and <translate>, with durations, start offsets, fill flags and the framework interpolators.
+// Anything else (custom interpolators, resource references, dimensions) throws Unsupported, and the file is left
+// to be inflated at runtime.
+//
+// The table layout and the file format must match AnimationCurve in the app:
+//   int magic, short version, long duration, int samples, int stride, byte flags, samples * stride floats
+// A duration of 0 means the animation didn't have one, and takes the view's.
+public class AnimationCurveCompiler {
+    static final int MAGIC = 0x41545643; // "ATVC"
+    static final short VERSION = 1;
+    static final int SAMPLES = 64;
+    static final int FLAG_ALPHA = 1;
+    static final int FLAG_MATRIX = 2;
+
+    private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+
+    // Columns, as in AnimationCurve.
+    private static final int ALPHA = 0;
+    private static final int PROGRESS = 1;
+    private static final int SCALE_X = 2;
+    private static final int SKEW_X = 3;
+    private static final int SKEW_Y = 4;
+    private static final int SCALE_Y = 5;
+    private static final int TRANS_X = 6;
+    static final int STRIDE = 16;
+
+    // Animations without a duration are baked over this one and stretched to the view's when they're loaded.
+    private static final long NORMALIZED_DURATION = 1000;
+
+    public static class Unsupported extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        Unsupported(String message) {
+            super(message);
+        }
+    }
+
+    // Compiles file into out.
+    public void compile(File file, OutputStream out) throws IOException, Unsupported {
+        final Element root;
+        try {
+            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            final DocumentBuilder builder = factory.newDocumentBuilder();
+            final Document document = builder.parse(file);
+            root = document.getDocumentElement();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new Unsupported("Can't parse " + file.getName() + ": " + e.getMessage());
+        }
+
+        final Anim anim = parse(root);
+        long duration = anim.getDuration();
+        final boolean normalized = duration == 0;
+        if (normalized) {
+            // Like AnimatedTextView.setShowAnimation, which gives the animation the view's duration.
+            if (anim.hasStartOffset()) {
+                throw new Unsupported("Start offsets need a duration");
+            }
+            anim.setDuration(NORMALIZED_DURATION);
+            duration = NORMALIZED_DURATION;
+        }
+        anim.initialize(0, null);
+
+        final float[] table = new float[SAMPLES * STRIDE];
+        final Transform transform = new Transform();
+        boolean hasAlpha = false;
+        boolean hasMatrix = false;
+        for (int s = 0; s < SAMPLES; s++) {
+            final float fraction = (float) s / (SAMPLES - 1);
+            transform.clear();
+            anim.getTransformation(anim.startOffset + (long) (fraction * duration), transform);
+
+            final int base = s * STRIDE;
+            table[base + ALPHA] = (float) transform.alpha;
+            table[base + PROGRESS] = anim.interpolator.get(fraction);
+            table[base + SCALE_X] = (float) transform.a;
+            table[base + SKEW_X] = (float) transform.b;
+            table[base + SKEW_Y] = (float) transform.c;
+            table[base + SCALE_Y] = (float) transform.d;
+            // The translation is t0, then how far a unit of width, height, parent width and parent height move it.
+            for (int k = 0; k < Transform.TERMS; k++) {
+                table[base + TRANS_X + 2 * k] = (float) transform.tx[k];
+                table[base + TRANS_X + 2 * k + 1] = (float) transform.ty[k];
+            }
+
+            hasAlpha |= table[base + ALPHA] != 1;
+            hasMatrix |= !transform.isIdentity();
+        }
+
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeLong(normalized ? 0 : duration);
+        data.writeInt(SAMPLES);
+        data.writeInt(STRIDE);
+        data.writeByte((hasAlpha ? FLAG_ALPHA : 0) | (hasMatrix ? FLAG_MATRIX : 0));
+        for (float value : table) {
+            data.writeFloat(value);
+        }
+        data.flush();
+    }
+
+    private static Anim parse(Element element) throws Unsupported {
+        final String name = element.getLocalName() != null ? element.getLocalName() : element.getTagName();
+        final Anim anim;
+        if (name.equals("set")) {
+            final AnimSet set = new AnimSet();
+            set.shareInterpolator = getBoolean(element, "shareInterpolator", true);
+            final NodeList children = element.getChildNodes();
+            for (int i = 0; i < children.getLength(); i++) {
+                final Node child = children.item(i);
+                if (child instanceof Element) {
+                    set.children.add(parse((Element) child));
+                }
+            }
+            anim = set;
+        } else if (name.equals("alpha")) {
+            anim = new Alpha(getFloat(element, "fromAlpha", 1), getFloat(element, "toAlpha", 1));
+        } else if (name.equals("scale")) {
+            anim = new Scale(getFloat(element, "fromXScale", 0), getFloat(element, "toXScale", 0),
+                    getFloat(element, "fromYScale", 0), getFloat(element, "toYScale", 0),
+                    getValue(element, "pivotX"), getValue(element, "pivotY"));
+        } else if (name.equals("rotate")) {
+            anim = new Rotate(getFloat(element, "fromDegrees", 0), getFloat(element, "toDegrees", 0),
+                    getValue(element, "pivotX"), getValue(element, "pivotY"));
+        } else if (name.equals("translate")) {
+            anim = new Translate(getValue(element, "fromXDelta"), getValue(element, "toXDelta"),
+                    getValue(element, "fromYDelta"), getValue(element, "toYDelta"));
+        } else {
+            throw new Unsupported("Unknown animation <" + name + ">");
+        }
+
+        final String duration = getAttribute(element, "duration");
+        if (duration != null) {
+            anim.duration = parseLong(duration);
+            anim.durationSet = true;
+        }
+        final String offset = getAttribute(element, "startOffset");
+        if (offset != null) {
+            anim.startOffset = parseLong(offset);
+        }
+        // A curve covers one run of the animation.
+        final String repeatCount = getAttribute(element, "repeatCount");
+        if (repeatCount != null && !repeatCount.equals("0")) {
+            throw new Unsupported("Repeating animations can't be compiled: repeatCount=\"" + repeatCount + "\"");
+        }
+        final String repeatMode = getAttribute(element, "repeatMode");
+        if (repeatMode != null) {
+            throw new Unsupported("Repeating animations can't be compiled: repeatMode=\"" + repeatMode + "\"");
+        }
+        anim.fillEnabled = getBoolean(element, "fillEnabled", false);
+        anim.fillBefore = getBoolean(element, "fillBefore", true);
+        anim.fillAfter = getBoolean(element, "fillAfter", false);
+        // Sets only pass down the fill flags they were given.
+        anim.fillBeforeSet = getAttribute(element, "fillBefore") != null;
+        anim.fillAfterSet = getAttribute(element, "fillAfter") != null;
+
+        // Animations inflated from XML always get an interpolator.
+        final String interpolator = getAttribute(element, "interpolator");
+        anim.interpolator = interpolator != null ? Interpolator.parse(interpolator) : Interpolator.DEFAULT;
+        return anim;
+    }
+
+    // The framework interpolators. Custom ones can't be compiled.
+    private static abstract class Interpolator {
+        static final Interpolator DEFAULT = new Interpolator() {
+            @Override
+            float get(float t) {
+                return (float) (Math.cos((t + 1) * Math.PI) / 2.0f) + 0.5f;
+            }
+        };
+
+        abstract float get(float t);
+
+        static Interpolator parse(String ref) throws Unsupported {
+            final String prefix;
+            if (ref.startsWith("@android:anim/")) {
+                prefix = "@android:anim/";
+            } else if (ref.startsWith("@android:interpolator/")) {
+                prefix = "@android:interpolator/";
+            } else {
+                throw new Unsupported("Only framework interpolators can be compiled: " + ref);
+            }
+
+            final String name = ref.substring(prefix.length());
+            if (name.equals("linear_interpolator")) {
+                return new Interpolator() {
+                    @Override
+                    float get(float t) {
+                        return t;
+                    }
+                };
+            } else if (name.equals("accelerate_interpolator") || name.equals("accelerate_quad")) {
+                return new Interpolator() {
+                    @Override
+                    float get(float t) {
+                        return t * t;
+                    }
+                };
+            } else if (name.equals("accelerate_cubic")) {
+                return power(3, false);
+            } else if (name.equals("accelerate_quint")) {
+                return power(5, false);
+            } else if (name.equals("decelerate_interpolator") || name.equals("decelerate_quad")) {
+                return new Interpolator() {
+                    @Override
+                    float get(float t) {
+                        return 1.0f - (1.0f - t) * (1.0f - t);
+                    }
+                };
+            } else if (name.equals("decelerate_cubic")) {
+                return power(3, true);
+            } else if (name.equals("decelerate_quint")) {
+                return power(5, true);
+            } else if (name.equals("accelerate_decelerate_interpolator")) {
+                return DEFAULT;
+            } else if (name.equals("anticipate_interpolator")) {
+                return anticipate(2.0f);
+            } else if (name.equals("overshoot_interpolator")) {
+                return overshoot(2.0f);
+            } else if (name.equals("anticipate_overshoot_interpolator")) {
+                return anticipateOvershoot(2.0f * 1.5f);
+            } else if (name.equals("bounce_interpolator")) {
+                return new Interpolator() {
+                    @Override
+                    float get(float t) {
+                        t *= 1.1226f;
+                        if (t < 0.3535f) return bounce(t);
+                        else if (t < 0.7408f) return bounce(t - 0.54719f) + 0.7f;
+                        else if (t < 0.9644f) return bounce(t - 0.8526f) + 0.9f;
+                        else return bounce(t - 1.0435f) + 0.95f;
+                    }
+                };
+            } else if (name.equals("cycle_interpolator")) {
+                return new Interpolator() {
+                    @Override
+                    float get(float t) {
+                        return (float) (Math.sin(2 * Math.PI * t));
+                    }
+                };
+            }
+            throw new Unsupported("Unknown interpolator " + ref);
+        }
+
+        private static float bounce(float t) {
+            return t * t * 8.0f;
+        }
+
+        // Accelerate and decelerate interpolators with a factor, which is power / 2.
+        private static Interpolator power(final int power, final boolean decelerate) {
+            return new Interpolator() {
+                @Override
+                float get(float t) {
+                    if (decelerate) {
+                        return (float) (1.0f - Math.pow((1.0f - t), power));
+                    }
+                    return (float) Math.pow(t, power);
+                }
+            };
+        }
+
+        private static Interpolator anticipate(final float tension) {
+            return new Interpolator() {
+                @Override
+                float get(float t) {
+                    return t * t * ((tension + 1) * t - tension);
+                }
+            };
+        }
+
+        private static Interpolator overshoot(final float tension) {
+            return new Interpolator() {
+                @Override
+                float get(float t) {
+                    t -= 1.0f;
+                    return t * t * ((tension + 1) * t + tension) + 1.0f;
+                }
+            };
+        }
+
+        private static Interpolator anticipateOvershoot(final float tension) {
+            return new Interpolator() {
+                @Override
+                float get(float t) {
+                    if (t < 0.5f) return 0.5f * a(t * 2.0f, tension);
+                    else return 0.5f * (o(t * 2.0f - 2.0f, tension) + 2.0f);
+                }
+
+                private float a(float t, float s) {
+                    return t * t * ((s + 1) * t - s);
+                }
+
+                private float o(float t, float s) {
+                    return t * t * ((s + 1) * t + s);
+                }
+            };
+        }
+    }
+
+    // A value that can be absolute, a fraction of the glyph ("50%") or a fraction of the parent ("50%p"). It's
+    // resolved to coefficients of 1, width, height, parent width and parent height, like AnimationCurve's
+    // translation.
+    private static class Value {
+        final double[] terms = new double[Transform.TERMS];
+    }
+
+    // An affine transform whose translation depends linearly on the glyph's and parent's size.
+    private static class Transform {
+        static final int TERMS = 5;
+
+        double alpha;
+        double a, b, c, d;
+        final double[] tx = new double[TERMS];
+        final double[] ty = new double[TERMS];
+
+        void clear() {
+            alpha = 1;
+            a = d = 1;
+            b = c = 0;
+            for (int k = 0; k < TERMS; k++) {
+                tx[k] = ty[k] = 0;
+            }
+        }
+
+        boolean isIdentity() {
+            if (a != 1 || b != 0 || c != 0 || d != 1) {
+                return false;
+            }
+            for (int k = 0; k < TERMS; k++) {
+                if (tx[k] != 0 || ty[k] != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Like Transformation.compose, which pre-concatenates the other matrix.
+        void compose(Transform other) {
+            alpha *= other.alpha;
+            final double na = a * other.a + b * other.c;
+            final double nb = a * other.b + b * other.d;
+            final double nc = c * other.a + d * other.c;
+            final double nd = c * other.b + d * other.d;
+            for (int k = 0; k < TERMS; k++) {
+                final double x = a * other.tx[k] + b * other.ty[k];
+                final double y = c * other.tx[k] + d * other.ty[k];
+                tx[k] += x;
+                ty[k] += y;
+            }
+            a = na;
+            b = nb;
+            c = nc;
+            d = nd;
+        }
+
+        // Sets the linear part to m, applied around a pivot. Matrix.setScale(sx, sy, px, py) and
+        // setRotate(degrees, px, py) both come out as p - m * p.
+        void setAround(double ma, double mb, double mc, double md, Value px, Value py) {
+            a = ma;
+            b = mb;
+            c = mc;
+            d = md;
+            for (int k = 0; k < TERMS; k++) {
+                tx[k] = px.terms[k] - (ma * px.terms[k] + mb * py.terms[k]);
+                ty[k] = py.terms[k] - (mc * px.terms[k] + md * py.terms[k]);
+            }
+        }
+    }
+
+    private abstract static class Anim {
+        long duration = 0;
+        boolean durationSet = false;
+        long startOffset = 0;
+        boolean fillEnabled;
+        boolean fillBefore;
+        boolean fillBeforeSet = false;
+        boolean fillAfter;
+        boolean fillAfterSet = false;
+        Interpolator interpolator;
+
+        long getDuration() {
+            return duration;
+        }
+
+        void setDuration(long duration) {
+            this.duration = duration;
+            durationSet = true;
+        }
+
+        void setFillBefore(boolean fillBefore) {
+            this.fillBefore = fillBefore;
+            fillBeforeSet = true;
+        }
+
+        void setFillAfter(boolean fillAfter) {
+            this.fillAfter = fillAfter;
+            fillAfterSet = true;
+        }
+
+        boolean hasStartOffset() {
+            return startOffset != 0;
+        }
+
+        // Applies what a parent set passes down. shared is the set's interpolator if it shares it.
+        void initialize(long extraOffset, Interpolator shared) {
+            startOffset += extraOffset;
+            if (shared != null) {
+                interpolator = shared;
+            }
+        }
+
+        // Like Animation.getTransformation for an animation started at 0.
+        void getTransformation(long time, Transform out) {
+            float normalized;
+            if (duration != 0) {
+                normalized = ((float) (time - startOffset)) / (float) duration;
+            } else {
+                normalized = time < startOffset ? 0.0f : 1.0f;
+            }
+            if (!fillEnabled) {
+                normalized = Math.max(Math.min(normalized, 1.0f), 0.0f);
+            }
+            if ((normalized >= 0.0f || fillBefore) && (normalized <= 1.0f || fillAfter)) {
+                if (fillEnabled) {
+                    normalized = Math.max(Math.min(normalized, 1.0f), 0.0f);
+                }
+                apply(interpolator.get(normalized), out);
+            }
+        }
+
+        abstract void apply(float t, Transform out);
+    }
+
+    private static class AnimSet extends Anim {
+        boolean shareInterpolator;
+        final List<Anim> children = new ArrayList<Anim>();
+        private final Transform scratch = new Transform();
+
+        @Override
+        long getDuration() {
+            if (durationSet) {
+                return duration;
+            }
+            long longest = 0;
+            for (Anim child : children) {
+                longest = Math.max(longest, child.getDuration());
+            }
+            return longest;
+        }
+
+        @Override
+        boolean hasStartOffset() {
+            if (startOffset != 0) {
+                return true;
+            }
+            for (Anim child : children) {
+                if (child.hasStartOffset()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Like AnimationSet.initialize. The set's start offset and shared interpolator are pushed down, and so are
+        // its duration and fill flags if they were set.
+        @Override
+        void initialize(long extraOffset, Interpolator shared) {
+            super.initialize(extraOffset, shared);
+            final Interpolator share = shareInterpolator ? interpolator : null;
+            for (Anim child : children) {
+                if (durationSet) {
+                    child.setDuration(duration);
+                }
+                if (fillBeforeSet) {
+                    child.setFillBefore(fillBefore);
+                }
+                if (fillAfterSet) {
+                    child.setFillAfter(fillAfter);
+                }
+                child.initialize(startOffset, share);
+            }
+        }
+
+        @Override
+        void getTransformation(long time, Transform out) {
+            for (int i = children.size() - 1; i >= 0; i--) {
+                scratch.clear();
+                children.get(i).getTransformation(time, scratch);
+                out.compose(scratch);
+            }
+        }
+
+        @Override
+        void apply(float t, Transform out) {
+        }
+    }
+
+    private static class Alpha extends Anim {
+        final float from;
+        final float to;
+
+        Alpha(float from, float to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        void apply(float t, Transform out) {
+            out.alpha = from + ((to - from) * t);
+        }
+    }
+
+    private static class Scale extends Anim {
+        final float fromX, toX, fromY, toY;
+        final Value pivotX, pivotY;
+
+        Scale(float fromX, float toX, float fromY, float toY, Value pivotX, Value pivotY) {
+            this.fromX = fromX;
+            this.toX = toX;
+            this.fromY = fromY;
+            this.toY = toY;
+            this.pivotX = pivotX;
+            this.pivotY = pivotY;
+        }
+
+        @Override
+        void apply(float t, Transform out) {
+            float sx = 1.0f;
+            float sy = 1.0f;
+            if (fromX != 1.0f || toX != 1.0f) {
+                sx = fromX + ((toX - fromX) * t);
+            }
+            if (fromY != 1.0f || toY != 1.0f) {
+                sy = fromY + ((toY - fromY) * t);
+            }
+            out.setAround(sx, 0, 0, sy, pivotX, pivotY);
+        }
+    }
+
+    private static class Rotate extends Anim {
+        final float from, to;
+        final Value pivotX, pivotY;
+
+        Rotate(float from, float to, Value pivotX, Value pivotY) {
+            this.from = from;
+            this.to = to;
+            this.pivotX = pivotX;
+            this.pivotY = pivotY;
+        }
+
+        @Override
+        void apply(float t, Transform out) {
+            final double radians = Math.toRadians(from + ((to - from) * t));
+            final double sin = Math.sin(radians);
+            final double cos = Math.cos(radians);
+            out.setAround(cos, -sin, sin, cos, pivotX, pivotY);
+        }
+    }
+
+    private static class Translate extends Anim {
+        final Value fromX, toX, fromY, toY;
+
+        Translate(Value fromX, Value toX, Value fromY, Value toY) {
+            this.fromX = fromX;
+            this.toX = toX;
+            this.fromY = fromY;
+            this.toY = toY;
+        }
+
+        @Override
+        void apply(float t, Transform out) {
+            for (int k = 0; k < Transform.TERMS; k++) {
+                out.tx[k] = fromX.terms[k] + (toX.terms[k] - fromX.terms[k]) * t;
+                out.ty[k] = fromY.terms[k] + (toY.terms[k] - fromY.terms[k]) * t;
+            }
+        }
+    }
+
+    private static String getAttribute(Element element, String name) throws Unsupported {
+        if (!element.hasAttributeNS(ANDROID_NS, name)) {
+            return null;
+        }
+        final String value = element.getAttributeNS(ANDROID_NS, name).trim();
+        if (value.startsWith("@") || value.startsWith("?")) {
+            if (name.equals("interpolator")) {
+                return value;
+            }
+            throw new Unsupported("Resource references can't be compiled: " + name + "=\"" + value + "\"");
+        }
+        return value;
+    }
+
+    private static boolean getBoolean(Element element, String name, boolean fallback) throws Unsupported {
+        final String value = getAttribute(element, name);
+        return value != null ? Boolean.parseBoolean(value) : fallback;
+    }
+
+    private static float getFloat(Element element, String name, float fallback) throws Unsupported {
+        final String value = getAttribute(element, name);
+        return value != null ? parseFloat(value) : fallback;
+    }
+
+    // Animation.Description.parseValue: "50%" is relative to the glyph, "50%p" to the parent, anything else is
+    // absolute. Missing values are an absolute 0.
+    private static Value getValue(Element element, String name) throws Unsupported {
+        final Value out = new Value();
+        final String value = getAttribute(element, name);
+        if (value == null) {
+            return out;
+        }
+        if (value.endsWith("%p")) {
+            final double fraction = parseFloat(value.substring(0, value.length() - 2)) / 100.0;
+            // Parent width for x, parent height for y.
+            out.terms[name.contains("X") ? 3 : 4] = fraction;
+        } else if (value.endsWith("%")) {
+            final double fraction = parseFloat(value.substring(0, value.length() - 1)) / 100.0;
+            out.terms[name.contains("X") ? 1 : 2] = fraction;
+        } else {
+            out.terms[0] = parseFloat(value);
+        }
+        return out;
+    }
+
+    private static float parseFloat(String value) throws Unsupported {
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            throw new Unsupported("Can't compile value \"" + value + "\"");
+        }
+    }
+
+    private static long parseLong(String value) throws Unsupported {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new Unsupported("Can't compile value \"" + value + "\"");
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.digdug.animatedtextview.gradle;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Compiles every animation in a res/anim directory into a curve asset, <name>.curve in outputDir, which
+// AnimationPreset loads instead of inflating the XML. Animations that can't be compiled are skipped with a
+// warning, and presets for them fall back to inflating the resource.
+public class CompileAnimationCurvesTask extends DefaultTask {
+    private File animDir;
+    private File outputDir;
+
+    @InputDirectory
+    public File getAnimDir() {
+        return animDir;
+    }
+
+    public void setAnimDir(File animDir) {
+        this.animDir = animDir;
+    }
+
+    @OutputDirectory
+    public File getOutputDir() {
+        return outputDir;
+    }
+
+    public void setOutputDir(File outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    @TaskAction
+    public void compile() throws IOException {
+        final File[] old = outputDir.listFiles();
+        if (old != null) {
+            for (File file : old) {
+                if (!file.delete()) {
+                    throw new GradleException("Couldn't delete " + file);
+                }
+            }
+        }
+
+        final File[] files = animDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        final AnimationCurveCompiler compiler = new AnimationCurveCompiler();
+        for (File file : files) {
+            final String name = file.getName();
+            if (!name.endsWith(".xml")) {
+                continue;
+            }
+
+            final File out = new File(outputDir, name.substring(0, name.length() - ".xml".length()) + ".curve");
+            boolean compiled = false;
+            final OutputStream stream = new BufferedOutputStream(new FileOutputStream(out));
+            try {
+                compiler.compile(file, stream);
+                compiled = true;
+            } catch (AnimationCurveCompiler.Unsupported e) {
+                getLogger().warn("Not compiling " + name + ", it'll be inflated at runtime: " + e.getMessage());
+            } finally {
+                stream.close();
+                if (!compiled && !out.delete()) {
+                    getLogger().warn("Couldn't delete " + out);
+                }
+            }
+        }
+    }
+}
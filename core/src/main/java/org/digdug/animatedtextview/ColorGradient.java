@@ -0,0 +1,55 @@
+package org.digdug.animatedtextview;
+
+// Interpolates packed ARGB colors one channel at a time. In linear mode the color channels are blended in linear
+// light and converted back to sRGB, which avoids the dark, muddy midpoints you get blending sRGB values directly.
+public class ColorGradient {
+    private static final float[] SRGB_TO_LINEAR = new float[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            final float c = i / 255f;
+            SRGB_TO_LINEAR[i] = c <= 0.04045f ? c / 12.92f : (float) Math.pow((c + 0.055f) / 1.055f, 2.4f);
+        }
+    }
+
+    private ColorGradient() {
+    }
+
+    public static int lerp(int from, int to, float fraction, boolean linear) {
+        if (from == to || fraction <= 0) {
+            return fraction >= 1 ? to : from;
+        } else if (fraction >= 1) {
+            return to;
+        }
+
+        final int a = lerpChannel(from >>> 24, to >>> 24, fraction);
+        if (!linear) {
+            return a << 24 |
+                    lerpChannel((from >> 16) & 0xff, (to >> 16) & 0xff, fraction) << 16 |
+                    lerpChannel((from >> 8) & 0xff, (to >> 8) & 0xff, fraction) << 8 |
+                    lerpChannel(from & 0xff, to & 0xff, fraction);
+        }
+        return a << 24 |
+                lerpLinear((from >> 16) & 0xff, (to >> 16) & 0xff, fraction) << 16 |
+                lerpLinear((from >> 8) & 0xff, (to >> 8) & 0xff, fraction) << 8 |
+                lerpLinear(from & 0xff, to & 0xff, fraction);
+    }
+
+    // Fills steps entries of out, starting at offset, with the gradient from one color to the other.
+    public static void fill(int from, int to, boolean linear, int[] out, int offset, int steps) {
+        for (int s = 0; s < steps; s++) {
+            out[offset + s] = lerp(from, to, (float) s / (steps - 1), linear);
+        }
+    }
+
+    private static int lerpChannel(int from, int to, float fraction) {
+        return (int) (from + fraction * (to - from) + 0.5f);
+    }
+
+    private static int lerpLinear(int from, int to, float fraction) {
+        final float a = SRGB_TO_LINEAR[from];
+        final float c = a + fraction * (SRGB_TO_LINEAR[to] - a);
+        final float srgb = c <= 0.0031308f ? c * 12.92f : 1.055f * (float) Math.pow(c, 1 / 2.4f) - 0.055f;
+        return Math.max(0, Math.min(255, (int) (srgb * 255 + 0.5f)));
+    }
+}
@@ -0,0 +1,223 @@
+package org.digdug.animatedtextview;
+
+import java.util.Arrays;
+
+// The state of every glyph in a transition at one point in time, worked out in a single pass so drawing only has
+// to read it. Each transition has two slots: HIDING for the character it's animating away from and SHOWING for
+// the one it's animating to. A character that just moves only uses its SHOWING slot.
+public class GlyphFrames {
+    public static final int HIDING = 0;
+    public static final int SHOWING = 1;
+
+    // Indexed by 2 * transition + slot.
+    float[] x;
+    // The top of the glyph's line.
+    float[] y;
+    float[] size;
+    int[] color;
+    float[] alpha;
+    float[] scaleX;
+    float[] scaleY;
+    float[] rotation;
+    float[] translateX;
+    float[] translateY;
+    boolean[] transformed;
+
+    private int count = 0;
+    // After the first pass only the glyphs that started or finished since the last one have to be worked out
+    // again. Everything before evaluatedFirst had finished by the last pass, and everything after it that hadn't
+    // started is still at its start.
+    private boolean valid = false;
+    private int evaluatedFirst;
+    private long evaluatedElapsed;
+    private float evaluatedWidth;
+    private float evaluatedHeight;
+    private PropertyCurve evaluatedShow;
+    private PropertyCurve evaluatedHide;
+    private boolean evaluatedAutoSlide;
+
+    public GlyphFrames() {
+        allocate(32);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public float getX(int i, int slot) {
+        return x[2 * i + slot];
+    }
+
+    public float getY(int i, int slot) {
+        return y[2 * i + slot];
+    }
+
+    public float getSize(int i, int slot) {
+        return size[2 * i + slot];
+    }
+
+    public int getColor(int i, int slot) {
+        return color[2 * i + slot];
+    }
+
+    public float getAlpha(int i, int slot) {
+        return alpha[2 * i + slot];
+    }
+
+    // False if the glyph is drawn without scaling, rotating or translating it.
+    public boolean isTransformed(int i, int slot) {
+        return transformed[2 * i + slot];
+    }
+
+    public float getScaleX(int i, int slot) {
+        return scaleX[2 * i + slot];
+    }
+
+    public float getScaleY(int i, int slot) {
+        return scaleY[2 * i + slot];
+    }
+
+    public float getRotation(int i, int slot) {
+        return rotation[2 * i + slot];
+    }
+
+    public float getTranslateX(int i, int slot) {
+        return translateX[2 * i + slot];
+    }
+
+    public float getTranslateY(int i, int slot) {
+        return translateY[2 * i + slot];
+    }
+
+    // Forgets the last pass, so the next one works out every glyph. Call this when the transitions change.
+    public void invalidate() {
+        valid = false;
+    }
+
+    // Works out every glyph elapsed ms after the transition started, with each transition starting when schedule
+    // says. Returns the number of glyphs that are still moving.
+    public int evaluate(TransitionBuffer t, long elapsed, StaggerSchedule schedule, PropertyCurve show,
+                        PropertyCurve hide, boolean autoSlide, float parentWidth, float parentHeight) {
+        if (count != t.size() || elapsed < evaluatedElapsed || parentWidth != evaluatedWidth ||
+                parentHeight != evaluatedHeight || show != evaluatedShow || hide != evaluatedHide ||
+                autoSlide != evaluatedAutoSlide) {
+            valid = false;
+        }
+        count = t.size();
+        if (x.length < 2 * count) {
+            allocate(Math.max(2 * count, x.length * 2));
+        }
+
+        final long animationDuration = Math.max(show != null ? show.getDuration() : 0,
+                hide != null ? hide.getDuration() : 0);
+        final int firstActive = schedule.getFirstActive(elapsed, animationDuration);
+        final int first = valid ? Math.min(evaluatedFirst, firstActive) : 0;
+        final int last = valid ? schedule.getLastActive(elapsed) : count - 1;
+        valid = true;
+        evaluatedFirst = firstActive;
+        evaluatedElapsed = elapsed;
+        evaluatedWidth = parentWidth;
+        evaluatedHeight = parentHeight;
+        evaluatedShow = show;
+        evaluatedHide = hide;
+        evaluatedAutoSlide = autoSlide;
+
+        int moving = 0;
+        for (int i = first; i <= last; i++) {
+            final int hiding = 2 * i + HIDING;
+            final int showing = 2 * i + SHOWING;
+            alpha[hiding] = 0;
+            alpha[showing] = 0;
+
+            if (t.isBoring(i)) {
+                setMoving(t, i, showing, 1);
+                continue;
+            }
+
+            final long time = schedule.getTime(i, elapsed);
+            float showFraction;
+            float hideFraction;
+            float showProgress = 1;
+            float hideProgress = 0;
+            if (time < 0) {
+                if (autoSlide) {
+                    showProgress = 0;
+                }
+                showFraction = 0;
+                hideFraction = 0;
+            } else if (time < animationDuration) {
+                moving++;
+                showFraction = show != null ? show.getFraction(time) : 1;
+                hideFraction = hide != null ? hide.getFraction(time) : 1;
+                if (autoSlide) {
+                    showProgress = show != null ? show.getProgress(showFraction) : 1;
+                    hideProgress = hide != null ? hide.getProgress(hideFraction) : 1;
+                }
+            } else {
+                showFraction = 1;
+                hideFraction = 1;
+                showProgress = 1;
+                hideProgress = 1;
+            }
+
+            if (t.isSameChar(i)) {
+                setMoving(t, i, showing, hideProgress);
+                continue;
+            }
+
+            if (t.hasFrom[i]) {
+                setAnimated(t, i, hiding, hide, hideFraction, hideProgress, t.fromColor[i], t.fromWidth[i],
+                        t.fromAlpha[i], parentWidth, parentHeight);
+            }
+            if (t.hasTo[i]) {
+                setAnimated(t, i, showing, show, showFraction, showProgress, t.toColor[i], t.toWidth[i],
+                        1, parentWidth, parentHeight);
+            }
+        }
+        return moving;
+    }
+
+    private void setMoving(TransitionBuffer t, int i, int slot, float dt) {
+        x[slot] = t.getPosition(i, dt);
+        y[slot] = t.getY(i, dt);
+        size[slot] = t.getSize(i, dt);
+        color[slot] = t.getColor(i, dt);
+        alpha[slot] = t.getAlpha(i, dt);
+        transformed[slot] = false;
+    }
+
+    private void setAnimated(TransitionBuffer t, int i, int slot, PropertyCurve curve, float fraction, float dt,
+                             int glyphColor, float width, float startAlpha, float parentWidth, float parentHeight) {
+        x[slot] = t.getPosition(i, dt);
+        y[slot] = t.getY(i, dt);
+        size[slot] = t.getSize(i, dt);
+        color[slot] = glyphColor;
+        alpha[slot] = curve != null && curve.hasAlpha() ? startAlpha * curve.getAlpha(fraction) : startAlpha;
+
+        if (curve == null || !curve.hasTransform()) {
+            transformed[slot] = false;
+            return;
+        }
+        transformed[slot] = true;
+        scaleX[slot] = curve.getScaleX(fraction);
+        scaleY[slot] = curve.getScaleY(fraction);
+        rotation[slot] = curve.getRotation(fraction);
+        // Pivots are relative to the glyph's box.
+        translateX[slot] = curve.getTranslationX(fraction, width, size[slot], parentWidth, parentHeight);
+        translateY[slot] = curve.getTranslationY(fraction, width, size[slot], parentWidth, parentHeight);
+    }
+
+    private void allocate(int capacity) {
+        x = x == null ? new float[capacity] : Arrays.copyOf(x, capacity);
+        y = y == null ? new float[capacity] : Arrays.copyOf(y, capacity);
+        size = size == null ? new float[capacity] : Arrays.copyOf(size, capacity);
+        color = color == null ? new int[capacity] : Arrays.copyOf(color, capacity);
+        alpha = alpha == null ? new float[capacity] : Arrays.copyOf(alpha, capacity);
+        scaleX = scaleX == null ? new float[capacity] : Arrays.copyOf(scaleX, capacity);
+        scaleY = scaleY == null ? new float[capacity] : Arrays.copyOf(scaleY, capacity);
+        rotation = rotation == null ? new float[capacity] : Arrays.copyOf(rotation, capacity);
+        translateX = translateX == null ? new float[capacity] : Arrays.copyOf(translateX, capacity);
+        translateY = translateY == null ? new float[capacity] : Arrays.copyOf(translateY, capacity);
+        transformed = transformed == null ? new boolean[capacity] : Arrays.copyOf(transformed, capacity);
+    }
+}
@@ -0,0 +1,10 @@
+package org.digdug.animatedtextview;
+
+// Measures glyphs for a TransitionLayout. On a device this is backed by a Paint, in benchmarks it can be a stub.
+public interface GlyphMetrics {
+    float getAdvance(int codePoint, float size);
+
+    // Measures a grapheme cluster made of more than one code point, e.g. an emoji sequence. Text that's full of them
+    // measures the same few again on every transition, so it's worth caching like single code points.
+    float getAdvance(CharSequence text, int start, int end, float size);
+}
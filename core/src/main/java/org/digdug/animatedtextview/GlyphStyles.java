@@ -0,0 +1,7 @@
+package org.digdug.animatedtextview;
+
+// The color and size of each character in a piece of text. Indexes outside the text return the defaults.
+public interface GlyphStyles {
+    int getColor(int index);
+    float getSize(int index);
+}
@@ -0,0 +1,127 @@
+package org.digdug.animatedtextview;
+
+import java.util.Arrays;
+
+// Splits text into the units that are animated as one glyph: surrogate pairs, base characters with their
+// combining marks and variation selectors, emoji joined with zero width joiners or skin tone modifiers, flags
+// made of regional indicator pairs, and CR LF. This is a simplified version of the Unicode extended grapheme
+// cluster rules (UAX #29) that doesn't need BreakIterator, so it doesn't allocate and behaves the same on every
+// release.
+//
+// An instance indexes the clusters of one piece of text. Its arrays are kept between calls to build.
+public class GraphemeClusters {
+    private static final int ZERO_WIDTH_JOINER = 0x200D;
+
+    private int[] starts = new int[17];
+    private int count = 0;
+
+    public void build(CharSequence text) {
+        final int length = text.length();
+        if (starts.length < length + 1) {
+            starts = Arrays.copyOf(starts, Math.max(length + 1, starts.length * 2));
+        }
+        count = 0;
+        int start = 0;
+        while (start < length) {
+            starts[count++] = start;
+            start = next(text, start);
+        }
+        starts[count] = length;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getStart(int cluster) {
+        return starts[cluster];
+    }
+
+    public int getEnd(int cluster) {
+        return starts[cluster + 1];
+    }
+
+    // Returns the end of the cluster that starts at start.
+    public static int next(CharSequence text, int start) {
+        final int length = text.length();
+        final int first = codePointAt(text, start);
+        int end = start + Character.charCount(first);
+
+        if (first == '\r') {
+            return end < length && text.charAt(end) == '\n' ? end + 1 : end;
+        }
+        if (first == '\n' || Character.getType(first) == Character.CONTROL) {
+            return end;
+        }
+
+        // A flag is exactly two regional indicators.
+        if (isRegionalIndicator(first) && end < length) {
+            final int second = codePointAt(text, end);
+            if (isRegionalIndicator(second)) {
+                end += Character.charCount(second);
+            }
+        }
+
+        while (end < length) {
+            final int c = codePointAt(text, end);
+            if (c == ZERO_WIDTH_JOINER) {
+                end += Character.charCount(c);
+                // Joins whatever comes next onto this cluster.
+                if (end < length && !isBreak(codePointAt(text, end))) {
+                    end += Character.charCount(codePointAt(text, end));
+                }
+            } else if (isExtend(c)) {
+                end += Character.charCount(c);
+            } else {
+                break;
+            }
+        }
+        return end;
+    }
+
+    // True if the cluster from start to end is a single code point.
+    public static boolean isSingleCodePoint(CharSequence text, int start, int end) {
+        return end - start == 1 || (end - start == 2 && Character.isHighSurrogate(text.charAt(start)));
+    }
+
+    // Measures a cluster. Single code points go through the metrics' cache.
+    public static float measure(GlyphMetrics metrics, CharSequence text, int start, int end, float size) {
+        if (isSingleCodePoint(text, start, end)) {
+            return metrics.getAdvance(codePointAt(text, start), size);
+        }
+        return metrics.getAdvance(text, start, end, size);
+    }
+
+    public static int codePointAt(CharSequence text, int index) {
+        final char high = text.charAt(index);
+        if (Character.isHighSurrogate(high) && index + 1 < text.length()) {
+            final char low = text.charAt(index + 1);
+            if (Character.isLowSurrogate(low)) {
+                return Character.toCodePoint(high, low);
+            }
+        }
+        return high;
+    }
+
+    private static boolean isBreak(int c) {
+        return c == '\r' || c == '\n' || Character.getType(c) == Character.CONTROL;
+    }
+
+    // Code points that attach to the one before them.
+    private static boolean isExtend(int c) {
+        switch (Character.getType(c)) {
+            case Character.NON_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+                return true;
+        }
+        return (c >= 0xFE00 && c <= 0xFE0F) ||   // Variation selectors
+                (c >= 0xE0100 && c <= 0xE01EF) || // Variation selectors supplement
+                (c >= 0x1F3FB && c <= 0x1F3FF) || // Emoji skin tone modifiers
+                (c >= 0xE0020 && c <= 0xE007F);   // Tags, used by subdivision flags
+    }
+
+    private static boolean isRegionalIndicator(int c) {
+        return c >= 0x1F1E6 && c <= 0x1F1FF;
+    }
+}
@@ -0,0 +1,340 @@
+package org.digdug.animatedtextview;
+
+import java.util.Arrays;
+
+// Breaks text into lines that fit a width, wrapping at spaces and at newlines. Positions are stored relative to
+// the start of each line, so aligning a line doesn't need it to be laid out again. Lines never break inside a
+// grapheme cluster. A cluster's advance is stored at its first char, the rest of its chars have none.
+//
+// layoutIncremental reuses the lines of a previous layout that an edit didn't touch. Only the lines from just
+// before the edit until the line breaks line up with the old ones again are measured and broken, so the cost
+// follows the size of the edit rather than the length of the text.
+public class LineLayout {
+    private static final float DEFAULT_LINE_SPACING = 1.2f;
+
+    private final GlyphMetrics metrics;
+    private float lineSpacing = DEFAULT_LINE_SPACING;
+
+    // What was laid out.
+    private CharSequence text = "";
+    private float width;
+    private int length = 0;
+
+    // Per character.
+    private float[] advance = new float[16];
+    private float[] x = new float[16];
+    private float[] size = new float[16];
+    // False for the chars after the first in a cluster.
+    private boolean[] clusterStart = new boolean[16];
+
+    // Per line. A line runs from lineStart to lineEnd, including any trailing spaces and newline.
+    private int lineCount = 0;
+    private int[] lineStart = new int[4];
+    private int[] lineEnd = new int[4];
+    // Width without trailing spaces, which is what lines are aligned by.
+    private float[] lineWidth = new float[4];
+    private float[] lineTop = new float[4];
+    private float[] lineHeight = new float[4];
+
+    // How many lines the last layout had to break, as opposed to reusing.
+    private int brokenLines = 0;
+
+    public LineLayout(GlyphMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Line height as a multiple of the largest text size on the line.
+    public void setLineSpacing(float multiplier) {
+        lineSpacing = multiplier;
+    }
+
+    public CharSequence getText() {
+        return text;
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getLineStart(int line) {
+        return lineStart[line];
+    }
+
+    public int getLineEnd(int line) {
+        return lineEnd[line];
+    }
+
+    public float getLineWidth(int line) {
+        return lineWidth[line];
+    }
+
+    public float getLineTop(int line) {
+        return lineTop[line];
+    }
+
+    public float getLineHeight(int line) {
+        return lineHeight[line];
+    }
+
+    public float getHeight() {
+        return lineCount == 0 ? 0 : lineTop[lineCount - 1] + lineHeight[lineCount - 1];
+    }
+
+    // Where character i starts, relative to the start of its line.
+    public float getX(int i) {
+        return x[i];
+    }
+
+    public float getAdvance(int i) {
+        return advance[i];
+    }
+
+    public int getBrokenLineCount() {
+        return brokenLines;
+    }
+
+    public int getLineForIndex(int i) {
+        int low = 0;
+        int high = lineCount - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (lineStart[mid] <= i) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    public void layout(CharSequence text, GlyphStyles styles, float width) {
+        begin(text, width);
+        lineCount = 0;
+        brokenLines = 0;
+        breakLines(0, styles, null, 0, 0, 0);
+        finish();
+    }
+
+    // Lays out text reusing whatever lines of previous are unaffected by the change from previous's text. previous
+    // has to have been laid out with the same sizes for the characters the two texts share. If it wasn't laid out
+    // at this width, everything is laid out again.
+    public void layoutIncremental(LineLayout previous, CharSequence text, GlyphStyles styles, float width) {
+        if (previous == this) {
+            throw new IllegalArgumentException("Can't lay out incrementally from the same layout");
+        }
+        if (previous.width != width || previous.lineCount == 0) {
+            layout(text, styles, width);
+            return;
+        }
+
+        final CharSequence old = previous.text;
+        final int oldLength = previous.length;
+        final int newLength = text.length();
+
+        // The edit replaces old[prefix, oldLength - suffix) with text[prefix, newLength - suffix).
+        int prefix = 0;
+        final int shorter = Math.min(oldLength, newLength);
+        while (prefix < shorter && old.charAt(prefix) == text.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < shorter - prefix &&
+                old.charAt(oldLength - 1 - suffix) == text.charAt(newLength - 1 - suffix)) {
+            suffix++;
+        }
+
+        begin(text, width);
+        brokenLines = 0;
+
+        // Wrapping is greedy, so an edit can pull the word it's in back onto the line before it. Start there. Words
+        // too long for a line are wrapped anywhere, so that's the line before the word starts, not the edit.
+        int wordStart = prefix;
+        while (wordStart > 0 && !isTrailing(old.charAt(wordStart - 1))) {
+            wordStart--;
+        }
+        final int firstLine = Math.max(0, previous.getLineForIndex(wordStart) - 1);
+        final int firstChar = previous.lineStart[firstLine];
+        ensureLineCapacity(firstLine + 1);
+        System.arraycopy(previous.lineStart, 0, lineStart, 0, firstLine);
+        System.arraycopy(previous.lineEnd, 0, lineEnd, 0, firstLine);
+        System.arraycopy(previous.lineWidth, 0, lineWidth, 0, firstLine);
+        System.arraycopy(previous.lineHeight, 0, lineHeight, 0, firstLine);
+        System.arraycopy(previous.advance, 0, advance, 0, firstChar);
+        System.arraycopy(previous.x, 0, x, 0, firstChar);
+        System.arraycopy(previous.size, 0, size, 0, firstChar);
+        System.arraycopy(previous.clusterStart, 0, clusterStart, 0, firstChar);
+        lineCount = firstLine;
+
+        breakLines(firstChar, styles, previous, prefix, newLength - suffix, newLength - oldLength);
+        finish();
+    }
+
+    private void begin(CharSequence text, float width) {
+        this.text = text;
+        this.width = width;
+        length = text.length();
+        if (advance.length < length) {
+            final int capacity = Math.max(length, advance.length * 2);
+            advance = Arrays.copyOf(advance, capacity);
+            x = Arrays.copyOf(x, capacity);
+            size = Arrays.copyOf(size, capacity);
+            clusterStart = Arrays.copyOf(clusterStart, capacity);
+        }
+    }
+
+    // Breaks lines from start to the end of the text. If previous is set, characters before prefix and from
+    // suffixStart on are the same as in previous (shifted by delta), and once a line ends where one of previous's
+    // lines did in that part, the rest of previous's lines are copied instead of broken again.
+    private void breakLines(int start, GlyphStyles styles, LineLayout previous, int prefix, int suffixStart,
+                            int delta) {
+        final CharSequence text = this.text;
+        int lineBegin = start;
+        while (lineBegin < length) {
+            if (previous != null && lineBegin >= suffixStart && lineBegin - delta < previous.length) {
+                final int oldLine = previous.getLineForIndex(lineBegin - delta);
+                if (previous.lineStart[oldLine] == lineBegin - delta) {
+                    copyLines(previous, oldLine, delta);
+                    return;
+                }
+            }
+
+            brokenLines++;
+            float position = 0;
+            float maxSize = 0;
+            int lastBreak = -1;
+            int end = lineBegin;
+            while (end < length) {
+                final char c = text.charAt(end);
+                final int clusterEnd = GraphemeClusters.next(text, end);
+                final float glyphSize;
+                final float glyphAdvance;
+                // Clusters only depend on what follows them, so one that ends before the edit, or starts after it
+                // where a cluster started before, is the same as it was. Where a cluster ends can depend on the
+                // surrogate after it, so that has to be before the edit too.
+                if (previous != null && clusterEnd + 1 < prefix) {
+                    glyphSize = previous.size[end];
+                    glyphAdvance = previous.advance[end];
+                } else if (previous != null && end >= suffixStart && previous.clusterStart[end - delta]) {
+                    glyphSize = previous.size[end - delta];
+                    glyphAdvance = previous.advance[end - delta];
+                } else {
+                    glyphSize = styles.getSize(end);
+                    glyphAdvance = c == '\n' || c == '\r' ? 0 :
+                            GraphemeClusters.measure(metrics, text, end, clusterEnd, glyphSize);
+                }
+
+                if (c == '\n' || c == '\r') {
+                    setCluster(end, clusterEnd, position, 0, glyphSize);
+                    maxSize = Math.max(maxSize, glyphSize);
+                    end = clusterEnd;
+                    lastBreak = -1;
+                    break;
+                }
+
+                // Wrap, but always keep at least one cluster on a line.
+                if (position + glyphAdvance > width && end > lineBegin && c != ' ') {
+                    if (lastBreak > lineBegin) {
+                        end = lastBreak;
+                    }
+                    break;
+                }
+
+                setCluster(end, clusterEnd, position, glyphAdvance, glyphSize);
+                maxSize = Math.max(maxSize, glyphSize);
+                position += glyphAdvance;
+                end = clusterEnd;
+                if (c == ' ') {
+                    lastBreak = end;
+                }
+            }
+
+            // Characters after a wrap point may have been measured for this line, they're redone on the next one.
+            addLine(lineBegin, end, maxSize);
+            lineBegin = end;
+        }
+    }
+
+    private void setCluster(int start, int end, float position, float glyphAdvance, float glyphSize) {
+        x[start] = position;
+        advance[start] = glyphAdvance;
+        size[start] = glyphSize;
+        clusterStart[start] = true;
+        for (int i = start + 1; i < end; i++) {
+            x[i] = position + glyphAdvance;
+            advance[i] = 0;
+            size[i] = glyphSize;
+            clusterStart[i] = false;
+        }
+    }
+
+    private void addLine(int start, int end, float maxSize) {
+        ensureLineCapacity(lineCount + 1);
+        lineStart[lineCount] = start;
+        lineEnd[lineCount] = end;
+
+        // Don't count trailing spaces and newlines when aligning.
+        int last = end - 1;
+        while (last >= start && isTrailing(text.charAt(last))) {
+            last--;
+        }
+        lineWidth[lineCount] = last >= start ? x[last] + advance[last] : 0;
+        lineHeight[lineCount] = maxSize * lineSpacing;
+        lineCount++;
+    }
+
+    private static boolean isTrailing(char c) {
+        return c == ' ' || c == '\n' || c == '\r';
+    }
+
+    // Copies previous's lines from line on, shifting them by delta characters.
+    private void copyLines(LineLayout previous, int line, int delta) {
+        final int count = previous.lineCount - line;
+        ensureLineCapacity(lineCount + count);
+        for (int l = 0; l < count; l++) {
+            lineStart[lineCount + l] = previous.lineStart[line + l] + delta;
+            lineEnd[lineCount + l] = previous.lineEnd[line + l] + delta;
+        }
+        System.arraycopy(previous.lineWidth, line, lineWidth, lineCount, count);
+        System.arraycopy(previous.lineHeight, line, lineHeight, lineCount, count);
+
+        final int oldStart = previous.lineStart[line];
+        final int chars = previous.length - oldStart;
+        System.arraycopy(previous.advance, oldStart, advance, oldStart + delta, chars);
+        System.arraycopy(previous.x, oldStart, x, oldStart + delta, chars);
+        System.arraycopy(previous.size, oldStart, size, oldStart + delta, chars);
+        System.arraycopy(previous.clusterStart, oldStart, clusterStart, oldStart + delta, chars);
+        lineCount += count;
+    }
+
+    // Stacks the lines. An empty text still gets one (empty) line.
+    private void finish() {
+        if (lineCount == 0) {
+            addLine(0, 0, 0);
+        }
+        float top = 0;
+        for (int l = 0; l < lineCount; l++) {
+            lineTop[l] = top;
+            top += lineHeight[l];
+        }
+    }
+
+    private void ensureLineCapacity(int capacity) {
+        if (capacity <= lineStart.length) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, lineStart.length * 2);
+        lineStart = Arrays.copyOf(lineStart, newCapacity);
+        lineEnd = Arrays.copyOf(lineEnd, newCapacity);
+        lineWidth = Arrays.copyOf(lineWidth, newCapacity);
+        lineTop = Arrays.copyOf(lineTop, newCapacity);
+        lineHeight = Arrays.copyOf(lineHeight, newCapacity);
+    }
+}
@@ -0,0 +1,294 @@
+package org.digdug.animatedtextview;
+
+import java.util.Arrays;
+
+// Lays numeric text out in fixed cells, so digits can roll in place like an odometer. Every digit gets the same
+// advance, so digits are never measured one by one, and only the few other characters numbers use (separators,
+// signs, currency symbols) go through GlyphMetrics. Cells are aligned from the right so the units stay put when a
+// number gets longer.
+//
+// A cell whose digit changes rolls along a 0 to 9 strip. A cell where either side isn't a digit slides the old
+// character out and the new one in. Everything else is unchanged and doesn't need to be drawn again.
+public class Odometer {
+    public static final int UNCHANGED = 0;
+    public static final int ROLL = 1;
+    public static final int SLIDE = 2;
+
+    // Marks a cell that's empty on one side, because one text is longer than the other.
+    public static final char EMPTY = 0;
+
+    private int count = 0;
+    // The characters on each side of a cell. Drawn straight from these arrays.
+    char[] fromChars = new char[16];
+    char[] toChars = new char[16];
+    private float[] x = new float[16];
+    private float[] advance = new float[16];
+    private int[] kind = new int[16];
+    // Where a rolling cell starts and ends on the strip. Positions outside 0 to 10 wrap.
+    private float[] fromPosition = new float[16];
+    private float[] toPosition = new float[16];
+    // The cells that aren't UNCHANGED, so drawing a frame doesn't need to look at the others.
+    private int[] changed = new int[16];
+    private int changedCount = 0;
+    private float width = 0;
+
+    // The text being laid out from. Retargeting fills this from the last layout's cells.
+    private char[] source = new char[16];
+    private float[] carried = new float[16];
+
+    // True if text is only digits and the separators, signs and currency symbols numbers are written with.
+    public static boolean isNumeric(CharSequence text) {
+        final int length = text.length();
+        if (length == 0) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (!isDigit(c) && !isNumericSymbol(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isNumericSymbol(char c) {
+        switch (c) {
+            case ' ':
+            case '\u00A0': // No-break space
+            case '\u202F': // Narrow no-break space
+            case '.':
+            case ',':
+            case '\'':
+            case ':':
+            case '-':
+            case '\u2212': // Minus sign
+            case '+':
+            case '%':
+                return true;
+        }
+        return Character.getType(c) == Character.CURRENCY_SYMBOL;
+    }
+
+    // Lays out a transition from one number to another. digitAdvance is the advance every digit gets.
+    public void layout(CharSequence from, CharSequence to, float digitAdvance, GlyphMetrics metrics, float size) {
+        final int fromLength = from.length();
+        source = ensureCapacity(source, fromLength);
+        for (int i = 0; i < fromLength; i++) {
+            source[i] = from.charAt(i);
+        }
+        layout(fromLength, to, false, digitAdvance, metrics, size);
+    }
+
+    // Lays out a transition to a new number that interrupts the last one progress of the way through. Digits that
+    // are still rolling carry on from where they are instead of jumping.
+    public void retarget(CharSequence to, float progress, float digitAdvance, GlyphMetrics metrics, float size) {
+        // Cells are aligned from the right, so the last cell of the old layout lines up with the last of the new.
+        int fromLength = 0;
+        source = ensureCapacity(source, count);
+        carried = ensureCapacity(carried, count);
+        for (int i = 0; i < count; i++) {
+            final char c = toChars[i];
+            if (c == EMPTY) {
+                continue;
+            }
+            source[fromLength] = c;
+            carried[fromLength] = kind[i] == ROLL && progress < 1 ? getPosition(i, progress) : -1;
+            fromLength++;
+        }
+        layout(fromLength, to, true, digitAdvance, metrics, size);
+    }
+
+    private void layout(int fromLength, CharSequence to, boolean carry, float digitAdvance, GlyphMetrics metrics,
+                        float size) {
+        final int toLength = to.length();
+        final int n = Math.max(fromLength, toLength);
+        ensureCapacity(n);
+        final boolean up = compare(source, fromLength, to) <= 0;
+
+        count = n;
+        changedCount = 0;
+        width = 0;
+        for (int k = 0; k < n; k++) {
+            final int cell = n - 1 - k;
+            final int fromIndex = fromLength - 1 - k;
+            final char f = fromIndex >= 0 ? source[fromIndex] : EMPTY;
+            final char t = k < toLength ? to.charAt(toLength - 1 - k) : EMPTY;
+            final float start = carry && fromIndex >= 0 ? carried[fromIndex] : -1;
+            fromChars[cell] = f;
+            toChars[cell] = t;
+
+            final char shown = t != EMPTY ? t : f;
+            advance[cell] = isDigit(shown) ? digitAdvance : metrics.getAdvance(shown, size);
+            if (t != EMPTY) {
+                width += advance[cell];
+            }
+
+            if (start >= 0 && isDigit(t)) {
+                // Still rolling. Carry on from where it is, even if it's heading for the same digit.
+                setRoll(cell, start, t - '0', up);
+            } else if (f == t) {
+                kind[cell] = UNCHANGED;
+            } else if (isDigit(f) && isDigit(t)) {
+                setRoll(cell, f - '0', t - '0', up);
+            } else {
+                kind[cell] = SLIDE;
+            }
+
+            if (kind[cell] != UNCHANGED) {
+                changed[changedCount++] = cell;
+            }
+        }
+
+        // Right aligned to the end of the new text. Cells only the old text has end up left of 0.
+        float right = width;
+        for (int cell = n - 1; cell >= 0; cell--) {
+            right -= advance[cell];
+            x[cell] = right;
+        }
+    }
+
+    // Rolls from start to digit, going up the strip if the number's digits grew and down if they shrank.
+    private void setRoll(int cell, float start, int digit, boolean up) {
+        float delta = digit - start;
+        if (up) {
+            while (delta < 0) {
+                delta += 10;
+            }
+        } else {
+            while (delta > 0) {
+                delta -= 10;
+            }
+        }
+        kind[cell] = delta == 0 ? UNCHANGED : ROLL;
+        fromPosition[cell] = start;
+        toPosition[cell] = start + delta;
+    }
+
+    // Compares the numbers in two texts by their digits read as one integer, ignoring separators and signs, since
+    // the digits are what roll. That's right for numbers written with the same number of decimals. Returns less
+    // than zero if from is smaller.
+    private static int compare(char[] from, int fromLength, CharSequence to) {
+        // Leading zeros don't count.
+        int fromStart = 0;
+        while (fromStart < fromLength && (!isDigit(from[fromStart]) || from[fromStart] == '0')) {
+            fromStart++;
+        }
+        int toStart = 0;
+        while (toStart < to.length() && (!isDigit(to.charAt(toStart)) || to.charAt(toStart) == '0')) {
+            toStart++;
+        }
+
+        final int fromDigits = countDigits(from, fromStart, fromLength);
+        final int toDigits = countDigits(to, toStart);
+        if (fromDigits != toDigits) {
+            return fromDigits < toDigits ? -1 : 1;
+        }
+
+        int i = fromStart;
+        int j = toStart;
+        while (i < fromLength && j < to.length()) {
+            if (!isDigit(from[i])) {
+                i++;
+            } else if (!isDigit(to.charAt(j))) {
+                j++;
+            } else {
+                if (from[i] != to.charAt(j)) {
+                    return from[i] < to.charAt(j) ? -1 : 1;
+                }
+                i++;
+                j++;
+            }
+        }
+        return 0;
+    }
+
+    private static int countDigits(char[] text, int start, int end) {
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            if (isDigit(text[i])) {
+                digits++;
+            }
+        }
+        return digits;
+    }
+
+    private static int countDigits(CharSequence text, int start) {
+        int digits = 0;
+        for (int i = start; i < text.length(); i++) {
+            if (isDigit(text.charAt(i))) {
+                digits++;
+            }
+        }
+        return digits;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    public char getFromChar(int cell) {
+        return fromChars[cell];
+    }
+
+    public char getToChar(int cell) {
+        return toChars[cell];
+    }
+
+    public float getX(int cell) {
+        return x[cell];
+    }
+
+    public float getAdvance(int cell) {
+        return advance[cell];
+    }
+
+    public int getKind(int cell) {
+        return kind[cell];
+    }
+
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    public int getChanged(int i) {
+        return changed[i];
+    }
+
+    // Where a rolling cell is on the strip progress of the way through, from 0 up to but not including 10.
+    public float getPosition(int cell, float progress) {
+        final float position = fromPosition[cell] + (toPosition[cell] - fromPosition[cell]) * progress;
+        final float wrapped = position % 10;
+        return wrapped < 0 ? wrapped + 10 : wrapped;
+    }
+
+    private void ensureCapacity(int n) {
+        if (fromChars.length >= n) {
+            return;
+        }
+        final int capacity = Math.max(n, fromChars.length * 2);
+        fromChars = Arrays.copyOf(fromChars, capacity);
+        toChars = Arrays.copyOf(toChars, capacity);
+        x = Arrays.copyOf(x, capacity);
+        advance = Arrays.copyOf(advance, capacity);
+        kind = Arrays.copyOf(kind, capacity);
+        fromPosition = Arrays.copyOf(fromPosition, capacity);
+        toPosition = Arrays.copyOf(toPosition, capacity);
+        changed = Arrays.copyOf(changed, capacity);
+    }
+
+    private static char[] ensureCapacity(char[] array, int n) {
+        return array.length >= n ? array : Arrays.copyOf(array, Math.max(n, array.length * 2));
+    }
+
+    private static float[] ensureCapacity(float[] array, int n) {
+        return array.length >= n ? array : Arrays.copyOf(array, Math.max(n, array.length * 2));
+    }
+}
@@ -0,0 +1,125 @@
+package org.digdug.animatedtextview;
+
+// A show or hide animation as separate property channels: alpha, interpolated progress, scale, rotation and
+// translation. Evaluating a channel is a single table lookup, so a glyph can be drawn with a translate, a rotate
+// and a scale instead of building a full matrix.
+//
+// Like AnimationCurve, translation is stored as
+//   t = t0 + width * tw + height * th + parentWidth * tpw + parentHeight * tph
+// so one curve works for glyphs of any size.
+public class PropertyCurve {
+    static final int ALPHA = 0;
+    static final int PROGRESS = 1;
+    static final int SCALE_X = 2;
+    static final int SCALE_Y = 3;
+    // In degrees, unwrapped so consecutive samples never jump by a full turn.
+    static final int ROTATION = 4;
+    static final int TRANS_X = 5;
+    static final int TRANS_Y = 6;
+    static final int WIDTH_X = 7;
+    static final int WIDTH_Y = 8;
+    static final int HEIGHT_X = 9;
+    static final int HEIGHT_Y = 10;
+    static final int PARENT_WIDTH_X = 11;
+    static final int PARENT_WIDTH_Y = 12;
+    static final int PARENT_HEIGHT_X = 13;
+    static final int PARENT_HEIGHT_Y = 14;
+    static final int STRIDE = 15;
+
+    private final long duration;
+    private final int samples;
+    private final float[] table;
+    private final boolean hasAlpha;
+    private final boolean hasTransform;
+
+    // table holds samples * STRIDE values and is owned by the curve from now on.
+    PropertyCurve(long duration, int samples, float[] table) {
+        if (samples < 2 || table.length < samples * STRIDE) {
+            throw new IllegalArgumentException("Invalid curve table: " + samples + " samples");
+        }
+        this.duration = duration;
+        this.samples = samples;
+        this.table = table;
+
+        boolean alpha = false;
+        boolean transform = false;
+        for (int s = 0; s < samples; s++) {
+            final int base = s * STRIDE;
+            alpha |= table[base + ALPHA] != 1;
+            transform |= table[base + SCALE_X] != 1 || table[base + SCALE_Y] != 1 || table[base + ROTATION] != 0;
+            for (int field = TRANS_X; field < STRIDE; field++) {
+                transform |= table[base + field] != 0;
+            }
+        }
+        hasAlpha = alpha;
+        hasTransform = transform;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public boolean hasAlpha() {
+        return hasAlpha;
+    }
+
+    // False if the curve never moves, scales or rotates the glyph.
+    public boolean hasTransform() {
+        return hasTransform;
+    }
+
+    // Returns the fraction of this curve that has elapsed time ms after it started.
+    public float getFraction(long time) {
+        if (time <= 0) {
+            return duration <= 0 ? 1 : 0;
+        } else if (time >= duration) {
+            return 1;
+        }
+        return (float) time / duration;
+    }
+
+    public float getAlpha(float fraction) {
+        return sample(fraction, ALPHA);
+    }
+
+    // The animation's interpolator applied to fraction.
+    public float getProgress(float fraction) {
+        return sample(fraction, PROGRESS);
+    }
+
+    public float getScaleX(float fraction) {
+        return sample(fraction, SCALE_X);
+    }
+
+    public float getScaleY(float fraction) {
+        return sample(fraction, SCALE_Y);
+    }
+
+    public float getRotation(float fraction) {
+        return sample(fraction, ROTATION);
+    }
+
+    public float getTranslationX(float fraction, float width, float height, float parentWidth, float parentHeight) {
+        return sample(fraction, TRANS_X) +
+                width * sample(fraction, WIDTH_X) +
+                height * sample(fraction, HEIGHT_X) +
+                parentWidth * sample(fraction, PARENT_WIDTH_X) +
+                parentHeight * sample(fraction, PARENT_HEIGHT_X);
+    }
+
+    public float getTranslationY(float fraction, float width, float height, float parentWidth, float parentHeight) {
+        return sample(fraction, TRANS_Y) +
+                width * sample(fraction, WIDTH_Y) +
+                height * sample(fraction, HEIGHT_Y) +
+                parentWidth * sample(fraction, PARENT_WIDTH_Y) +
+                parentHeight * sample(fraction, PARENT_HEIGHT_Y);
+    }
+
+    private float sample(float fraction, int field) {
+        final float clamped = fraction < 0 ? 0 : (fraction > 1 ? 1 : fraction);
+        final float position = clamped * (samples - 1);
+        final int index = Math.min((int) position, samples - 2);
+        final float from = table[index * STRIDE + field];
+        return from + (position - index) * (table[(index + 1) * STRIDE + field] - from);
+    }
+}
@@ -0,0 +1,87 @@
+package org.digdug.animatedtextview;
+
+import java.util.Arrays;
+
+// When each transition in a TransitionBuffer starts. Transitions start spacing ms apart in index order, optionally
+// in waves of several that start together, and the whole stagger can be capped so long strings don't take longer
+// and longer to finish. Start times never go down as the index goes up, so the transitions animating at any
+// moment are a contiguous range, found with a binary search instead of checking every glyph.
+public class StaggerSchedule {
+    public static final int NO_LIMIT = -1;
+
+    private long[] starts = new long[16];
+    private int count = 0;
+
+    // Works out start times for count transitions. waveSize transitions start together, each wave spacing ms after
+    // the last. If that would take longer than maxStagger ms, the waves are squeezed closer together.
+    public void build(int count, int spacing, int waveSize, long maxStagger) {
+        if (starts.length < count) {
+            starts = new long[Math.max(count, starts.length * 2)];
+        }
+        this.count = count;
+
+        final int wave = Math.max(1, waveSize);
+        final int waves = (count + wave - 1) / wave;
+        double step = Math.max(0, spacing);
+        if (maxStagger != NO_LIMIT && waves > 1 && step * (waves - 1) > maxStagger) {
+            step = (double) Math.max(0, maxStagger) / (waves - 1);
+        }
+        for (int i = 0; i < count; i++) {
+            starts[i] = (long) ((i / wave) * step);
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // How long after the transition started that transition i starts.
+    public long getStart(int i) {
+        return starts[i];
+    }
+
+    // How long transition i has been animating elapsed ms into the transition. Negative if it hasn't started.
+    public long getTime(int i, long elapsed) {
+        return elapsed - starts[i];
+    }
+
+    // When the last transition finishes, if each takes duration ms.
+    public long getEnd(long duration) {
+        return count == 0 ? 0 : starts[count - 1] + duration;
+    }
+
+    public boolean isFinished(long elapsed, long duration) {
+        return elapsed >= getEnd(duration);
+    }
+
+    // The first transition that hasn't finished elapsed ms into the transition. count if they all have.
+    public int getFirstActive(long elapsed, long duration) {
+        // The first start after elapsed - duration.
+        return upperBound(elapsed - duration);
+    }
+
+    // The last transition that has started elapsed ms into the transition. -1 if none have.
+    public int getLastActive(long elapsed) {
+        return upperBound(elapsed) - 1;
+    }
+
+    // The first transition that starts after time, or count if none do.
+    private int upperBound(long time) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (starts[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        return "StaggerSchedule " + Arrays.toString(Arrays.copyOf(starts, count));
+    }
+}
@@ -0,0 +1,200 @@
+package org.digdug.animatedtextview;
+
+import java.util.Arrays;
+
+// Computes a minimal edit script between two strings using Myers' O(ND) algorithm. This uses the linear space
+// bisect variant, so matching two long, unrelated strings doesn't need an N*D trace. All of the working arrays
+// are kept between calls.
+//
+// Strings are compared grapheme cluster by grapheme cluster, so an emoji is never matched half way.
+class TextDiff {
+    private CharSequence from;
+    private CharSequence to;
+    private GraphemeClusters fromClusters;
+    private GraphemeClusters toClusters;
+
+    // For every cluster in from, the cluster it's matched to in to (or -1 if it was removed), and vice versa.
+    private int[] fromMatches = new int[16];
+    private int[] toMatches = new int[16];
+
+    private int[] forward = new int[16];
+    private int[] reverse = new int[16];
+
+    void compute(CharSequence from, GraphemeClusters fromClusters, CharSequence to, GraphemeClusters toClusters) {
+        this.from = from;
+        this.to = to;
+        this.fromClusters = fromClusters;
+        this.toClusters = toClusters;
+
+        final int fromLength = fromClusters.size();
+        final int toLength = toClusters.size();
+        fromMatches = ensureCapacity(fromMatches, fromLength);
+        toMatches = ensureCapacity(toMatches, toLength);
+        Arrays.fill(fromMatches, 0, fromLength, -1);
+        Arrays.fill(toMatches, 0, toLength, -1);
+
+        final int vLength = 2 * ((fromLength + toLength + 1) / 2) + 2;
+        forward = ensureCapacity(forward, vLength);
+        reverse = ensureCapacity(reverse, vLength);
+
+        compare(0, fromLength, 0, toLength);
+
+        // Don't hold on to the caller's text.
+        this.from = null;
+        this.to = null;
+        this.fromClusters = null;
+        this.toClusters = null;
+    }
+
+    int getFromMatch(int fromIndex) {
+        return fromMatches[fromIndex];
+    }
+
+    int getToMatch(int toIndex) {
+        return toMatches[toIndex];
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        if (array.length >= capacity) {
+            return array;
+        }
+        return new int[Math.max(capacity, array.length * 2)];
+    }
+
+    // True if cluster fromIndex of from is the same as cluster toIndex of to.
+    private boolean same(int fromIndex, int toIndex) {
+        final int fromStart = fromClusters.getStart(fromIndex);
+        final int toStart = toClusters.getStart(toIndex);
+        final int length = fromClusters.getEnd(fromIndex) - fromStart;
+        if (length != toClusters.getEnd(toIndex) - toStart) {
+            return false;
+        }
+        for (int k = 0; k < length; k++) {
+            if (from.charAt(fromStart + k) != to.charAt(toStart + k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void match(int fromIndex, int toIndex) {
+        fromMatches[fromIndex] = toIndex;
+        toMatches[toIndex] = fromIndex;
+    }
+
+    private void compare(int fromStart, int fromEnd, int toStart, int toEnd) {
+        // Strip the common prefix and suffix. These are cheap and are the common case for small edits.
+        while (fromStart < fromEnd && toStart < toEnd && same(fromStart, toStart)) {
+            match(fromStart++, toStart++);
+        }
+        while (fromStart < fromEnd && toStart < toEnd && same(fromEnd - 1, toEnd - 1)) {
+            match(--fromEnd, --toEnd);
+        }
+
+        // Anything left is a pure insert or delete.
+        if (fromStart == fromEnd || toStart == toEnd) {
+            return;
+        }
+
+        bisect(fromStart, fromEnd, toStart, toEnd);
+    }
+
+    // Finds the middle snake of the edit graph and recurses on either side of it.
+    private void bisect(int fromStart, int fromEnd, int toStart, int toEnd) {
+        final int n = fromEnd - fromStart;
+        final int m = toEnd - toStart;
+        final int maxD = (n + m + 1) / 2;
+        final int vOffset = maxD;
+        final int vLength = 2 * maxD + 2;
+        final int[] v1 = forward;
+        final int[] v2 = reverse;
+        Arrays.fill(v1, 0, vLength, -1);
+        Arrays.fill(v2, 0, vLength, -1);
+        v1[vOffset + 1] = 0;
+        v2[vOffset + 1] = 0;
+
+        final int delta = n - m;
+        // If the total number of characters is odd, the front path will collide with the reverse path.
+        final boolean front = (delta % 2 != 0);
+        int k1start = 0;
+        int k1end = 0;
+        int k2start = 0;
+        int k2end = 0;
+
+        for (int d = 0; d < maxD; d++) {
+            // Walk the front path one step.
+            for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                final int k1Offset = vOffset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d && v1[k1Offset - 1] < v1[k1Offset + 1])) {
+                    x1 = v1[k1Offset + 1];
+                } else {
+                    x1 = v1[k1Offset - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && same(fromStart + x1, toStart + y1)) {
+                    x1++;
+                    y1++;
+                }
+                v1[k1Offset] = x1;
+
+                if (x1 > n) {
+                    // Ran off the right of the graph.
+                    k1end += 2;
+                } else if (y1 > m) {
+                    // Ran off the bottom of the graph.
+                    k1start += 2;
+                } else if (front) {
+                    final int k2Offset = vOffset + delta - k1;
+                    if (k2Offset >= 0 && k2Offset < vLength && v2[k2Offset] != -1) {
+                        final int x2 = n - v2[k2Offset];
+                        if (x1 >= x2) {
+                            split(fromStart, fromEnd, toStart, toEnd, x1, y1);
+                            return;
+                        }
+                    }
+                }
+            }
+
+            // Walk the reverse path one step.
+            for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                final int k2Offset = vOffset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d && v2[k2Offset - 1] < v2[k2Offset + 1])) {
+                    x2 = v2[k2Offset + 1];
+                } else {
+                    x2 = v2[k2Offset - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m && same(fromEnd - x2 - 1, toEnd - y2 - 1)) {
+                    x2++;
+                    y2++;
+                }
+                v2[k2Offset] = x2;
+
+                if (x2 > n) {
+                    k2end += 2;
+                } else if (y2 > m) {
+                    k2start += 2;
+                } else if (!front) {
+                    final int k1Offset = vOffset + delta - k2;
+                    if (k1Offset >= 0 && k1Offset < vLength && v1[k1Offset] != -1) {
+                        final int x1 = v1[k1Offset];
+                        final int y1 = vOffset + x1 - k1Offset;
+                        if (x1 >= n - x2) {
+                            split(fromStart, fromEnd, toStart, toEnd, x1, y1);
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        // Nothing in common. Everything is removed and replaced.
+    }
+
+    private void split(int fromStart, int fromEnd, int toStart, int toEnd, int x, int y) {
+        compare(fromStart, fromStart + x, toStart, toStart + y);
+        compare(fromStart + x, fromEnd, toStart + y, toEnd);
+    }
+}
@@ -0,0 +1,338 @@
+package org.digdug.animatedtextview;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Stores transitions as parallel primitive arrays. The arrays are kept between toggles, so once the buffer has
+// grown to fit the longest text it doesn't allocate again.
+public class TransitionBuffer {
+    private static final int DEFAULT_CAPACITY = 16;
+    // How many colors each gradient table holds.
+    public static final int GRADIENT_STEPS = 32;
+
+    float[] fromPosition;
+    float[] toPosition;
+    // The top of the line the glyph is on. Always 0 for single line text.
+    float[] fromY;
+    float[] toY;
+    float[] fromWidth;
+    float[] toWidth;
+    int[] fromColor;
+    int[] toColor;
+    float[] fromSize;
+    float[] toSize;
+    // Each glyph is a grapheme cluster, stored as a range of glyphChars.
+    int[] fromGlyph;
+    int[] fromGlyphLength;
+    int[] toGlyph;
+    int[] toGlyphLength;
+    boolean[] hasFrom;
+    boolean[] hasTo;
+    // Where the characters came from in the old and new text, or -1.
+    int[] fromIndex;
+    int[] toIndex;
+    // How visible the glyph is when the transition starts. Only less than 1 when a transition was interrupted.
+    float[] fromAlpha;
+    // Where each transition's color gradient starts in gradients, or -1 if it doesn't have one.
+    int[] gradientStart;
+
+    // Precomputed color gradients for the transitions that change color, GRADIENT_STEPS colors each.
+    private int[] gradients = new int[GRADIENT_STEPS * 4];
+    char[] glyphChars;
+    private int glyphCharCount = 0;
+    private boolean linearGradients = false;
+    private int size = 0;
+
+    public TransitionBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TransitionBuffer(int capacity) {
+        fromPosition = new float[capacity];
+        toPosition = new float[capacity];
+        fromY = new float[capacity];
+        toY = new float[capacity];
+        fromWidth = new float[capacity];
+        toWidth = new float[capacity];
+        fromColor = new int[capacity];
+        toColor = new int[capacity];
+        fromSize = new float[capacity];
+        toSize = new float[capacity];
+        fromGlyph = new int[capacity];
+        fromGlyphLength = new int[capacity];
+        toGlyph = new int[capacity];
+        toGlyphLength = new int[capacity];
+        glyphChars = new char[capacity * 2];
+        hasFrom = new boolean[capacity];
+        hasTo = new boolean[capacity];
+        fromIndex = new int[capacity];
+        toIndex = new int[capacity];
+        fromAlpha = new float[capacity];
+        gradientStart = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return fromGlyph.length;
+    }
+
+    public void clear() {
+        size = 0;
+        glyphCharCount = 0;
+    }
+
+    // Appends an empty transition and returns its index.
+    int add(float fromPosition, float toPosition) {
+        ensureCapacity(size + 1);
+        final int i = size++;
+        this.fromPosition[i] = fromPosition;
+        this.toPosition[i] = toPosition;
+        fromY[i] = 0;
+        toY[i] = 0;
+        fromWidth[i] = 0;
+        toWidth[i] = 0;
+        fromColor[i] = 0;
+        toColor[i] = 0;
+        fromSize[i] = 0;
+        toSize[i] = 0;
+        fromGlyphLength[i] = 0;
+        toGlyphLength[i] = 0;
+        hasFrom[i] = false;
+        hasTo[i] = false;
+        fromIndex[i] = -1;
+        toIndex[i] = -1;
+        fromAlpha[i] = 1;
+        gradientStart[i] = -1;
+        return i;
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity <= fromGlyph.length) {
+            return;
+        }
+
+        final int newCapacity = Math.max(capacity, fromGlyph.length * 2);
+        fromPosition = Arrays.copyOf(fromPosition, newCapacity);
+        toPosition = Arrays.copyOf(toPosition, newCapacity);
+        fromY = Arrays.copyOf(fromY, newCapacity);
+        toY = Arrays.copyOf(toY, newCapacity);
+        fromWidth = Arrays.copyOf(fromWidth, newCapacity);
+        toWidth = Arrays.copyOf(toWidth, newCapacity);
+        fromColor = Arrays.copyOf(fromColor, newCapacity);
+        toColor = Arrays.copyOf(toColor, newCapacity);
+        fromSize = Arrays.copyOf(fromSize, newCapacity);
+        toSize = Arrays.copyOf(toSize, newCapacity);
+        fromGlyph = Arrays.copyOf(fromGlyph, newCapacity);
+        fromGlyphLength = Arrays.copyOf(fromGlyphLength, newCapacity);
+        toGlyph = Arrays.copyOf(toGlyph, newCapacity);
+        toGlyphLength = Arrays.copyOf(toGlyphLength, newCapacity);
+        hasFrom = Arrays.copyOf(hasFrom, newCapacity);
+        hasTo = Arrays.copyOf(hasTo, newCapacity);
+        fromIndex = Arrays.copyOf(fromIndex, newCapacity);
+        toIndex = Arrays.copyOf(toIndex, newCapacity);
+        fromAlpha = Arrays.copyOf(fromAlpha, newCapacity);
+        gradientStart = Arrays.copyOf(gradientStart, newCapacity);
+    }
+
+    // Compares the whole cluster, so this is exact for surrogate pairs and combining sequences.
+    public boolean isSameChar(int i) {
+        if (!hasFrom[i] || !hasTo[i]) {
+            return false;
+        }
+        final int length = fromGlyphLength[i];
+        if (length != toGlyphLength[i]) {
+            return false;
+        }
+        final int fromStart = fromGlyph[i];
+        final int toStart = toGlyph[i];
+        for (int k = 0; k < length; k++) {
+            if (glyphChars[fromStart + k] != glyphChars[toStart + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void setFrom(int i, CharSequence text, int start, int end) {
+        hasFrom[i] = true;
+        fromGlyph[i] = appendGlyph(text, start, end);
+        fromGlyphLength[i] = end - start;
+    }
+
+    void setTo(int i, CharSequence text, int start, int end) {
+        hasTo[i] = true;
+        toGlyph[i] = appendGlyph(text, start, end);
+        toGlyphLength[i] = end - start;
+    }
+
+    // Copies a cluster into glyphChars and returns where it starts.
+    private int appendGlyph(CharSequence text, int start, int end) {
+        final int offset = reserveGlyph(end - start);
+        for (int k = start; k < end; k++) {
+            glyphChars[offset + k - start] = text.charAt(k);
+        }
+        return offset;
+    }
+
+    private int reserveGlyph(int length) {
+        if (glyphCharCount + length > glyphChars.length) {
+            glyphChars = Arrays.copyOf(glyphChars, Math.max(glyphCharCount + length, glyphChars.length * 2));
+        }
+        final int offset = glyphCharCount;
+        glyphCharCount += length;
+        return offset;
+    }
+
+    public boolean isBoring(int i) {
+        return fromPosition[i] == toPosition[i] &&
+                fromY[i] == toY[i] &&
+                isSameChar(i) &&
+                fromColor[i] == toColor[i] &&
+                fromSize[i] == toSize[i] &&
+                fromAlpha[i] == 1;
+    }
+
+    void swap(int i, int j) {
+        float f = fromPosition[i]; fromPosition[i] = fromPosition[j]; fromPosition[j] = f;
+        f = toPosition[i]; toPosition[i] = toPosition[j]; toPosition[j] = f;
+        f = fromY[i]; fromY[i] = fromY[j]; fromY[j] = f;
+        f = toY[i]; toY[i] = toY[j]; toY[j] = f;
+        f = fromWidth[i]; fromWidth[i] = fromWidth[j]; fromWidth[j] = f;
+        f = toWidth[i]; toWidth[i] = toWidth[j]; toWidth[j] = f;
+        f = fromSize[i]; fromSize[i] = fromSize[j]; fromSize[j] = f;
+        f = toSize[i]; toSize[i] = toSize[j]; toSize[j] = f;
+        f = fromAlpha[i]; fromAlpha[i] = fromAlpha[j]; fromAlpha[j] = f;
+
+        int n = fromColor[i]; fromColor[i] = fromColor[j]; fromColor[j] = n;
+        n = toColor[i]; toColor[i] = toColor[j]; toColor[j] = n;
+        n = fromIndex[i]; fromIndex[i] = fromIndex[j]; fromIndex[j] = n;
+        n = toIndex[i]; toIndex[i] = toIndex[j]; toIndex[j] = n;
+        n = gradientStart[i]; gradientStart[i] = gradientStart[j]; gradientStart[j] = n;
+        n = fromGlyph[i]; fromGlyph[i] = fromGlyph[j]; fromGlyph[j] = n;
+        n = fromGlyphLength[i]; fromGlyphLength[i] = fromGlyphLength[j]; fromGlyphLength[j] = n;
+        n = toGlyph[i]; toGlyph[i] = toGlyph[j]; toGlyph[j] = n;
+        n = toGlyphLength[i]; toGlyphLength[i] = toGlyphLength[j]; toGlyphLength[j] = n;
+
+        boolean b = hasFrom[i]; hasFrom[i] = hasFrom[j]; hasFrom[j] = b;
+        b = hasTo[i]; hasTo[i] = hasTo[j]; hasTo[j] = b;
+    }
+
+    // Fisher-Yates, the same algorithm Collections.shuffle uses.
+    public void shuffle(Random random) {
+        for (int i = size - 1; i > 0; i--) {
+            swap(i, random.nextInt(i + 1));
+        }
+    }
+
+    // Where the glyph is, and how big it is, dt of the way through its transition.
+    public float getPosition(int i, float dt) {
+        return fromPosition[i] + dt * (toPosition[i] - fromPosition[i]);
+    }
+
+    public float getY(int i, float dt) {
+        return fromY[i] + dt * (toY[i] - fromY[i]);
+    }
+
+    public float getSize(int i, float dt) {
+        return fromSize[i] + dt * (toSize[i] - fromSize[i]);
+    }
+
+    public int getColor(int i, float dt) {
+        final int start = gradientStart[i];
+        if (start < 0) {
+            // Nothing precomputed, e.g. because buildGradients hasn't been called yet.
+            return ColorGradient.lerp(fromColor[i], toColor[i], dt, linearGradients);
+        }
+        final float clamped = dt < 0 ? 0 : (dt > 1 ? 1 : dt);
+        return gradients[start + (int) (clamped * (GRADIENT_STEPS - 1) + 0.5f)];
+    }
+
+    // Precomputes a gradient for every transition that changes color, so getColor is a table lookup. Call this
+    // once the transitions' colors are final.
+    public void buildGradients(boolean linear) {
+        linearGradients = linear;
+        int used = 0;
+        for (int i = 0; i < size; i++) {
+            if (fromColor[i] == toColor[i]) {
+                gradientStart[i] = -1;
+                continue;
+            }
+
+            if (used + GRADIENT_STEPS > gradients.length) {
+                gradients = Arrays.copyOf(gradients, Math.max(used + GRADIENT_STEPS, gradients.length * 2));
+            }
+            ColorGradient.fill(fromColor[i], toColor[i], linear, gradients, used, GRADIENT_STEPS);
+            gradientStart[i] = used;
+            used += GRADIENT_STEPS;
+        }
+    }
+
+    // The alpha of a glyph that moves without being hidden and shown.
+    public float getAlpha(int i, float dt) {
+        return fromAlpha[i] + dt * (1 - fromAlpha[i]);
+    }
+
+    // Makes transition i start from wherever its glyph currently is on screen, rather than from where it sits in
+    // the old text.
+    void retarget(int i, float position, float y, float size, int color, float alpha) {
+        fromPosition[i] = position;
+        fromY[i] = y;
+        fromSize[i] = size;
+        fromColor[i] = color;
+        fromAlpha[i] = alpha;
+        gradientStart[i] = -1;
+    }
+
+    // Appends the glyph old is hiding in transition j, e.g. one that was already on its way out when the text
+    // changed again.
+    int addHiding(TransitionBuffer old, int j, float position, float y, float size, int color, float alpha) {
+        final int i = add(position, position);
+        fromY[i] = y;
+        toY[i] = y;
+        hasFrom[i] = true;
+        final int length = old.fromGlyphLength[j];
+        fromGlyph[i] = reserveGlyph(length);
+        fromGlyphLength[i] = length;
+        System.arraycopy(old.glyphChars, old.fromGlyph[j], glyphChars, fromGlyph[i], length);
+        fromWidth[i] = old.fromWidth[j];
+        fromSize[i] = size;
+        toSize[i] = size;
+        fromColor[i] = color;
+        toColor[i] = color;
+        fromAlpha[i] = alpha;
+        return i;
+    }
+
+    // Reverses the order transitions are staggered in.
+    void reverse() {
+        reverse(0, size);
+    }
+
+    void reverse(int start, int end) {
+        for (int i = start, j = end - 1; i < j; i++, j--) {
+            swap(i, j);
+        }
+    }
+
+    // Moves the transitions from start onwards to the front, keeping their order, so they're staggered first.
+    void moveToFront(int start) {
+        reverse(0, start);
+        reverse(start, size);
+        reverse(0, size);
+    }
+
+    String toString(int i) {
+        return "Transition from " +
+                (hasFrom[i] ? new String(glyphChars, fromGlyph[i], fromGlyphLength[i]) : "null") +
+                "(" + fromPosition[i] + ") to " +
+                (hasTo[i] ? new String(glyphChars, toGlyph[i], toGlyphLength[i]) : "null") +
+                " (" + toPosition[i] + ")";
+    }
+}
@@ -0,0 +1,341 @@
+package org.digdug.animatedtextview;
+
+import java.util.Arrays;
+
+// Works out where every character starts and ends when the text changes. This doesn't depend on any Android
+// classes, measurement and styling come in through GlyphMetrics and GlyphStyles, so it can run on a plain JVM.
+//
+// Each transition animates one grapheme cluster, so surrogate pairs and emoji sequences move as a single glyph.
+// Indexes below count clusters, not chars.
+public class TransitionLayout {
+    public enum Align {
+        LEFT, CENTER, RIGHT
+    }
+
+    // The direction characters are laid out (and staggered) in.
+    public enum Direction {
+        LEFT(1),
+        RIGHT(-1);
+
+        public final int value;
+
+        Direction(int val) {
+            this.value = val;
+        }
+    }
+
+    private final GlyphMetrics metrics;
+    private final TextDiff diff = new TextDiff();
+    private final GraphemeClusters fromClusters = new GraphemeClusters();
+    private final GraphemeClusters toClusters = new GraphemeClusters();
+    // The advance of every cluster, for layouts that place clusters one after another. Filled by measureClusters,
+    // so each cluster is only measured once per layout.
+    private float[] fromWidths = new float[16];
+    private float[] toWidths = new float[16];
+    private float fromTextWidth;
+    private float toTextWidth;
+    private float width;
+    private float paddingLeft;
+    private float paddingRight;
+
+    // Only set while laying out.
+    private CharSequence from;
+    private CharSequence to;
+    private GlyphStyles fromStyles;
+    private GlyphStyles toStyles;
+    private TransitionBuffer out;
+
+    public TransitionLayout(GlyphMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setBounds(float width, float paddingLeft, float paddingRight) {
+        this.width = width;
+        this.paddingLeft = paddingLeft;
+        this.paddingRight = paddingRight;
+    }
+
+    public float measure(CharSequence text, GlyphStyles styles) {
+        float textWidth = 0;
+        int end;
+        for (int i = 0; i < text.length(); i = end) {
+            end = GraphemeClusters.next(text, i);
+            textWidth += GraphemeClusters.measure(metrics, text, i, end, styles.getSize(i));
+        }
+        return textWidth;
+    }
+
+    // Returns the left edge of a string of the given width.
+    public float getStartPosition(Align align, float textWidth) {
+        if (align == Align.RIGHT) {
+            return width - paddingRight - textWidth;
+        } else if (align == Align.CENTER) {
+            return (width - textWidth) / 2;
+        }
+        return paddingLeft;
+    }
+
+    // Pairs characters by their index, starting from the side the text runs from.
+    public void layoutByIndex(CharSequence from, GlyphStyles fromStyles, Align fromAlign,
+                              CharSequence to, GlyphStyles toStyles, Align toAlign,
+                              Direction direction, TransitionBuffer out) {
+        begin(from, fromStyles, to, toStyles, out);
+        measureClusters();
+
+        final float fromWidth = fromTextWidth;
+        final float toWidth = toTextWidth;
+
+        float toPosition = toAlign == Align.RIGHT ? width - paddingRight : paddingLeft;
+        float fromPosition = fromAlign == Align.RIGHT ? width - paddingRight : paddingLeft;
+
+        if (fromAlign == Align.CENTER) {
+            fromPosition = (width - fromWidth) / 2;
+        }
+
+        if (toAlign == Align.CENTER) {
+            toPosition = (width - toWidth) / 2;
+        }
+
+        if (direction == Direction.LEFT) {
+            if (toAlign == Align.RIGHT) {
+                toPosition -= toWidth;
+            }
+            if (fromAlign == Align.RIGHT) {
+                fromPosition -= fromWidth;
+            }
+        } else {
+            if (toAlign != Align.RIGHT) {
+                toPosition += toWidth;
+            }
+            if (fromAlign != Align.RIGHT) {
+                fromPosition += fromWidth;
+            }
+        }
+
+        // We always use toGravity here so that we'll start from the same side, regardless of which direction
+        // the text is running.
+        int fromIndex  = direction == Direction.RIGHT ? fromClusters.size() - 1 : 0;
+        int startIndex = direction == Direction.RIGHT ?   toClusters.size() - 1 : 0;
+        int endIndex   = direction == Direction.RIGHT ?                      -1 : toClusters.size();
+
+        final TransitionBuffer t = out;
+        for (int toIndex = startIndex; toIndex != endIndex; toIndex += direction.value) {
+            int i = addTransitionFor(fromIndex, toIndex, fromPosition, toPosition);
+            t.fromWidth[i] = t.hasFrom[i] ? fromWidths[fromIndex] : 0;
+            t.toWidth[i] = t.hasTo[i] ? toWidths[toIndex] : 0;
+
+            // Adjust out position based on the textsize of the from and to strings.
+            fromPosition += direction.value * t.fromWidth[i];
+            toPosition   += direction.value * t.toWidth[i];
+
+            // If this is floating to the right, update its position to account for its size.
+            if (direction == Direction.RIGHT) { t.fromPosition[i] = fromPosition; }
+            if (direction == Direction.RIGHT) { t.toPosition[i] = toPosition; }
+
+            // Iterate the from string.
+            fromIndex    += direction.value;
+        }
+
+        while (fromIndex > -1 && fromIndex < fromClusters.size()) {
+            int i = addTransitionFor(fromIndex, -1, fromPosition, toPosition);
+            t.fromWidth[i] = t.hasFrom[i] ? fromWidths[fromIndex] : 0;
+            fromPosition += direction.value * t.fromWidth[i];
+            if (direction == Direction.RIGHT) { t.fromPosition[i] = fromPosition; }
+            fromIndex += direction.value;
+        }
+
+        end();
+    }
+
+    // Pairs characters using a minimal edit script. Removed characters hide in place, added characters show in
+    // place, and matched characters slide from their old position to their new one.
+    public void layoutMinimalEdit(CharSequence from, GlyphStyles fromStyles, Align fromAlign,
+                                  CharSequence to, GlyphStyles toStyles, Align toAlign,
+                                  Direction direction, TransitionBuffer out) {
+        begin(from, fromStyles, to, toStyles, out);
+        measureClusters();
+
+        float fromPosition = getStartPosition(fromAlign, fromTextWidth);
+        float toPosition = getStartPosition(toAlign, toTextWidth);
+
+        diff.compute(from, fromClusters, to, toClusters);
+
+        // Walk both strings left to right.
+        final TransitionBuffer t = out;
+        int fromIndex = 0;
+        int toIndex = 0;
+        while (fromIndex < fromClusters.size() || toIndex < toClusters.size()) {
+            if (fromIndex < fromClusters.size() && diff.getFromMatch(fromIndex) < 0) {
+                int i = addTransitionFor(fromIndex, -1, fromPosition, fromPosition);
+                t.fromWidth[i] = fromWidths[fromIndex];
+                fromPosition += t.fromWidth[i];
+                fromIndex++;
+            } else if (toIndex < toClusters.size() && diff.getToMatch(toIndex) < 0) {
+                int i = addTransitionFor(-1, toIndex, toPosition, toPosition);
+                t.toWidth[i] = toWidths[toIndex];
+                toPosition += t.toWidth[i];
+                toIndex++;
+            } else {
+                int i = addTransitionFor(fromIndex, toIndex, fromPosition, toPosition);
+                t.fromWidth[i] = fromWidths[fromIndex];
+                t.toWidth[i] = toWidths[toIndex];
+                fromPosition += t.fromWidth[i];
+                toPosition += t.toWidth[i];
+                fromIndex++;
+                toIndex++;
+            }
+        }
+
+        // Stagger from the right edge when the text runs that way.
+        if (direction == Direction.RIGHT) {
+            t.reverse();
+        }
+
+        end();
+    }
+
+    // Lays out text that's been broken into lines. Each line is aligned on its own, and characters that end up on
+    // a different line move there along a single x/y path. Characters are paired using a minimal edit script if
+    // minimalEdit is set, otherwise by index. Either way they're staggered in reading order.
+    public void layoutLines(CharSequence from, GlyphStyles fromStyles, LineLayout fromLines, Align fromAlign,
+                            CharSequence to, GlyphStyles toStyles, LineLayout toLines, Align toAlign,
+                            boolean minimalEdit, Direction direction, TransitionBuffer out) {
+        begin(from, fromStyles, to, toStyles, out);
+
+        if (minimalEdit) {
+            diff.compute(from, fromClusters, to, toClusters);
+        }
+
+        // Both texts are walked in order, so the line each character is on only ever moves forwards.
+        final TransitionBuffer t = out;
+        int fromIndex = 0;
+        int toIndex = 0;
+        int fromLine = 0;
+        int toLine = 0;
+        float fromLeft = getStartPosition(fromAlign, fromLines.getLineWidth(0));
+        float toLeft = getStartPosition(toAlign, toLines.getLineWidth(0));
+        while (fromIndex < fromClusters.size() || toIndex < toClusters.size()) {
+            final boolean hasFrom = fromIndex < fromClusters.size();
+            final boolean hasTo = toIndex < toClusters.size();
+            final boolean hide = hasFrom && (minimalEdit ? diff.getFromMatch(fromIndex) < 0 : !hasTo);
+            final boolean show = !hide && hasTo && (minimalEdit ? diff.getToMatch(toIndex) < 0 : !hasFrom);
+            // Lines are laid out by char.
+            final int fromChar = hasFrom ? fromClusters.getStart(fromIndex) : 0;
+            final int toChar = hasTo ? toClusters.getStart(toIndex) : 0;
+
+            if (hide || !show) {
+                while (fromLine + 1 < fromLines.getLineCount() && fromLines.getLineStart(fromLine + 1) <= fromChar) {
+                    fromLine++;
+                    fromLeft = getStartPosition(fromAlign, fromLines.getLineWidth(fromLine));
+                }
+            }
+            if (show || !hide) {
+                while (toLine + 1 < toLines.getLineCount() && toLines.getLineStart(toLine + 1) <= toChar) {
+                    toLine++;
+                    toLeft = getStartPosition(toAlign, toLines.getLineWidth(toLine));
+                }
+            }
+
+            final int i;
+            if (hide) {
+                final float x = fromLeft + fromLines.getX(fromChar);
+                i = addTransitionFor(fromIndex, -1, x, x);
+                t.fromY[i] = t.toY[i] = fromLines.getLineTop(fromLine);
+                t.fromWidth[i] = fromLines.getAdvance(fromChar);
+                fromIndex++;
+            } else if (show) {
+                final float x = toLeft + toLines.getX(toChar);
+                i = addTransitionFor(-1, toIndex, x, x);
+                t.fromY[i] = t.toY[i] = toLines.getLineTop(toLine);
+                t.toWidth[i] = toLines.getAdvance(toChar);
+                toIndex++;
+            } else {
+                i = addTransitionFor(fromIndex, toIndex, fromLeft + fromLines.getX(fromChar),
+                        toLeft + toLines.getX(toChar));
+                t.fromY[i] = fromLines.getLineTop(fromLine);
+                t.toY[i] = toLines.getLineTop(toLine);
+                t.fromWidth[i] = fromLines.getAdvance(fromChar);
+                t.toWidth[i] = toLines.getAdvance(toChar);
+                fromIndex++;
+                toIndex++;
+            }
+        }
+
+        if (direction == Direction.RIGHT) {
+            t.reverse();
+        }
+
+        end();
+    }
+
+    private void begin(CharSequence from, GlyphStyles fromStyles,
+                       CharSequence to, GlyphStyles toStyles, TransitionBuffer out) {
+        this.from = from;
+        this.to = to;
+        this.fromStyles = fromStyles;
+        this.toStyles = toStyles;
+        this.out = out;
+        fromClusters.build(from);
+        toClusters.build(to);
+    }
+
+    // Don't hold on to the caller's text.
+    private void end() {
+        from = to = null;
+        fromStyles = toStyles = null;
+        out = null;
+    }
+
+    private void measureClusters() {
+        if (fromWidths.length < fromClusters.size()) {
+            fromWidths = Arrays.copyOf(fromWidths, Math.max(fromClusters.size(), fromWidths.length * 2));
+        }
+        if (toWidths.length < toClusters.size()) {
+            toWidths = Arrays.copyOf(toWidths, Math.max(toClusters.size(), toWidths.length * 2));
+        }
+        fromTextWidth = measureClusters(from, fromStyles, fromClusters, fromWidths);
+        toTextWidth = measureClusters(to, toStyles, toClusters, toWidths);
+    }
+
+    // Clusters are measured at the size of their first char, like addTransitionFor sizes them.
+    private float measureClusters(CharSequence text, GlyphStyles styles, GraphemeClusters clusters, float[] widths) {
+        float textWidth = 0;
+        for (int c = 0; c < clusters.size(); c++) {
+            final int start = clusters.getStart(c);
+            widths[c] = GraphemeClusters.measure(metrics, text, start, clusters.getEnd(c), styles.getSize(start));
+            textWidth += widths[c];
+        }
+        return textWidth;
+    }
+
+    // fromIndex and toIndex are clusters. The transition records the chars they start at.
+    private int addTransitionFor(int fromIndex, int toIndex, float fromPosition, float toPosition) {
+        final boolean hasTo = toIndex >= 0 && toIndex < toClusters.size();
+        final boolean hasFrom = fromIndex >= 0 && fromIndex < fromClusters.size();
+        if (!hasFrom) {
+            fromPosition = toPosition;
+        }
+        final int toStart = hasTo ? toClusters.getStart(toIndex) : -1;
+        final int fromStart = hasFrom ? fromClusters.getStart(fromIndex) : -1;
+
+        final TransitionBuffer t = out;
+        final int i = t.add(fromPosition, toPosition);
+        if (hasTo) {
+            t.setTo(i, to, toStart, toClusters.getEnd(toIndex));
+        }
+        if (hasFrom) {
+            t.setFrom(i, from, fromStart, fromClusters.getEnd(fromIndex));
+        }
+        t.toIndex[i] = toStart;
+        t.fromIndex[i] = fromStart;
+        // onDraw uses colors to determine if it should transition or not. Make sure we set one for now...
+        // XXX - onDraw should be smarter here
+        t.fromColor[i] = fromStyles.getColor(fromStart);
+        t.fromSize[i] = fromStyles.getSize(fromStart);
+
+        t.toColor[i] = toStyles.getColor(toStart);
+        t.toSize[i] = toStyles.getSize(toStart);
+
+        return i;
+    }
+}
@@ -0,0 +1,132 @@
+package org.digdug.animatedtextview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GraphemeClustersTest {
+    private static final int ZWJ = 0x200D;
+    private static final int VS16 = 0xFE0F;
+    private static final int MAN = 0x1F468;
+    private static final int WOMAN = 0x1F469;
+    private static final int GIRL = 0x1F467;
+    private static final int THUMBS_UP = 0x1F44D;
+    private static final int MEDIUM_SKIN_TONE = 0x1F3FD;
+    private static final int RI_U = 0x1F1FA;
+    private static final int RI_S = 0x1F1F8;
+    private static final int RI_F = 0x1F1EB;
+    private static final int RI_R = 0x1F1F7;
+    private static final int BLACK_FLAG = 0x1F3F4;
+    private static final int CANCEL_TAG = 0xE007F;
+
+    private final GraphemeClusters clusters = new GraphemeClusters();
+
+    @Test
+    public void surrogatePairsAreOneCluster() {
+        final String grinning = text(0x1F600);
+        assertClusters("a" + grinning + "b", "a", grinning, "b");
+        assertTrue(GraphemeClusters.isSingleCodePoint(grinning, 0, 2));
+    }
+
+    @Test
+    public void combiningMarksJoinTheirBase() {
+        // An acute accent and a dot below on one e.
+        assertClusters("e\u0301\u0323x", "e\u0301\u0323", "x");
+        assertFalse(GraphemeClusters.isSingleCodePoint("e\u0301", 0, 2));
+    }
+
+    @Test
+    public void variationSelectorsJoinTheirBase() {
+        final String heart = text(0x2764, VS16);
+        assertClusters(heart + "!", heart, "!");
+    }
+
+    @Test
+    public void zeroWidthJoinersJoinEmoji() {
+        final String family = text(MAN, ZWJ, WOMAN, ZWJ, GIRL);
+        assertClusters(family + family, family, family);
+
+        // A trailing joiner has nothing to join, so it stays with the emoji before it.
+        final String dangling = text(MAN, ZWJ);
+        assertClusters(dangling, dangling);
+        assertClusters(dangling + "a", text(MAN, ZWJ, 'a'));
+        // Except for line breaks.
+        assertClusters(dangling + "\n", dangling, "\n");
+    }
+
+    @Test
+    public void skinToneModifiersJoinTheirEmoji() {
+        final String thumbsUp = text(THUMBS_UP, MEDIUM_SKIN_TONE);
+        assertClusters(thumbsUp + thumbsUp, thumbsUp, thumbsUp);
+        // A modifier with nothing before it is a cluster by itself.
+        assertClusters(text(MEDIUM_SKIN_TONE) + "a", text(MEDIUM_SKIN_TONE), "a");
+    }
+
+    @Test
+    public void flagsAreRegionalIndicatorPairs() {
+        final String us = text(RI_U, RI_S);
+        final String fr = text(RI_F, RI_R);
+        assertClusters(us + fr, us, fr);
+
+        // A lone indicator is a cluster by itself.
+        assertClusters(text(RI_U) + "a", text(RI_U), "a");
+        // An odd one out pairs from the start.
+        assertClusters(us + text(RI_F), us, text(RI_F));
+    }
+
+    @Test
+    public void tagSequencesAreOneCluster() {
+        // The flag of England.
+        final String england = text(BLACK_FLAG, 0xE0067, 0xE0062, 0xE0065, 0xE006E, 0xE0067, CANCEL_TAG);
+        assertClusters(england + "a", england, "a");
+    }
+
+    @Test
+    public void crLfIsOneCluster() {
+        assertClusters("a\r\nb", "a", "\r\n", "b");
+        // Only in that order.
+        assertClusters("\n\r", "\n", "\r");
+        assertClusters("a\r", "a", "\r");
+    }
+
+    @Test
+    public void buildReusesAndGrowsItsArrays() {
+        clusters.build("");
+        assertEquals(0, clusters.size());
+
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("e\u0301");
+        }
+        clusters.build(text);
+        assertEquals(100, clusters.size());
+        assertEquals(198, clusters.getStart(99));
+        assertEquals(200, clusters.getEnd(99));
+
+        clusters.build("ab");
+        assertEquals(2, clusters.size());
+        assertEquals(2, clusters.getEnd(1));
+    }
+
+    private void assertClusters(CharSequence text, String... expected) {
+        clusters.build(text);
+        assertEquals(text.toString(), expected.length, clusters.size());
+        int start = 0;
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(start, clusters.getStart(i));
+            assertEquals(expected[i], text.subSequence(clusters.getStart(i), clusters.getEnd(i)).toString());
+            start = clusters.getEnd(i);
+        }
+        assertEquals(text.length(), start);
+    }
+
+    private static String text(int... codePoints) {
+        final StringBuilder out = new StringBuilder();
+        for (int c : codePoints) {
+            out.appendCodePoint(c);
+        }
+        return out.toString();
+    }
+}
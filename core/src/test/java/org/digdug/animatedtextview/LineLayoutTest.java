@@ -0,0 +1,153 @@
+package org.digdug.animatedtextview;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LineLayoutTest {
+    private static final float SIZE = 10;
+
+    // Letters have different advances, so where lines wrap depends on which letters they have.
+    private static final GlyphMetrics METRICS = new GlyphMetrics() {
+        @Override
+        public float getAdvance(int codePoint, float size) {
+            return size * (0.45f + (codePoint % 7) * 0.02f);
+        }
+
+        @Override
+        public float getAdvance(CharSequence text, int start, int end, float size) {
+            return size;
+        }
+    };
+
+    private static final GlyphStyles STYLES = new GlyphStyles() {
+        @Override
+        public int getColor(int index) {
+            return 0;
+        }
+
+        @Override
+        public float getSize(int index) {
+            return SIZE;
+        }
+    };
+
+    @Test
+    public void wrapsAtSpaces() {
+        final LineLayout layout = new LineLayout(METRICS);
+        layout.layout("aaaa bbbb cc", STYLES, 50);
+        assertLines(layout, "aaaa bbbb ", "cc");
+        // Without the trailing space.
+        assertEquals(46.1f, layout.getLineWidth(0), 1e-4f);
+    }
+
+    @Test
+    public void wrapsLongWordsAnywhere() {
+        final LineLayout layout = new LineLayout(METRICS);
+        layout.layout("aaaaaaaaaaaa", STYLES, 35);
+        assertLines(layout, "aaaaaa", "aaaaaa");
+    }
+
+    @Test
+    public void breaksAtNewlines() {
+        final LineLayout layout = new LineLayout(METRICS);
+        layout.layout("a\nb", STYLES, 100);
+        assertLines(layout, "a\n", "b");
+    }
+
+    @Test
+    public void editPullsAWordBackOntoTheLineBefore() {
+        assertIncrementalMatchesLayout(" OCyaLa kMiacsPp", " OCyaLp kMiacvPp", 36);
+        // A word too long for a line started on a line of its own. Shortened, it fits after the space before it.
+        assertIncrementalMatchesLayout(" siPLvavPMCiOiiLi", " siP iMPPMCiOiiLi", 20);
+        assertIncrementalMatchesLayout(" vLMkOa", " vLMkO scaia", 31);
+    }
+
+    @Test
+    public void incrementalLayoutMatchesFullLayout() {
+        final Random random = new Random(18);
+        final LineLayout previous = new LineLayout(METRICS);
+        final LineLayout incremental = new LineLayout(METRICS);
+        final LineLayout full = new LineLayout(METRICS);
+        for (int run = 0; run < 20000; run++) {
+            final float width = 20 + random.nextInt(60);
+            final String from = randomText(random, random.nextInt(60));
+            final String to = edit(random, from);
+            previous.layout(from, STYLES, width);
+            incremental.layoutIncremental(previous, to, STYLES, width);
+            full.layout(to, STYLES, width);
+            assertSameLayout("\"" + from + "\" -> \"" + to + "\" at " + width, full, incremental);
+        }
+    }
+
+    @Test
+    public void incrementalLayoutOnlyBreaksLinesNearTheEdit() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("word ");
+        }
+        final String from = sb.toString();
+        // The same letters, so every line after the edit breaks where it did.
+        final String to = from.substring(0, 250) + "wrdo" + from.substring(254);
+
+        final LineLayout previous = new LineLayout(METRICS);
+        previous.layout(from, STYLES, 100);
+        final LineLayout incremental = new LineLayout(METRICS);
+        incremental.layoutIncremental(previous, to, STYLES, 100);
+        assertTrue("broke " + incremental.getBrokenLineCount() + " of " + incremental.getLineCount(),
+                incremental.getBrokenLineCount() <= 3);
+    }
+
+    private static void assertIncrementalMatchesLayout(String from, String to, float width) {
+        final LineLayout previous = new LineLayout(METRICS);
+        previous.layout(from, STYLES, width);
+        final LineLayout incremental = new LineLayout(METRICS);
+        incremental.layoutIncremental(previous, to, STYLES, width);
+        final LineLayout full = new LineLayout(METRICS);
+        full.layout(to, STYLES, width);
+        assertSameLayout("\"" + from + "\" -> \"" + to + "\"", full, incremental);
+    }
+
+    private static void assertSameLayout(String message, LineLayout expected, LineLayout actual) {
+        assertEquals(message, expected.getLineCount(), actual.getLineCount());
+        for (int l = 0; l < expected.getLineCount(); l++) {
+            final String line = message + " line " + l;
+            assertEquals(line, expected.getLineStart(l), actual.getLineStart(l));
+            assertEquals(line, expected.getLineEnd(l), actual.getLineEnd(l));
+            assertEquals(line, expected.getLineWidth(l), actual.getLineWidth(l), 0);
+            assertEquals(line, expected.getLineTop(l), actual.getLineTop(l), 0);
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            assertEquals(message + " char " + i, expected.getX(i), actual.getX(i), 0);
+            assertEquals(message + " char " + i, expected.getAdvance(i), actual.getAdvance(i), 0);
+        }
+    }
+
+    private static void assertLines(LineLayout layout, String... lines) {
+        final CharSequence text = layout.getText();
+        assertEquals(lines.length, layout.getLineCount());
+        for (int l = 0; l < lines.length; l++) {
+            assertEquals(lines[l], text.subSequence(layout.getLineStart(l), layout.getLineEnd(l)).toString());
+        }
+    }
+
+    // Mostly letters, with words often longer than a line and the occasional newline.
+    private static String randomText(Random random, int length) {
+        final String alphabet = "aeiouxyzACKLMOPacs  \n";
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    // Replaces a random range of text with a few random characters.
+    private static String edit(Random random, String text) {
+        final int start = random.nextInt(text.length() + 1);
+        final int end = start + random.nextInt(Math.min(text.length() - start, 6) + 1);
+        return text.substring(0, start) + randomText(random, random.nextInt(6)) + text.substring(end);
+    }
+}
@@ -0,0 +1,127 @@
+package org.digdug.animatedtextview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OdometerTest {
+    private static final float SIZE = 20;
+    private static final float DIGIT_ADVANCE = 10;
+    private static final float EPSILON = 1e-4f;
+
+    // Everything that isn't a digit is half as wide as one.
+    private static final GlyphMetrics METRICS = new GlyphMetrics() {
+        @Override
+        public float getAdvance(int codePoint, float size) {
+            return DIGIT_ADVANCE / 2;
+        }
+
+        @Override
+        public float getAdvance(CharSequence text, int start, int end, float size) {
+            return DIGIT_ADVANCE / 2;
+        }
+    };
+
+    private final Odometer odometer = new Odometer();
+
+    @Test
+    public void onlyChangedDigitsRoll() {
+        layout("1234", "1235");
+        assertKinds(Odometer.UNCHANGED, Odometer.UNCHANGED, Odometer.UNCHANGED, Odometer.ROLL);
+        assertEquals(1, odometer.getChangedCount());
+        assertEquals(3, odometer.getChanged(0));
+    }
+
+    @Test
+    public void carriesRollEveryDigitTheyReach() {
+        layout("1299", "1300");
+        assertKinds(Odometer.UNCHANGED, Odometer.ROLL, Odometer.ROLL, Odometer.ROLL);
+        // Counting up, the nines roll forward through the end of the strip to 0.
+        assertEquals(9, odometer.getPosition(3, 0), EPSILON);
+        assertEquals(9.5f, odometer.getPosition(3, 0.5f), EPSILON);
+        assertEquals(0, odometer.getPosition(3, 1), EPSILON);
+        assertEquals(2.5f, odometer.getPosition(1, 0.5f), EPSILON);
+    }
+
+    @Test
+    public void smallerNumbersRollDown() {
+        layout("1300", "1299");
+        assertKinds(Odometer.UNCHANGED, Odometer.ROLL, Odometer.ROLL, Odometer.ROLL);
+        assertEquals(9.5f, odometer.getPosition(3, 0.5f), EPSILON);
+        assertEquals(9, odometer.getPosition(3, 1), EPSILON);
+        assertEquals(2.5f, odometer.getPosition(1, 0.5f), EPSILON);
+    }
+
+    @Test
+    public void separatorsStayPut() {
+        layout("1,299", "1,300");
+        assertKinds(Odometer.UNCHANGED, Odometer.UNCHANGED, Odometer.ROLL, Odometer.ROLL, Odometer.ROLL);
+        assertEquals(4 * DIGIT_ADVANCE + DIGIT_ADVANCE / 2, odometer.getWidth(), EPSILON);
+    }
+
+    @Test
+    public void longerNumbersSlideInANewCell() {
+        layout("999", "1000");
+        assertEquals(4, odometer.size());
+        assertEquals(Odometer.EMPTY, odometer.getFromChar(0));
+        assertEquals('1', odometer.getToChar(0));
+        assertKinds(Odometer.SLIDE, Odometer.ROLL, Odometer.ROLL, Odometer.ROLL);
+        assertEquals(4 * DIGIT_ADVANCE, odometer.getWidth(), EPSILON);
+        assertEquals(0, odometer.getX(0), EPSILON);
+    }
+
+    @Test
+    public void shorterNumbersSlideOutTheLeftCell() {
+        layout("1000", "999");
+        assertEquals(4, odometer.size());
+        assertEquals('1', odometer.getFromChar(0));
+        assertEquals(Odometer.EMPTY, odometer.getToChar(0));
+        assertKinds(Odometer.SLIDE, Odometer.ROLL, Odometer.ROLL, Odometer.ROLL);
+        // Right aligned, so the units stay put and the old leading digit is left of the new text.
+        assertEquals(3 * DIGIT_ADVANCE, odometer.getWidth(), EPSILON);
+        assertEquals(-DIGIT_ADVANCE, odometer.getX(0), EPSILON);
+        assertEquals(2 * DIGIT_ADVANCE, odometer.getX(3), EPSILON);
+    }
+
+    @Test
+    public void unchangedNumberHasNothingToDraw() {
+        layout("-42", "-42");
+        assertEquals(0, odometer.getChangedCount());
+    }
+
+    @Test
+    public void retargetCarriesOnFromWhereDigitsAre() {
+        layout("0", "5");
+        odometer.retarget("9", 0.5f, DIGIT_ADVANCE, METRICS, SIZE);
+        assertKinds(Odometer.ROLL);
+        assertEquals(2.5f, odometer.getPosition(0, 0), EPSILON);
+        assertEquals(9, odometer.getPosition(0, 1), EPSILON);
+
+        // Finished digits start from their new value.
+        odometer.retarget("10", 1, DIGIT_ADVANCE, METRICS, SIZE);
+        assertKinds(Odometer.SLIDE, Odometer.ROLL);
+        assertEquals(9, odometer.getPosition(1, 0), EPSILON);
+    }
+
+    @Test
+    public void numericText() {
+        assertTrue(Odometer.isNumeric("1,234.50"));
+        assertTrue(Odometer.isNumeric("-$12"));
+        assertTrue(Odometer.isNumeric("99%"));
+        assertFalse(Odometer.isNumeric(""));
+        assertFalse(Odometer.isNumeric("12 apples"));
+    }
+
+    private void layout(String from, String to) {
+        odometer.layout(from, to, DIGIT_ADVANCE, METRICS, SIZE);
+    }
+
+    private void assertKinds(int... kinds) {
+        assertEquals(kinds.length, odometer.size());
+        for (int cell = 0; cell < kinds.length; cell++) {
+            assertEquals("cell " + cell, kinds[cell], odometer.getKind(cell));
+        }
+    }
+}
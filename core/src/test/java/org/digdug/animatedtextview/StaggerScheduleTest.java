@@ -0,0 +1,95 @@
+package org.digdug.animatedtextview;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StaggerScheduleTest {
+    private static final int DURATION = 300;
+
+    private final StaggerSchedule schedule = new StaggerSchedule();
+
+    @Test
+    public void transitionsStartSpacingApart() {
+        schedule.build(4, 50, 1, StaggerSchedule.NO_LIMIT);
+        assertStarts(0, 50, 100, 150);
+        assertEquals(450, schedule.getEnd(DURATION));
+        assertEquals(-50, schedule.getTime(3, 100));
+        assertFalse(schedule.isFinished(449, DURATION));
+        assertTrue(schedule.isFinished(450, DURATION));
+    }
+
+    @Test
+    public void wavesStartTogether() {
+        schedule.build(5, 50, 2, StaggerSchedule.NO_LIMIT);
+        assertStarts(0, 0, 50, 50, 100);
+    }
+
+    @Test
+    public void maxStaggerSqueezesTheWaves() {
+        schedule.build(11, 50, 1, 200);
+        assertStarts(0, 20, 40, 60, 80, 100, 120, 140, 160, 180, 200);
+
+        // Short enough already, so it's left alone.
+        schedule.build(3, 50, 1, 200);
+        assertStarts(0, 50, 100);
+
+        schedule.build(3, 50, 1, 0);
+        assertStarts(0, 0, 0);
+    }
+
+    @Test
+    public void negativeSpacingStartsEverythingTogether() {
+        schedule.build(3, -10, 1, StaggerSchedule.NO_LIMIT);
+        assertStarts(0, 0, 0);
+    }
+
+    @Test
+    public void emptySchedule() {
+        schedule.build(0, 50, 1, StaggerSchedule.NO_LIMIT);
+        assertEquals(0, schedule.getEnd(DURATION));
+        assertTrue(schedule.isFinished(0, DURATION));
+        assertEquals(0, schedule.getFirstActive(0, DURATION));
+        assertEquals(-1, schedule.getLastActive(0));
+    }
+
+    @Test
+    public void activeRangeMatchesEveryTransition() {
+        final Random random = new Random(23);
+        for (int run = 0; run < 200; run++) {
+            final int count = random.nextInt(40);
+            final int spacing = random.nextInt(80);
+            final int waveSize = 1 + random.nextInt(4);
+            final long maxStagger = random.nextBoolean() ? StaggerSchedule.NO_LIMIT : random.nextInt(1000);
+            schedule.build(count, spacing, waveSize, maxStagger);
+
+            for (long elapsed = -10; elapsed <= schedule.getEnd(DURATION) + 10; elapsed += 7) {
+                int first = count;
+                int last = -1;
+                for (int i = 0; i < count; i++) {
+                    final long time = schedule.getTime(i, elapsed);
+                    if (time < DURATION && first == count) {
+                        first = i;
+                    }
+                    if (time >= 0) {
+                        last = i;
+                    }
+                }
+                final String message = schedule + " at " + elapsed;
+                assertEquals(message, first, schedule.getFirstActive(elapsed, DURATION));
+                assertEquals(message, last, schedule.getLastActive(elapsed));
+            }
+        }
+    }
+
+    private void assertStarts(long... starts) {
+        assertEquals(schedule.toString(), starts.length, schedule.size());
+        for (int i = 0; i < starts.length; i++) {
+            assertEquals(schedule.toString(), starts[i], schedule.getStart(i));
+        }
+    }
+}
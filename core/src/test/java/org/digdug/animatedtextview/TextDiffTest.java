@@ -0,0 +1,140 @@
+package org.digdug.animatedtextview;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TextDiffTest {
+    private final TextDiff diff = new TextDiff();
+    private final GraphemeClusters fromClusters = new GraphemeClusters();
+    private final GraphemeClusters toClusters = new GraphemeClusters();
+
+    @Test
+    public void emptyTexts() {
+        compute("", "");
+        compute("", "abc");
+        assertMatches(new int[]{-1, -1, -1}, toMatches());
+        compute("abc", "");
+        assertMatches(new int[]{-1, -1, -1}, fromMatches());
+    }
+
+    @Test
+    public void identicalTextsMatchEverything() {
+        compute("Hello", "Hello");
+        assertMatches(new int[]{0, 1, 2, 3, 4}, fromMatches());
+    }
+
+    @Test
+    public void fullReplacementMatchesNothing() {
+        compute("abc", "xyz");
+        assertMatches(new int[]{-1, -1, -1}, fromMatches());
+        assertMatches(new int[]{-1, -1, -1}, toMatches());
+    }
+
+    @Test
+    public void prefixEdit() {
+        compute("Hello", "Jello");
+        assertMatches(new int[]{-1, 1, 2, 3, 4}, fromMatches());
+        compute("ello", "Hello");
+        assertMatches(new int[]{1, 2, 3, 4}, fromMatches());
+    }
+
+    @Test
+    public void suffixEdit() {
+        compute("Hello", "Help");
+        assertMatches(new int[]{0, 1, 2, -1, -1}, fromMatches());
+        compute("Hello", "Hello!");
+        assertMatches(new int[]{0, 1, 2, 3, 4, -1}, toMatches());
+    }
+
+    @Test
+    public void clustersAreMatchedWhole() {
+        // A thumbs up with and without a skin tone modifier aren't the same glyph.
+        compute("a\uD83D\uDC4D\uD83C\uDFFDb", "a\uD83D\uDC4Db");
+        assertMatches(new int[]{0, -1, 2}, fromMatches());
+    }
+
+    @Test
+    public void matchesAreALongestCommonSubsequence() {
+        final Random random = new Random(4);
+        for (int run = 0; run < 2000; run++) {
+            final String from = randomText(random);
+            final String to = randomText(random);
+            compute(from, to);
+            final String message = from + " -> " + to;
+
+            // Matches go both ways, pair equal characters and don't cross.
+            int count = 0;
+            int last = -1;
+            for (int i = 0; i < from.length(); i++) {
+                final int j = diff.getFromMatch(i);
+                if (j < 0) {
+                    continue;
+                }
+                assertEquals(message, i, diff.getToMatch(j));
+                assertEquals(message, from.charAt(i), to.charAt(j));
+                assertTrue(message, j > last);
+                last = j;
+                count++;
+            }
+            for (int j = 0; j < to.length(); j++) {
+                final int i = diff.getToMatch(j);
+                assertTrue(message, i < 0 || diff.getFromMatch(i) == j);
+            }
+
+            assertEquals(message, lcsLength(from, to), count);
+        }
+    }
+
+    private void compute(String from, String to) {
+        fromClusters.build(from);
+        toClusters.build(to);
+        diff.compute(from, fromClusters, to, toClusters);
+    }
+
+    private int[] fromMatches() {
+        final int[] matches = new int[fromClusters.size()];
+        for (int i = 0; i < matches.length; i++) {
+            matches[i] = diff.getFromMatch(i);
+        }
+        return matches;
+    }
+
+    private int[] toMatches() {
+        final int[] matches = new int[toClusters.size()];
+        for (int i = 0; i < matches.length; i++) {
+            matches[i] = diff.getToMatch(i);
+        }
+        return matches;
+    }
+
+    private static void assertMatches(int[] expected, int[] actual) {
+        assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+    }
+
+    // Short texts from a small alphabet, so they share plenty of characters.
+    private static String randomText(Random random) {
+        final int length = random.nextInt(24);
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append("abcd ".charAt(random.nextInt(5)));
+        }
+        return sb.toString();
+    }
+
+    // The textbook quadratic table.
+    private static int lcsLength(String from, String to) {
+        final int[][] table = new int[from.length() + 1][to.length() + 1];
+        for (int i = 1; i <= from.length(); i++) {
+            for (int j = 1; j <= to.length(); j++) {
+                table[i][j] = from.charAt(i - 1) == to.charAt(j - 1) ? table[i - 1][j - 1] + 1 :
+                        Math.max(table[i - 1][j], table[i][j - 1]);
+            }
+        }
+        return table[from.length()][to.length()];
+    }
+}